@@ -0,0 +1,68 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.services.CachedJenkinsDataService.Cache;
+
+/**
+ * Flushing the caches to disk and reading them back, for cache sizes from a fresh install to months of polling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheBenchmark {
+
+	@Param({"100", "10000"})
+	public int entries;
+
+	private Cache cache;
+
+	@Setup
+	public void setUp() throws IOException {
+		FixtureJenkinsDataService.muteLogging();
+		cache = new Cache(Files.createTempDirectory("jenkins-notifications-bench").toString(), entries);
+		Map<JobKey, JobMetadata> jobMetadataCache = cache.getJobMetadataCache();
+		Map<JobKey, String> jobOwnerCache = cache.getJobOwnerCache();
+		JobMetadata.Result[] results = JobMetadata.Result.values();
+		for (int i = 0; i < entries; i++) {
+			JobKey jobKey = new JobKey("PROJECT_1", String.valueOf(10000 + i), i % 2 == 0 ? "G3Build-Master" : "G3Build-Branch");
+			String owner = "owner" + (i % 50);
+			jobMetadataCache.put(jobKey, new JobMetadata(jobKey, results[i % results.length], owner,
+					"Change " + i + " verified", "G3Publish", 60000L + i, 1500000000000L + i));
+			jobOwnerCache.put(jobKey, owner);
+		}
+		cache.save();
+	}
+
+	@Benchmark
+	public Cache save() {
+		cache.save();
+		return cache;
+	}
+
+	@Benchmark
+	public Cache loadFromCacheFiles() {
+		cache.loadFromCacheFiles();
+		return cache;
+	}
+}
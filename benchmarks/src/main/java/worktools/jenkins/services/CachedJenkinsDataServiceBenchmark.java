@@ -0,0 +1,63 @@
+package worktools.jenkins.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+
+/**
+ * {@link CachedJenkinsDataService#fetchJob(JobSearchKey)} over the fixture job lists. The hit path finds
+ * everything in the caches; the miss path starts from empty caches, so every run is fetched and parsed.
+ * The owner is one that started none of the builds, so the whole job list is walked either way.
+ * The caches are kept in memory only, so clearing them and filling them up again writes no journal;
+ * {@link CacheBenchmark} covers the cache files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CachedJenkinsDataServiceBenchmark {
+
+	@Param({"G3Build-Master", "G3Build-Branch"})
+	public String jobCategory;
+
+	private CachedJenkinsDataService dataService;
+	private JobSearchKey jobSearchKey;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		FixtureJenkinsDataService.muteLogging();
+		dataService = new CachedJenkinsDataService(new FixtureJenkinsDataService(), null);
+		dataService.setStaleTimeoutInSeconds(Integer.MAX_VALUE);
+		jobSearchKey = new JobSearchKey("PROJECT_1", jobCategory, "nobody");
+		dataService.fetchJob(jobSearchKey);
+	}
+
+	@Benchmark
+	public JobMetadata hit() {
+		return dataService.fetchJob(jobSearchKey);
+	}
+
+	@Benchmark
+	public JobMetadata miss() {
+		dataService.clearCache();
+		dataService.setJobKeyCache(new ConcurrentHashMap<>());
+		return dataService.fetchJob(jobSearchKey);
+	}
+}
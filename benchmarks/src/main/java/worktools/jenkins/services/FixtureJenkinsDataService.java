@@ -0,0 +1,77 @@
+package worktools.jenkins.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import worktools.jenkins.utils.Utils;
+
+/**
+ * {@link JenkinsHttpDataService} answering from the core test fixtures, loaded into memory once so the
+ * benchmarks measure parsing and caching rather than the classpath. Job lists name more builds than
+ * there are run documents, so build numbers are mapped onto the available runs of their category.
+ */
+class FixtureJenkinsDataService extends JenkinsHttpDataService {
+
+	static final String[] MASTER_RUNS = {"8660", "8662", "8668"};
+	static final String[] BRANCH_RUNS = {"14330", "14331", "14334", "14671", "14672", "14673"};
+
+	private final Map<String, byte[]> jobsDocuments = new HashMap<>();
+	private final Map<String, byte[][]> runDocuments = new HashMap<>();
+
+	FixtureJenkinsDataService() {
+		load("G3Build-Master", MASTER_RUNS);
+		load("G3Build-Branch", BRANCH_RUNS);
+	}
+
+	/**
+	 * The services log every fetch to stdout; that would otherwise dominate the measurements.
+	 */
+	static void muteLogging() {
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+	static byte[] fixture(String file) {
+		try {
+			return Utils.fetchClasspathFileBytes(file);
+		} catch (Exception e) {
+			throw new RuntimeException("Could not read fixture " + file, e);
+		}
+	}
+
+	private void load(String jobCategory, String[] runs) {
+		jobsDocuments.put(jobCategory, fixture(jobCategory + "/jobs.xml"));
+		byte[][] documents = new byte[runs.length][];
+		for (int i = 0; i < runs.length; i++) {
+			documents[i] = fixture(jobCategory + "/" + runs[i] + ".xml");
+		}
+		runDocuments.put(jobCategory, documents);
+	}
+
+	@Override
+	protected InputStream openJobData(String project, String jobId, String jobCategory, String treeProjection) throws IOException {
+		byte[][] documents = runDocuments.get(jobCategory);
+		if (documents == null) {
+			throw new UncheckedIOException(new IOException("No fixtures for " + jobCategory));
+		}
+		return new ByteArrayInputStream(documents[Math.floorMod(jobId.hashCode(), documents.length)]);
+	}
+
+	@Override
+	protected InputStream openJobsData(String project, String jobCategory) throws IOException {
+		return new ByteArrayInputStream(jobsDocuments.get(jobCategory));
+	}
+}
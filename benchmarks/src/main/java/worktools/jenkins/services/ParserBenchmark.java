@@ -0,0 +1,93 @@
+package worktools.jenkins.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Parsing a single Jenkins run document, and the DOM/XPath utilities the job list used to be read with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+	@Param({"G3Build-Master/8660", "G3Build-Branch/14334"})
+	public String run;
+
+	private JobKey jobKey;
+	private byte[] xml;
+	private byte[] json;
+	private byte[] jobsXml;
+
+	private final G3JobMetadataParser g3Parser = new G3JobMetadataParser();
+	private final G3JsonJobMetadataParser g3JsonParser = new G3JsonJobMetadataParser(ExtractionSpecRegistry.defaultRegistry().spec("g3"));
+	private final MinimalJobMetadataParser minimalParser = new MinimalJobMetadataParser();
+	private final MinimalJsonJobMetadataParser minimalJsonParser = new MinimalJsonJobMetadataParser(ExtractionSpecRegistry.defaultRegistry().spec("minimal"));
+
+	@Setup
+	public void setUp() {
+		FixtureJenkinsDataService.muteLogging();
+		String[] categoryAndJob = run.split("/");
+		jobKey = new JobKey("PROJECT_1", categoryAndJob[1], categoryAndJob[0]);
+		xml = FixtureJenkinsDataService.fixture(run + ".xml");
+		json = FixtureJenkinsDataService.fixture(run + ".json");
+		jobsXml = FixtureJenkinsDataService.fixture(categoryAndJob[0] + "/jobs.xml");
+	}
+
+	@Benchmark
+	public JobMetadata g3Xml() throws IOException {
+		return g3Parser.parseJobMetadata(jobKey, new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public JobMetadata g3Json() throws IOException {
+		return g3JsonParser.parseJobMetadata(jobKey, new ByteArrayInputStream(json));
+	}
+
+	@Benchmark
+	public JobMetadata minimalXmlBytes() {
+		return minimalParser.parseJobMetadata(jobKey, xml);
+	}
+
+	@Benchmark
+	public JobMetadata minimalXmlStream() throws IOException {
+		return minimalParser.parseJobMetadata(jobKey, new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public JobMetadata minimalJson() throws IOException {
+		return minimalJsonParser.parseJobMetadata(jobKey, new ByteArrayInputStream(json));
+	}
+
+	@Benchmark
+	public Document extractDocument() {
+		return Utils.extractDocument(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public NodeList extractNodes() {
+		return Utils.extractNodes(Utils.extractDocument(new ByteArrayInputStream(jobsXml)), "/workflowJob/build/number");
+	}
+}
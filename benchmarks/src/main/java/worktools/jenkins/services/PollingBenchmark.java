@@ -0,0 +1,61 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+
+/**
+ * One polling round of {@link JenkinsNotificationService}: search the cached job list, notify the
+ * listeners. Tracking the same job again keeps its subscription, so only the first call schedules the
+ * background polling, which is pushed out of the way, and no call cancels one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PollingBenchmark {
+
+	private JenkinsNotificationService notificationService;
+	private JobSearchKey jobSearchKey;
+	private volatile JobMetadata notified;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		FixtureJenkinsDataService.muteLogging();
+		String cacheDirectory = Files.createTempDirectory("jenkins-notifications-bench").toString();
+		CachedJenkinsDataService dataService = new CachedJenkinsDataService(new FixtureJenkinsDataService(), cacheDirectory);
+		dataService.setStaleTimeoutInSeconds(Integer.MAX_VALUE);
+		notificationService = new JenkinsNotificationService(dataService, Integer.MAX_VALUE);
+		notificationService.addNotificationsListener(jobMetadata -> notified = jobMetadata);
+		jobSearchKey = new JobSearchKey("PROJECT_1", "G3Build-Master", "nobody");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		notificationService.stopTracking();
+	}
+
+	@Benchmark
+	public JobMetadata track() {
+		notificationService.track(jobSearchKey);
+		return notified;
+	}
+}
@@ -6,5 +6,13 @@ public class AppConstants {
 	public static final String CACHE_ROOT = "C:/Nirmal/code/jenkins/";
 	public static final String JENKINS_SERVER = "http://jenkins.ideasdev.int";
 	public static final int POLLING_INTERVAL_IN_MILLI_SECONDS = 30 * 1000;
+	public static final String JSON_API_CATEGORIES_PROPERTY = "jsonApiCategories";
+	public static final String EXTRACTION_SPECS_PROPERTY = "extractionSpecs";
+	public static final String MAX_CONCURRENT_FETCHES_PROPERTY = "maxConcurrentFetches";
+	public static final String HEDGE_REQUESTS_PROPERTY = "hedgeRequests";
+	public static final String WEBHOOK_PORT_PROPERTY = "webhookPort";
+	public static final String WEBHOOK_BIND_ADDRESS_PROPERTY = "webhookBindAddress";
+	public static final String WEBHOOK_SECRET_PROPERTY = "webhookSecret";
+	public static final String MAX_CACHED_JOBS_PROPERTY = "maxCachedJobs";
 
 }
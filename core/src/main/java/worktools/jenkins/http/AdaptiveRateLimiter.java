@@ -0,0 +1,141 @@
+package worktools.jenkins.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket whose rate adapts to how Jenkins copes (AIMD): every response within the latency target
+ * adds a little to the rate, an overload (429, 503 or a slow response) halves it, at most once per
+ * {@link #DECREASE_INTERVAL_IN_MILLI_SECONDS} so a burst of failing requests counts once. A Retry-After
+ * from Jenkins stops requests altogether until then.
+ * <p>
+ * Requests that would have to wait longer than the configured maximum are refused rather than queued.
+ */
+public class AdaptiveRateLimiter implements RateLimiterMXBean {
+
+	static final long DECREASE_INTERVAL_IN_MILLI_SECONDS = 1000;
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final double minRate;
+	private final double maxRate;
+	private final double burst;
+	private final double additiveIncrease;
+	private final long latencyTargetInNanos;
+	private final LongSupplier nanoClock;
+
+	private double rate;
+	private double tokens;
+	private long refilledAt;
+	private long pausedUntil;
+	private long lastDecreaseAt;
+	private boolean decreased;
+
+	private long requestCount;
+	private long rejectedCount;
+	private long overloadCount;
+
+	/**
+	 * @param minRate requests per second never gone below
+	 * @param maxRate requests per second to start at and never go above
+	 * @param burst requests that may go out back to back after a quiet period
+	 * @param latencyTargetInMilliSeconds responses slower than this count as overload
+	 */
+	public AdaptiveRateLimiter(double minRate, double maxRate, double burst, long latencyTargetInMilliSeconds) {
+		this(minRate, maxRate, burst, latencyTargetInMilliSeconds, System::nanoTime);
+	}
+
+	AdaptiveRateLimiter(double minRate, double maxRate, double burst, long latencyTargetInMilliSeconds, LongSupplier nanoClock) {
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.burst = burst;
+		this.additiveIncrease = maxRate / 100;
+		this.latencyTargetInNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetInMilliSeconds);
+		this.nanoClock = nanoClock;
+		this.rate = maxRate;
+		this.tokens = burst;
+		this.refilledAt = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Takes a token, returning how long to wait before sending, or -1 when that would be longer than
+	 * <code>maxWaitInNanos</code>, in which case nothing is taken.
+	 */
+	public synchronized long reserve(long maxWaitInNanos) {
+		long now = refill();
+		long wait = Math.max(0, pausedUntil - now);
+		if (tokens < 1) {
+			wait = Math.max(wait, (long) ((1 - tokens) / rate * NANOS_PER_SECOND));
+		}
+		if (wait > maxWaitInNanos) {
+			rejectedCount++;
+			return -1;
+		}
+		requestCount++;
+		tokens -= 1;
+		return wait;
+	}
+
+	public synchronized void onResponse(int statusCode, long latencyInNanos, long retryAfterInMilliSeconds) {
+		long now = nanoClock.getAsLong();
+		if (retryAfterInMilliSeconds > 0) {
+			pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(retryAfterInMilliSeconds));
+		}
+		if (statusCode == 429 || statusCode == 503 || latencyInNanos > latencyTargetInNanos) {
+			overloadCount++;
+			if (!decreased || now - lastDecreaseAt >= TimeUnit.MILLISECONDS.toNanos(DECREASE_INTERVAL_IN_MILLI_SECONDS)) {
+				refill();
+				rate = Math.max(minRate, rate / 2);
+				tokens = Math.min(tokens, 1);
+				lastDecreaseAt = now;
+				decreased = true;
+			}
+		} else if (statusCode < 500) {
+			rate = Math.min(maxRate, rate + additiveIncrease);
+		}
+	}
+
+	private long refill() {
+		long now = nanoClock.getAsLong();
+		tokens = Math.min(burst, tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+		refilledAt = now;
+		return now;
+	}
+
+	@Override
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	@Override
+	public double getMaxRate() {
+		return maxRate;
+	}
+
+	@Override
+	public synchronized double getAvailableTokens() {
+		refill();
+		return tokens;
+	}
+
+	@Override
+	public synchronized double getSlowdown() {
+		double slowdown = maxRate / rate;
+		long pause = pausedUntil - nanoClock.getAsLong();
+		return pause > 0 ? Math.max(slowdown, 2) : slowdown;
+	}
+
+	@Override
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	@Override
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	@Override
+	public synchronized long getOverloadCount() {
+		return overloadCount;
+	}
+}
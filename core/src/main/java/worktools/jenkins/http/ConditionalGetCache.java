@@ -0,0 +1,150 @@
+package worktools.jenkins.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Conditional GETs with the ETag / Last-Modified validators of earlier responses, remembered per cache
+ * key together with what the response was parsed into. A 304 then costs a round trip with no body and
+ * no parsing:
+ * <pre>
+ * try (InputStream body = cache.open(transport, url, key)) {
+ *     if (ConditionalGetCache.isNotModified(body)) {
+ *         return ConditionalGetCache.notModifiedValue(body);
+ *     }
+ *     return cache.store(key, body, parse(body));
+ * }
+ * </pre>
+ * The key is the url, plus anything else the parsed value depends on. Only the most recently used
+ * {@value #DEFAULT_MAX_ENTRIES} keys are remembered.
+ */
+public class ConditionalGetCache {
+
+	static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	private final Map<String, Entry> entries;
+	private final AtomicLong notModifiedCount = new AtomicLong();
+
+	public ConditionalGetCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public ConditionalGetCache(int maxEntries) {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Body of a fresh response, or a body for which {@link #isNotModified(InputStream)} holds when the
+	 * value stored under <code>key</code> is still current. Error responses become IOExceptions.
+	 */
+	public InputStream open(HttpTransport transport, String url, String key) throws IOException {
+		Utils.log("Fetching url: %s", url);
+		HttpRequest request = new HttpRequest(url);
+		Entry entry = entry(key);
+		if (entry != null) {
+			if (entry.eTag != null) {
+				request.setHeader("If-None-Match", entry.eTag);
+			}
+			if (entry.lastModified != null) {
+				request.setHeader("If-Modified-Since", entry.lastModified);
+			}
+		}
+
+		HttpResponse response = transport.execute(request);
+		if (response.getStatusCode() == HttpResponse.NOT_MODIFIED && entry != null) {
+			response.close();
+			notModifiedCount.incrementAndGet();
+			return new NotModified(entry.value);
+		}
+		if (!response.isSuccessful()) {
+			response.close();
+			throw new IOException("HTTP " + response.getStatusCode() + " from " + url);
+		}
+		return new ValidatedInputStream(response.getBody(), response.getHeader("ETag"), response.getHeader("Last-Modified"));
+	}
+
+	public static boolean isNotModified(InputStream body) {
+		return body instanceof NotModified;
+	}
+
+	/**
+	 * The value stored for a body that was not modified.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T notModifiedValue(InputStream body) {
+		return (T) ((NotModified) body).value;
+	}
+
+	/**
+	 * Remembers what the body was parsed into, when its response came with validators. Returns the value.
+	 */
+	public <T> T store(String key, InputStream body, T value) {
+		if (body instanceof ValidatedInputStream) {
+			ValidatedInputStream validated = (ValidatedInputStream) body;
+			synchronized (entries) {
+				if (validated.eTag == null && validated.lastModified == null) {
+					entries.remove(key);
+				} else {
+					entries.put(key, new Entry(validated.eTag, validated.lastModified, value));
+				}
+			}
+		}
+		return value;
+	}
+
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	private Entry entry(String key) {
+		synchronized (entries) {
+			return entries.get(key);
+		}
+	}
+
+	private static class Entry {
+		private final String eTag;
+		private final String lastModified;
+		private final Object value;
+
+		Entry(String eTag, String lastModified, Object value) {
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.value = value;
+		}
+	}
+
+	private static class ValidatedInputStream extends FilterInputStream {
+		private final String eTag;
+		private final String lastModified;
+
+		ValidatedInputStream(InputStream in, String eTag, String lastModified) {
+			super(in);
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private static class NotModified extends ByteArrayInputStream {
+		private final Object value;
+
+		NotModified(Object value) {
+			super(new byte[0]);
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package worktools.jenkins.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a second copy of a request that has taken longer than the recent 95th percentile and uses
+ * whichever response arrives first, closing the other. Only safe because every request to Jenkins is
+ * an idempotent GET. Nothing is hedged until enough latencies have been seen to know the percentile,
+ * nor before {@value #MIN_HEDGE_DELAY_IN_MILLI_SECONDS} ms. A request that fails before it is due to be
+ * hedged fails right away, without a second copy.
+ * <p>
+ * At most {@value #MAX_IN_FLIGHT} copies run on the background threads at a time. Beyond that requests
+ * are sent on the calling thread without hedging, and late requests go without their second copy.
+ */
+public class HedgingTransport implements HttpTransport {
+
+	static final int LATENCY_SAMPLES = 256;
+	static final int MIN_SAMPLES = 20;
+	static final double HEDGE_PERCENTILE = 0.95;
+	/** below this a second copy costs Jenkins more than it could save */
+	static final long MIN_HEDGE_DELAY_IN_MILLI_SECONDS = 50;
+	/** copies running in the background at once, primaries and hedges together */
+	static final int MAX_IN_FLIGHT = 16;
+
+	private static final ExecutorService HEDGING_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "jenkins-hedged-request");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final HttpTransport transport;
+	private final LatencyPercentiles latencies = new LatencyPercentiles(LATENCY_SAMPLES);
+	private final AtomicLong hedgedCount = new AtomicLong();
+	private final Semaphore inFlight;
+
+	public HedgingTransport(HttpTransport transport) {
+		this(transport, MAX_IN_FLIGHT);
+	}
+
+	HedgingTransport(HttpTransport transport, int maxInFlight) {
+		this.transport = transport;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	@Override
+	public HttpResponse execute(HttpRequest request) throws IOException {
+		long hedgeDelay = getHedgeDelay();
+		if (hedgeDelay < 0 || !inFlight.tryAcquire()) {
+			return timedExecute(request);
+		}
+
+		CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger(1);
+		send(request, response, pending);
+		try {
+			return response.get(hedgeDelay, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			if (inFlight.tryAcquire()) {
+				if (addCopy(pending)) {
+					hedgedCount.incrementAndGet();
+					send(request, response, pending);
+				} else {
+					inFlight.release();
+				}
+			}
+			return await(response);
+		} catch (ExecutionException e) {
+			throw ioException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for " + request.getUrl());
+		}
+	}
+
+	/** requests a second copy was sent for */
+	public long getHedgedCount() {
+		return hedgedCount.get();
+	}
+
+	/** current delay before hedging in nanoseconds, -1 while still learning */
+	public long getHedgeDelay() {
+		long percentile = latencies.percentile(HEDGE_PERCENTILE, MIN_SAMPLES);
+		return percentile < 0 ? -1 : Math.max(percentile, TimeUnit.MILLISECONDS.toNanos(MIN_HEDGE_DELAY_IN_MILLI_SECONDS));
+	}
+
+	/**
+	 * Counts a copy about to be sent, unless every copy sent so far has failed already, and with it
+	 * <code>winner</code>.
+	 */
+	private static boolean addCopy(AtomicInteger pending) {
+		for (int copies = pending.get(); copies > 0; copies = pending.get()) {
+			if (pending.compareAndSet(copies, copies + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sends the request in the background, on a permit taken from <code>inFlight</code>; the first
+	 * successful response completes <code>winner</code>, later ones are closed. <code>winner</code> fails
+	 * once every copy counted in <code>pending</code> has failed.
+	 */
+	private void send(HttpRequest request, CompletableFuture<HttpResponse> winner, AtomicInteger pending) {
+		CompletableFuture<HttpResponse> sent = CompletableFuture.supplyAsync(RequestContext.current().wrap(() -> {
+			try {
+				return timedExecute(request);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}), HEDGING_EXECUTOR);
+		sent.whenComplete((response, error) -> {
+			inFlight.release();
+			if (error == null) {
+				if (!winner.complete(response)) {
+					closeQuietly(response);
+				}
+			} else if (pending.decrementAndGet() == 0) {
+				winner.completeExceptionally(error);
+			}
+		});
+	}
+
+	private HttpResponse timedExecute(HttpRequest request) throws IOException {
+		long start = System.nanoTime();
+		HttpResponse response = transport.execute(request);
+		latencies.record(System.nanoTime() - start);
+		return response;
+	}
+
+	private static HttpResponse await(CompletableFuture<HttpResponse> response) throws IOException {
+		try {
+			return response.get();
+		} catch (ExecutionException e) {
+			throw ioException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a hedged request");
+		}
+	}
+
+	private static IOException ioException(Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+	}
+
+	private static void closeQuietly(HttpResponse response) {
+		try {
+			response.close();
+		} catch (IOException e) {
+			// the losing copy is not needed
+		}
+	}
+}
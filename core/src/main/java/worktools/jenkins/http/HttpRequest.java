@@ -0,0 +1,33 @@
+package worktools.jenkins.http;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class HttpRequest {
+
+	private final String url;
+	private final Map<String, String> headers = new LinkedHashMap<>();
+
+	public HttpRequest(String url) {
+		this.url = url;
+	}
+
+	public HttpRequest setHeader(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	@Override
+	public String toString() {
+		return "GET " + url;
+	}
+}
@@ -0,0 +1,55 @@
+package worktools.jenkins.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Status, headers and the decoded body of a response. Closing the response, or its body, hands the
+ * connection back to the transport.
+ */
+public class HttpResponse implements Closeable {
+
+	public static final int OK = 200;
+	public static final int NOT_MODIFIED = 304;
+
+	private final int statusCode;
+	private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final InputStream body;
+
+	public HttpResponse(int statusCode, Map<String, String> headers, InputStream body) {
+		this.statusCode = statusCode;
+		this.headers.putAll(headers);
+		this.body = body;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public boolean isSuccessful() {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/**
+	 * Header value, matched ignoring case, or null.
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public InputStream getBody() {
+		return body;
+	}
+
+	@Override
+	public void close() throws IOException {
+		body.close();
+	}
+}
@@ -0,0 +1,20 @@
+package worktools.jenkins.http;
+
+import java.io.IOException;
+
+/**
+ * Sends GET requests to Jenkins. Implementations may pool connections, compress, limit or retry;
+ * callers only see the decoded response body.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Response for any status code; only failing to talk to the server at all is an IOException.
+	 * The caller closes the response.
+	 */
+	HttpResponse execute(HttpRequest request) throws IOException;
+
+	static HttpTransport defaultTransport() {
+		return UrlConnectionTransport.SHARED;
+	}
+}
@@ -0,0 +1,49 @@
+package worktools.jenkins.http;
+
+import java.util.Arrays;
+
+/**
+ * Percentiles over the most recent latencies, kept in a fixed size ring. The samples are only sorted
+ * again once {@value #RECOMPUTE_EVERY} more have been recorded, in between the last percentile is
+ * given.
+ */
+class LatencyPercentiles {
+
+	static final int RECOMPUTE_EVERY = 16;
+
+	private final long[] samples;
+	private int count;
+	private int next;
+	private int recordedSinceComputed;
+	private double computedFraction = Double.NaN;
+	private long computed;
+
+	LatencyPercentiles(int size) {
+		samples = new long[size];
+	}
+
+	synchronized void record(long latencyInNanos) {
+		samples[next] = latencyInNanos;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+		recordedSinceComputed++;
+	}
+
+	/**
+	 * Latency below which the given fraction of recent samples fall, or -1 with fewer than
+	 * <code>minSamples</code> recorded.
+	 */
+	synchronized long percentile(double fraction, int minSamples) {
+		if (count < minSamples || count == 0) {
+			return -1;
+		}
+		if (fraction != computedFraction || recordedSinceComputed >= RECOMPUTE_EVERY) {
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			computed = sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+			computedFraction = fraction;
+			recordedSinceComputed = 0;
+		}
+		return computed;
+	}
+}
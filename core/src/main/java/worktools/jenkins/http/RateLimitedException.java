@@ -0,0 +1,15 @@
+package worktools.jenkins.http;
+
+import java.io.IOException;
+
+/**
+ * A request was not sent because Jenkins is being given time to recover.
+ */
+public class RateLimitedException extends IOException {
+
+	private static final long serialVersionUID = 3022873623519876562L;
+
+	public RateLimitedException(String message) {
+		super(message);
+	}
+}
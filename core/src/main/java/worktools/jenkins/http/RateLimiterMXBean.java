@@ -0,0 +1,26 @@
+package worktools.jenkins.http;
+
+/**
+ * State of the {@link AdaptiveRateLimiter} of one Jenkins host, registered as
+ * <code>worktools.jenkins:type=RateLimiter,host=&lt;host&gt;</code>.
+ */
+public interface RateLimiterMXBean {
+
+	/** requests per second currently allowed */
+	double getRate();
+
+	double getMaxRate();
+
+	double getAvailableTokens();
+
+	/** how much slower than at full rate polling should currently go, 1 when not limited */
+	double getSlowdown();
+
+	long getRequestCount();
+
+	/** requests refused because they would have waited too long for a token */
+	long getRejectedCount();
+
+	/** 429 / 503 responses and responses slower than the latency target */
+	long getOverloadCount();
+}
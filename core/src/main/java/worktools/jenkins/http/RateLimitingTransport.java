@@ -0,0 +1,121 @@
+package worktools.jenkins.http;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Sends requests through an {@link AdaptiveRateLimiter} per Jenkins host, so a struggling server
+ * sees fewer requests instead of more retries. A request that would wait longer than the maximum
+ * for its turn fails with a {@link RateLimitedException}; {@link #getPollingSlowdown()} tells
+ * pollers how much to back off.
+ */
+public class RateLimitingTransport implements HttpTransport {
+
+	public static final double DEFAULT_MAX_RATE = 10;
+	public static final double DEFAULT_MIN_RATE = 0.2;
+	public static final long DEFAULT_LATENCY_TARGET_IN_MILLI_SECONDS = 3000;
+	public static final long DEFAULT_MAX_WAIT_IN_MILLI_SECONDS = 10000;
+
+	private final HttpTransport transport;
+	private final double minRate;
+	private final double maxRate;
+	private final long latencyTargetInMilliSeconds;
+	private final long maxWaitInNanos;
+	private final Map<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<>();
+	private volatile boolean registerMBeans;
+
+	public RateLimitingTransport(HttpTransport transport) {
+		this(transport, DEFAULT_MIN_RATE, DEFAULT_MAX_RATE, DEFAULT_LATENCY_TARGET_IN_MILLI_SECONDS, DEFAULT_MAX_WAIT_IN_MILLI_SECONDS);
+	}
+
+	public RateLimitingTransport(HttpTransport transport, double minRate, double maxRate, long latencyTargetInMilliSeconds, long maxWaitInMilliSeconds) {
+		this.transport = transport;
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.latencyTargetInMilliSeconds = latencyTargetInMilliSeconds;
+		this.maxWaitInNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitInMilliSeconds);
+	}
+
+	@Override
+	public HttpResponse execute(HttpRequest request) throws IOException {
+		String host = host(request.getUrl());
+		AdaptiveRateLimiter limiter = limiter(host);
+		RequestContext context = RequestContext.current();
+		context.checkActive();
+		long wait = limiter.reserve(Math.min(maxWaitInNanos, context.remainingNanos()));
+		if (wait < 0) {
+			throw new RateLimitedException("Too many requests queued for " + host + ", allowing " + limiter.getRate() + " per second");
+		}
+		if (wait > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RateLimitedException("Interrupted waiting to send a request to " + host);
+			}
+		}
+
+		long start = System.nanoTime();
+		HttpResponse response = transport.execute(request);
+		limiter.onResponse(response.getStatusCode(), System.nanoTime() - start, retryAfter(response));
+		return response;
+	}
+
+	/**
+	 * Factor to stretch polling intervals by, the largest over all hosts; 1 while nothing is limited.
+	 */
+	public double getPollingSlowdown() {
+		double slowdown = 1;
+		for (AdaptiveRateLimiter limiter : limiters.values()) {
+			slowdown = Math.max(slowdown, limiter.getSlowdown());
+		}
+		return slowdown;
+	}
+
+	public RateLimiterMXBean getLimiter(String host) {
+		return limiters.get(host);
+	}
+
+	/**
+	 * Publishes the limiter of every host, now and as they are created, on the platform MBean server.
+	 */
+	public RateLimitingTransport registerMBeans() {
+		registerMBeans = true;
+		limiters.forEach(RateLimitingTransport::registerMBean);
+		return this;
+	}
+
+	private AdaptiveRateLimiter limiter(String host) {
+		return limiters.computeIfAbsent(host, h -> {
+			AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(minRate, maxRate, maxRate, latencyTargetInMilliSeconds);
+			if (registerMBeans) {
+				registerMBean(h, limiter);
+			}
+			return limiter;
+		});
+	}
+
+	private static void registerMBean(String host, AdaptiveRateLimiter limiter) {
+		Utils.registerMBean(limiter, "worktools.jenkins:type=RateLimiter,host=" + ObjectName.quote(host));
+	}
+
+	static String host(String url) throws IOException {
+		URL parsed = new URL(url);
+		return parsed.getPort() < 0 ? parsed.getHost() : parsed.getHost() + ":" + parsed.getPort();
+	}
+
+	/**
+	 * Retry-After in milliseconds when given as seconds, 0 otherwise.
+	 */
+	static long retryAfter(HttpResponse response) {
+		long seconds = Utils.parseLong(response.getHeader("Retry-After"), 0);
+		return TimeUnit.SECONDS.toMillis(Math.max(0, seconds));
+	}
+}
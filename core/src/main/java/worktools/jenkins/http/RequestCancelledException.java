@@ -0,0 +1,15 @@
+package worktools.jenkins.http;
+
+import java.io.InterruptedIOException;
+
+/**
+ * The {@link RequestContext} a request was made in was cancelled or ran past its deadline.
+ */
+public class RequestCancelledException extends InterruptedIOException {
+
+	private static final long serialVersionUID = -6019385011316843390L;
+
+	public RequestCancelledException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,153 @@
+package worktools.jenkins.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Deadline and cancellation shared by every request made for one piece of work, e.g. one poll.
+ * The context is bound to the thread running the work with {@link #call(Supplier)}, so data services
+ * need not pass it along; code handing work to other threads carries it over with
+ * {@link #wrap(Supplier)}. Cancelling closes the connections still open in the context, which is
+ * what unblocks a socket read, as interrupting the thread does not.
+ * <p>
+ * Work not run in a context runs in {@link #background()}, which has no deadline and cannot be cancelled.
+ */
+public final class RequestContext {
+
+	private static final RequestContext BACKGROUND = new RequestContext(false, 0);
+	private static final ThreadLocal<RequestContext> CURRENT = ThreadLocal.withInitial(() -> BACKGROUND);
+
+	private final boolean hasDeadline;
+	private final long deadline;
+	private final Set<Closeable> resources = new HashSet<>();
+	private volatile boolean cancelled;
+
+	private RequestContext(boolean hasDeadline, long deadline) {
+		this.hasDeadline = hasDeadline;
+		this.deadline = deadline;
+	}
+
+	public static RequestContext withTimeout(long timeoutInMilliSeconds) {
+		return new RequestContext(true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMilliSeconds));
+	}
+
+	public static RequestContext withoutDeadline() {
+		return new RequestContext(false, 0);
+	}
+
+	public static RequestContext background() {
+		return BACKGROUND;
+	}
+
+	/**
+	 * Context of the work running on this thread.
+	 */
+	public static RequestContext current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Runs the task on this thread with this as the current context.
+	 */
+	public <T> T call(Supplier<T> task) {
+		RequestContext previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			return task.get();
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * The task, to be run on another thread in this context.
+	 */
+	public <T> Supplier<T> wrap(Supplier<T> task) {
+		return () -> call(task);
+	}
+
+	public boolean isActive() {
+		return !cancelled && remainingNanos() > 0;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void checkActive() throws RequestCancelledException {
+		if (cancelled) {
+			throw new RequestCancelledException("Request cancelled");
+		}
+		if (remainingNanos() <= 0) {
+			throw new RequestCancelledException("Request deadline passed");
+		}
+	}
+
+	/**
+	 * Time left before the deadline, Long.MAX_VALUE without one.
+	 */
+	public long remainingNanos() {
+		return hasDeadline ? deadline - System.nanoTime() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * The timeout, shortened to what is left before the deadline; at least 1 ms, as 0 means no timeout
+	 * to sockets.
+	 */
+	public int timeout(int timeoutInMilliSeconds) {
+		long remaining = TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+		return (int) Math.max(1, Math.min(timeoutInMilliSeconds, remaining));
+	}
+
+	/**
+	 * Stops new requests in this context and closes the open ones. Does nothing in the background context.
+	 */
+	public void cancel() {
+		if (this == BACKGROUND) {
+			return;
+		}
+		Closeable[] open;
+		synchronized (resources) {
+			cancelled = true;
+			open = resources.toArray(new Closeable[resources.size()]);
+			resources.clear();
+		}
+		for (Closeable resource : open) {
+			try {
+				resource.close();
+			} catch (IOException e) {
+				// closing only unblocks the reader, which reports the failure
+			}
+		}
+	}
+
+	/**
+	 * Keeps the resource to close on {@link #cancel()}, closing it right away when already cancelled.
+	 */
+	void register(Closeable resource) throws IOException {
+		if (this == BACKGROUND) {
+			return;
+		}
+		synchronized (resources) {
+			if (!cancelled) {
+				resources.add(resource);
+				return;
+			}
+		}
+		resource.close();
+		throw new RequestCancelledException("Request cancelled");
+	}
+
+	void unregister(Closeable resource) {
+		if (this == BACKGROUND) {
+			return;
+		}
+		synchronized (resources) {
+			resources.remove(resource);
+		}
+	}
+}
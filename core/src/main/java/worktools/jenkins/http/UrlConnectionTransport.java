@@ -0,0 +1,145 @@
+package worktools.jenkins.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link HttpTransport} on HttpURLConnection. Asks for gzip, which Jenkins xml/json compresses very
+ * well, and never waits forever on connect or read, nor past the deadline of the current
+ * {@link RequestContext}, whose cancellation closes the connection. Connections are pooled per host by the JDK's
+ * keep-alive cache (sized with the <code>http.maxConnections</code> system property) as long as every
+ * response is read to the end before it is closed; closing drains small leftovers so the connection
+ * can be reused, and drops the connection when a parser stopped reading early with a lot left.
+ * <p>
+ * HTTP/2 is not available to HttpURLConnection, requests are sent over HTTP/1.1.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+	static final UrlConnectionTransport SHARED = new UrlConnectionTransport();
+
+	static final int DEFAULT_CONNECT_TIMEOUT_IN_MILLI_SECONDS = 5 * 1000;
+	static final int DEFAULT_READ_TIMEOUT_IN_MILLI_SECONDS = 30 * 1000;
+	/** unread response bytes worth reading off to keep the connection, rather than reconnecting */
+	static final int DRAIN_LIMIT = 64 * 1024;
+
+	private final int connectTimeoutInMilliSeconds;
+	private final int readTimeoutInMilliSeconds;
+
+	public UrlConnectionTransport() {
+		this(DEFAULT_CONNECT_TIMEOUT_IN_MILLI_SECONDS, DEFAULT_READ_TIMEOUT_IN_MILLI_SECONDS);
+	}
+
+	public UrlConnectionTransport(int connectTimeoutInMilliSeconds, int readTimeoutInMilliSeconds) {
+		this.connectTimeoutInMilliSeconds = connectTimeoutInMilliSeconds;
+		this.readTimeoutInMilliSeconds = readTimeoutInMilliSeconds;
+	}
+
+	@Override
+	public HttpResponse execute(HttpRequest request) throws IOException {
+		RequestContext context = RequestContext.current();
+		context.checkActive();
+		HttpURLConnection connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+		connection.setConnectTimeout(context.timeout(connectTimeoutInMilliSeconds));
+		connection.setReadTimeout(context.timeout(readTimeoutInMilliSeconds));
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+
+		Closeable disconnect = connection::disconnect;
+		context.register(disconnect);
+		int statusCode;
+		try {
+			statusCode = connection.getResponseCode();
+		} catch (IOException e) {
+			context.unregister(disconnect);
+			connection.disconnect();
+			throw e;
+		}
+
+		InputStream body = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		body = new ReleasingInputStream(body == null ? new ByteArrayInputStream(new byte[0]) : body, connection, context, disconnect);
+		if ("gzip".equalsIgnoreCase(connection.getContentEncoding()) && hasBody(statusCode)) {
+			try {
+				body = new GZIPInputStream(body, 8 * 1024);
+			} catch (IOException e) {
+				body.close();
+				throw e;
+			}
+		}
+		return new HttpResponse(statusCode, headers(connection), body);
+	}
+
+	private static boolean hasBody(int statusCode) {
+		return statusCode != HttpResponse.NOT_MODIFIED && statusCode != 204;
+	}
+
+	private static Map<String, String> headers(HttpURLConnection connection) {
+		Map<String, String> headers = new HashMap<>();
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			if (header.getKey() != null && !header.getValue().isEmpty()) {
+				headers.put(header.getKey(), header.getValue().get(0));
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Closing reads off up to {@value #DRAIN_LIMIT} remaining bytes so the JDK can pool the connection,
+	 * and disconnects when there is more than that. The connection is no longer closed on cancelling the
+	 * request context once the response is closed.
+	 */
+	private static class ReleasingInputStream extends FilterInputStream {
+		private final HttpURLConnection connection;
+		private final RequestContext context;
+		private final Closeable disconnect;
+		private boolean closed;
+
+		ReleasingInputStream(InputStream in, HttpURLConnection connection, RequestContext context, Closeable disconnect) {
+			super(in);
+			this.connection = connection;
+			this.context = context;
+			this.disconnect = disconnect;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			context.unregister(disconnect);
+			try {
+				if (drain()) {
+					in.close();
+				} else {
+					connection.disconnect();
+				}
+			} catch (IOException e) {
+				connection.disconnect();
+			}
+		}
+
+		private boolean drain() throws IOException {
+			byte[] buffer = new byte[8 * 1024];
+			int drained = 0;
+			while (drained <= DRAIN_LIMIT) {
+				int read = in.read(buffer);
+				if (read < 0) {
+					return true;
+				}
+				drained += read;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package worktools.jenkins.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import worktools.jenkins.models.BuildEvent;
+import worktools.jenkins.models.BuildEvent.Phase;
+import worktools.jenkins.utils.JsonTokenizer;
+import worktools.jenkins.utils.JsonTokenizer.Token;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Accepts build events pushed by the Jenkins notification plugin, configured with the json format and
+ * the http protocol, on <code>POST /notifications</code>:
+ * <pre>
+ * {"name":"G3Build-Master","url":"job/G3Build-Master/","build":{"number":42,"phase":"COMPLETED","status":"SUCCESS",...}}
+ * </pre>
+ * Runs on the JDK's built-in http server with a single thread; events are handed to the consumer on it,
+ * so consumers should only schedule work.
+ * <p>
+ * Listens on loopback unless told otherwise. Listening on any other address needs a shared secret, which
+ * Jenkins passes as the <code>token</code> query parameter of the url configured in the plugin, e.g.
+ * <code>http://host:port/notifications?token=...</code>; events without it are refused.
+ */
+public class WebhookReceiver implements Closeable {
+
+	public static final String PATH = "/notifications";
+	public static final String TOKEN_PARAMETER = "token";
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "webhook-receiver");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Consumer<BuildEvent> consumer;
+	private final byte[] secret;
+
+	/**
+	 * Listens on loopback, without a secret.
+	 *
+	 * @param port port to listen on, 0 for an ephemeral one, see {@link #getPort()}
+	 */
+	public WebhookReceiver(int port, Consumer<BuildEvent> consumer) {
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null, consumer);
+	}
+
+	/**
+	 * @param secret token events have to carry, null to accept any event, which is only allowed on loopback
+	 */
+	public WebhookReceiver(InetSocketAddress address, String secret, Consumer<BuildEvent> consumer) {
+		boolean loopback = address.getAddress() != null && address.getAddress().isLoopbackAddress();
+		if ((secret == null || secret.isEmpty()) && !loopback) {
+			throw new IllegalArgumentException("Listening for build events on " + address + " needs a shared secret");
+		}
+		this.consumer = consumer;
+		this.secret = secret == null || secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+		try {
+			server = HttpServer.create(address, 0);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not listen for build events on " + address, e);
+		}
+		server.createContext(PATH, this::handle);
+		server.setExecutor(executor);
+	}
+
+	public WebhookReceiver start() {
+		server.start();
+		Utils.log("Listening for build events on %s", server.getAddress());
+		return this;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			if (!isAuthorized(exchange)) {
+				Utils.log("Refusing build event from %s without the shared secret", exchange.getRemoteAddress());
+				exchange.sendResponseHeaders(403, -1);
+				return;
+			}
+			BuildEvent event;
+			try (InputStream in = exchange.getRequestBody()) {
+				event = parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				Utils.log("Ignoring malformed build event: %s", e.getMessage());
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(202, -1);
+			consumer.accept(event);
+		} catch (RuntimeException e) {
+			Utils.log("Could not handle build event: %s", e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Compares the token in constant time, so its value cannot be guessed from how quickly it is refused.
+	 */
+	private boolean isAuthorized(HttpExchange exchange) throws UnsupportedEncodingException {
+		if (secret == null) {
+			return true;
+		}
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) {
+			return false;
+		}
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0 && TOKEN_PARAMETER.equals(parameter.substring(0, equals))) {
+				String token = URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+				return MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the job name and the build's number, phase and status, skipping everything else.
+	 */
+	static BuildEvent parse(Reader reader) throws IOException {
+		JsonTokenizer json = new JsonTokenizer(reader);
+		if (json.next() != Token.START_OBJECT) {
+			throw new IOException("Build event is not a json object");
+		}
+		String name = null;
+		long number = -1;
+		Phase phase = Phase.UNKNOWN;
+		String status = null;
+		while (json.next() == Token.NAME) {
+			if (json.textEquals("name")) {
+				json.next();
+				name = json.text();
+			} else if (json.textEquals("build")) {
+				if (json.next() == Token.START_OBJECT) {
+					while (json.next() == Token.NAME) {
+						if (json.textEquals("number")) {
+							json.next();
+							number = json.longValue(-1);
+						} else if (json.textEquals("phase")) {
+							json.next();
+							phase = Phase.of(json.text());
+						} else if (json.textEquals("status")) {
+							json.next();
+							status = json.text();
+						} else {
+							json.skipValue();
+						}
+					}
+				} else if (json.current() == Token.START_ARRAY) {
+					json.skipChildren();
+				}
+			} else {
+				json.skipValue();
+			}
+		}
+		if (name == null) {
+			throw new IOException("Build event without a job name");
+		}
+		return new BuildEvent(name, number, phase, status);
+	}
+}
@@ -0,0 +1,58 @@
+package worktools.jenkins.models;
+
+/**
+ * A build of a job changing phase, as pushed by the Jenkins notification plugin.
+ */
+public class BuildEvent {
+
+	public enum Phase {
+		QUEUED,
+		STARTED,
+		COMPLETED,
+		FINALIZED,
+		UNKNOWN;
+
+		public static Phase of(String phase) {
+			for (Phase value : values()) {
+				if (value.name().equalsIgnoreCase(phase)) {
+					return value;
+				}
+			}
+			return UNKNOWN;
+		}
+	}
+
+	private final String jobCategory;
+	private final long buildNumber;
+	private final Phase phase;
+	private final String status;
+
+	public BuildEvent(String jobCategory, long buildNumber, Phase phase, String status) {
+		this.jobCategory = jobCategory;
+		this.buildNumber = buildNumber;
+		this.phase = phase;
+		this.status = status;
+	}
+
+	public String getJobCategory() {
+		return jobCategory;
+	}
+
+	public long getBuildNumber() {
+		return buildNumber;
+	}
+
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/** result of the build once it has completed, null before */
+	public String getStatus() {
+		return status;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s #%s %s %s", jobCategory, buildNumber, phase, status);
+	}
+}
@@ -1,13 +1,32 @@
 package worktools.jenkins.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.Objects;
 
+/**
+ * Identifies a build. Project and category are kept as {@link Symbols} ids and the build number as a
+ * primitive, so hashing and comparing keys never touches a String. Job ids that are not build numbers
+ * (e.g. "job" for the lastBuild style fixtures) are stored as negative symbol ids.
+ * <p>
+ * The serialized form is still the three Strings, so existing cache files keep loading.
+ */
 public class JobKey implements Serializable {
 	private static final long serialVersionUID = -8202103744248263793L;
-	private final String project;
-	private final String jobId;
-	private final String jobCategory;
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("project", String.class),
+			new ObjectStreamField("jobId", String.class),
+			new ObjectStreamField("jobCategory", String.class)
+	};
+	/** longest decimal id that still fits a long */
+	private static final int MAX_BUILD_NUMBER_DIGITS = 18;
+
+	private transient int project;
+	private transient int jobCategory;
+	/** build number when zero or positive, otherwise -(symbol id of the job id + 2) */
+	private transient long jobId;
 	
 	private static final JobKey empty = new JobKey("", "unknown jobid", "unknown job category");
 	public static JobKey empty() {
@@ -15,33 +34,69 @@ public class JobKey implements Serializable {
 	}
 
 	public JobKey(String project, String jobId, String jobCategory) {
-		this.project = project;
-		this.jobId = jobId;
-		this.jobCategory = jobCategory;
+		init(project, jobId, jobCategory);
+	}
+
+	private void init(String project, String jobId, String jobCategory) {
+		this.project = Symbols.id(project);
+		this.jobCategory = Symbols.id(jobCategory);
+		this.jobId = encodeJobId(jobId);
+	}
+
+	private static long encodeJobId(String jobId) {
+		if (isBuildNumber(jobId)) {
+			return Long.parseLong(jobId);
+		}
+		return -((long) Symbols.id(jobId) + 2);
+	}
+
+	/** plain decimal without leading zeros, so the String can be given back unchanged */
+	private static boolean isBuildNumber(String jobId) {
+		if (jobId == null || jobId.isEmpty() || jobId.length() > MAX_BUILD_NUMBER_DIGITS
+				|| (jobId.charAt(0) == '0' && jobId.length() > 1)) {
+			return false;
+		}
+		for (int i = 0; i < jobId.length(); i++) {
+			char c = jobId.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public String getJobId() {
-		return jobId;
+		if (jobId >= 0) {
+			return Long.toString(jobId);
+		}
+		return Symbols.name((int) (-jobId - 2));
+	}
+
+	/**
+	 * Build number of the job, or -1 when its id is not a number.
+	 */
+	public long getBuildNumber() {
+		return jobId >= 0 ? jobId : -1;
 	}
 
 	public String getJobCategory() {
-		return jobCategory;
+		return Symbols.name(jobCategory);
 	}
 	
 	public String getProject() {
-		return project;
+		return Symbols.name(project);
 	}
 	
 	@Override
 	public String toString() {
-		return String.format("JobKey [%s, %s, %s]", project, jobCategory, jobId);
+		return String.format("JobKey [%s, %s, %s]", getProject(), getJobCategory(), getJobId());
 	}
 
 	@Override
 	public int hashCode() {
-		int result = 31 * 1 + Objects.hashCode(jobCategory);
-		result = 31 * result + Objects.hashCode(jobId);
-		result = 31 * result + Objects.hashCode(project);
+		int result = 31 * 1 + jobCategory;
+		result = 31 * result + Long.hashCode(jobId);
+		result = 31 * result + project;
 		return result;
 	}
 
@@ -51,9 +106,22 @@ public class JobKey implements Serializable {
 			return false;
 		}
 		JobKey that = (JobKey) obj;
-		return Objects.equals(jobId, that.jobId)
-				&& Objects.equals(jobCategory, that.jobCategory)
-				&& Objects.equals(project, that.project);
+		return jobId == that.jobId
+				&& jobCategory == that.jobCategory
+				&& project == that.project;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("project", getProject());
+		fields.put("jobId", getJobId());
+		fields.put("jobCategory", getJobCategory());
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		init((String) fields.get("project", null), (String) fields.get("jobId", null), (String) fields.get("jobCategory", null));
 	}
 	
 	public static void main(String[] args) {
@@ -66,4 +134,4 @@ public class JobKey implements Serializable {
 		System.out.println(jk1.equals(jk3));
 		System.out.println(jk1.equals(jk4));
 	}
-}
\ No newline at end of file
+}
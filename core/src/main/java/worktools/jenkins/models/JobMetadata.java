@@ -3,6 +3,10 @@ package worktools.jenkins.models;
 import java.io.Serializable;
 import java.util.Objects;
 
+/**
+ * Owner and build stage are canonicalized through {@link Symbols}, so the many cached runs of one owner
+ * share a single String.
+ */
 public class JobMetadata implements Serializable {
 
 	private static final long serialVersionUID = 7212344173790945779L;
@@ -13,18 +17,24 @@ public class JobMetadata implements Serializable {
 	private final String gerritComment;
 	private final String buildStage;
 	private final long buildTime;
+	private final long timestamp;
 
 	public JobMetadata(JobKey jobKey, String buildStatus, String owner, String gerritComment, String buildStage, long buildTime) {
-		this(jobKey, Result.valueOf(buildStatus), owner, gerritComment, buildStage, 0);
+		this(jobKey, Result.of(buildStatus), owner, gerritComment, buildStage, 0);
 	}
 	
 	public JobMetadata(JobKey jobKey, Result result, String owner, String gerritComment, String buildStage, long duration) {
+		this(jobKey, result, owner, gerritComment, buildStage, duration, 0);
+	}
+	
+	public JobMetadata(JobKey jobKey, Result result, String owner, String gerritComment, String buildStage, long duration, long timestamp) {
 		this.jobKey = jobKey;
 		this.result = result;
-		this.owner = owner;
+		this.owner = Symbols.intern(owner);
 		this.gerritComment = gerritComment;
-		this.buildStage = buildStage;
+		this.buildStage = Symbols.intern(buildStage);
 		this.buildTime = duration;
+		this.timestamp = timestamp;
 	}
 	
 	public static JobMetadata empty() {
@@ -67,6 +77,10 @@ public class JobMetadata implements Serializable {
 		return buildTime;
 	}
 	
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
 	public enum Result {
 		FAILURE,
 		SUCCESS,
@@ -74,6 +88,23 @@ public class JobMetadata implements Serializable {
 		ABORTED,
 		UNSTABLE,
 		UNKNOWN;
+
+		private static final Result[] RESULTS = values();
+
+		/**
+		 * The result named <code>name</code>, or {@link #UNKNOWN} for a missing name and for results
+		 * Jenkins has that are not listed here, such as NOT_BUILT.
+		 */
+		public static Result of(String name) {
+			if (name != null) {
+				for (Result result : RESULTS) {
+					if (result.name().equals(name)) {
+						return result;
+					}
+				}
+			}
+			return UNKNOWN;
+		}
 	}
 
 	@Override
@@ -102,6 +133,13 @@ public class JobMetadata implements Serializable {
 				&& Objects.equals(buildStage, that.buildStage);
 	}
 
+	/**
+	 * Deserialized instances get the canonical owner and stage Strings too, instead of a copy each.
+	 */
+	private Object readResolve() {
+		return new JobMetadata(jobKey, result, owner, gerritComment, buildStage, buildTime, timestamp);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("JobMetadata [jobKey=%s, owner=%s, result=%s, stage=%s]", jobKey, owner, result, buildStage);
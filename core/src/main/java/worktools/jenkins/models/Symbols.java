@@ -0,0 +1,54 @@
+package worktools.jenkins.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide dictionary handing out a small int id, and one canonical String instance, per distinct
+ * value. Meant only for low cardinality values that repeat across millions of cached jobs: projects,
+ * categories, owners, build stages. Entries are never removed.
+ */
+final class Symbols {
+
+	static final int NONE = -1;
+
+	private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private static volatile String[] names = new String[64];
+	private static int size;
+
+	private Symbols() {
+	}
+
+	static int id(String name) {
+		if (name == null) {
+			return NONE;
+		}
+		Integer id = ids.get(name);
+		return id != null ? id : register(name);
+	}
+
+	static String name(int id) {
+		return id == NONE ? null : names[id];
+	}
+
+	static String intern(String name) {
+		return name(id(name));
+	}
+
+	private static synchronized int register(String name) {
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		String[] current = names;
+		if (size == current.length) {
+			current = Arrays.copyOf(current, size * 2);
+		}
+		current[size] = name;
+		names = current;
+		// published after the name, so whoever sees the id also sees names[id]
+		ids.put(name, size);
+		return size++;
+	}
+}
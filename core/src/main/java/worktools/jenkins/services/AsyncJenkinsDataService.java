@@ -0,0 +1,67 @@
+package worktools.jenkins.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Non blocking counterpart of {@link JenkinsDataService}.
+ */
+public interface AsyncJenkinsDataService {
+
+	CompletableFuture<JobMetadata> fetchJobDataAsync(JobKey jobKey);
+
+	CompletableFuture<List<JobKey>> fetchJobsAsync(String project, String jobCategory);
+
+	/**
+	 * Like {@link JenkinsDataService#fetchJobsAfter(String, String, long)}.
+	 */
+	default CompletableFuture<List<JobKey>> fetchJobsAfterAsync(String project, String jobCategory, long afterBuildNumber) {
+		return fetchJobsAsync(project, jobCategory).thenApply(jobKeys -> jobKeys.stream()
+				.filter(jobKey -> Utils.parseLong(jobKey.getJobId(), Long.MAX_VALUE) > afterBuildNumber)
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * How many candidate builds {@link #fetchJobAsync(JobSearchKey)} fetches at once.
+	 */
+	default int parallelism() {
+		return 1;
+	}
+
+	/**
+	 * Newest build of the owner, like {@link JenkinsDataService#fetchJob(JobSearchKey)}, with up to
+	 * {@link #parallelism()} candidates fetched at once.
+	 */
+	default CompletableFuture<JobMetadata> fetchJobAsync(JobSearchKey jobSearchKey) {
+		String owner = jobSearchKey.getOwner();
+		return fetchJobsAsync(jobSearchKey.getProject(), jobSearchKey.getJobCategory())
+				.thenCompose(jobKeys -> OrderedFanOut.firstMatch(jobKeys, parallelism(), this::fetchJobDataAsync,
+						jobMetadata -> owner.equalsIgnoreCase(jobMetadata.getOwner())))
+				.thenApply(jobMetadata -> jobMetadata != null ? jobMetadata : JobMetadata.empty());
+	}
+
+	/**
+	 * Waits for the result, rethrowing what the fetch failed with as it would have been thrown by the
+	 * blocking api.
+	 */
+	static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
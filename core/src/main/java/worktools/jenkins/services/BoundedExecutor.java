@@ -0,0 +1,82 @@
+package worktools.jenkins.services;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import worktools.jenkins.http.RequestContext;
+
+/**
+ * Runs tasks on an executor, at most <code>maxConcurrent</code> at a time, in submission order. Tasks
+ * wait in a queue rather than holding a thread, and a task whose future is cancelled before it
+ * started is never run. Tasks run in the {@link RequestContext} they were submitted from, and are
+ * not started once that has been cancelled or its deadline has passed.
+ */
+class BoundedExecutor {
+
+	private final Executor executor;
+	private final int maxConcurrent;
+	private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger running = new AtomicInteger();
+
+	BoundedExecutor(Executor executor, int maxConcurrent) {
+		this.executor = executor;
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	<T> CompletableFuture<T> submit(Supplier<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		RequestContext context = RequestContext.current();
+		queue.add(() -> {
+			try {
+				if (!context.isActive()) {
+					future.completeExceptionally(new CancellationException("Request context is no longer active"));
+				} else if (!future.isDone()) {
+					future.complete(context.call(task));
+				}
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				running.decrementAndGet();
+				drain();
+			}
+		});
+		drain();
+		return future;
+	}
+
+	private void drain() {
+		while (true) {
+			int current = running.get();
+			if (current >= maxConcurrent) {
+				return;
+			}
+			if (!running.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			Runnable next = queue.poll();
+			if (next == null) {
+				running.decrementAndGet();
+				// a task queued after the poll may have seen us as running and left it to us
+				if (queue.isEmpty()) {
+					return;
+				}
+				continue;
+			}
+			try {
+				executor.execute(next);
+			} catch (RuntimeException e) {
+				running.decrementAndGet();
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,458 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.services.CachedJenkinsDataService.CachedJobKeys;
+
+/**
+ * Binary files the caches are saved in, one map per file:
+ * <pre>
+ * "JNCF" version:u8 kind:u8
+ * strings:varint (length:varint utf-8 bytes)*
+ * entries:varint entry*
+ * crc32:u32 of everything before it
+ * </pre>
+ * Every String, enum names included, is written once in the dictionary and referred to by its index
+ * plus one, 0 standing for null; numbers are LEB128 varints, zig-zag encoded when they can be negative.
+ * Files are written to a temporary file first and moved in place, so a crash while saving leaves the
+ * previous file intact.
+ * <p>
+ * {@link CacheJournal} records hold a single change each, <code>kind:u8 strings entry</code>, with
+ * kind {@value #CLEAR} for the caches being cleared.
+ */
+final class CacheFileFormat {
+
+	static final int VERSION = 1;
+	static final int CLEAR = 0;
+	private static final byte[] MAGIC = {'J', 'N', 'C', 'F'};
+	private static final int HEADER_LENGTH = MAGIC.length + 2;
+	private static final int CHECKSUM_LENGTH = 4;
+	/** a record's body is mostly dictionary indexes, a few dozen bytes; longer ones grow */
+	private static final int RECORD_BODY_CAPACITY = 64;
+
+	/**
+	 * How one kind of map entry is laid out.
+	 */
+	interface Codec<K, V> {
+
+		int kind();
+
+		void write(K key, V value, Output out);
+
+		void read(Input in, Map<K, V> into) throws IOException;
+	}
+
+	static final Codec<JobKey, JobMetadata> JOB_METADATA = new Codec<JobKey, JobMetadata>() {
+
+		@Override
+		public int kind() {
+			return 1;
+		}
+
+		@Override
+		public void write(JobKey jobKey, JobMetadata jobMetadata, Output out) {
+			writeJobKey(jobKey, out);
+			if (jobKey.equals(jobMetadata.getJobKey())) {
+				out.writeByte(0);
+			} else {
+				out.writeByte(1);
+				writeJobKey(jobMetadata.getJobKey(), out);
+			}
+			out.writeString(jobMetadata.getResult() == null ? null : jobMetadata.getResult().name());
+			out.writeString(jobMetadata.getOwner());
+			out.writeString(jobMetadata.getGerritComment());
+			out.writeString(jobMetadata.getBuildStage());
+			out.writeSignedVarLong(jobMetadata.getBuildTime());
+			out.writeSignedVarLong(jobMetadata.getTimestamp());
+		}
+
+		@Override
+		public void read(Input in, Map<JobKey, JobMetadata> into) throws IOException {
+			JobKey jobKey = readJobKey(in);
+			JobKey metadataJobKey = in.readByte() == 0 ? jobKey : readJobKey(in);
+			String result = in.readString();
+			JobMetadata jobMetadata = new JobMetadata(metadataJobKey, result(result), in.readString(), in.readString(), in.readString(),
+					in.readSignedVarLong(), in.readSignedVarLong());
+			into.put(jobKey, jobMetadata);
+		}
+	};
+
+	static final Codec<JobKey, String> JOB_OWNERS = new Codec<JobKey, String>() {
+
+		@Override
+		public int kind() {
+			return 2;
+		}
+
+		@Override
+		public void write(JobKey jobKey, String owner, Output out) {
+			writeJobKey(jobKey, out);
+			out.writeString(owner);
+		}
+
+		@Override
+		public void read(Input in, Map<JobKey, String> into) throws IOException {
+			JobKey jobKey = readJobKey(in);
+			String owner = in.readString();
+			if (owner != null) {
+				into.put(jobKey, owner);
+			}
+		}
+	};
+
+	static final Codec<String, CachedJobKeys> JOB_KEYS = new Codec<String, CachedJobKeys>() {
+
+		@Override
+		public int kind() {
+			return 3;
+		}
+
+		@Override
+		public void write(String jobCategory, CachedJobKeys cachedJobKeys, Output out) {
+			out.writeString(jobCategory);
+			List<JobKey> jobKeys = cachedJobKeys.toJobKeys();
+			out.writeVarLong(jobKeys.size());
+			for (JobKey jobKey : jobKeys) {
+				writeJobKey(jobKey, out);
+			}
+			out.writeSignedVarLong(cachedJobKeys.getCachedAtTimeStamp());
+			out.writeSignedVarLong(cachedJobKeys.getFullFetchTimeStamp());
+		}
+
+		@Override
+		public void read(Input in, Map<String, CachedJobKeys> into) throws IOException {
+			String jobCategory = in.readString();
+			int size = in.readVarInt();
+			List<JobKey> jobKeys = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				jobKeys.add(readJobKey(in));
+			}
+			into.put(jobCategory, new CachedJobKeys(jobKeys, in.readSignedVarLong(), in.readSignedVarLong()));
+		}
+	};
+
+	private CacheFileFormat() {
+	}
+
+	static <K, V> void write(Path file, Codec<K, V> codec, Map<K, V> map) throws IOException {
+		Output body = new Output(true);
+		body.writeVarLong(map.size());
+		for (Map.Entry<K, V> entry : map.entrySet()) {
+			codec.write(entry.getKey(), entry.getValue(), body);
+		}
+
+		Output head = new Output(false);
+		for (byte b : MAGIC) {
+			head.writeByte(b);
+		}
+		head.writeByte(VERSION);
+		head.writeByte(codec.kind());
+		writeDictionary(body, head);
+
+		ByteBuffer[] buffers = {head.flip(), body.flip(), ByteBuffer.allocate(CHECKSUM_LENGTH)};
+		CRC32 crc = new CRC32();
+		crc.update(buffers[0].array(), 0, buffers[0].limit());
+		crc.update(buffers[1].array(), 0, buffers[1].limit());
+		buffers[2].putInt(0, (int) crc.getValue());
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffers[2].hasRemaining()) {
+				channel.write(buffers);
+			}
+			channel.force(false);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Adds the entries of the file to the map.
+	 *
+	 * @throws IOException when the file is not a cache file of this kind, was written by a newer
+	 * version, or is damaged
+	 */
+	static <K, V> void read(Path file, Codec<K, V> codec, Map<K, V> into) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_LENGTH + CHECKSUM_LENGTH || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a cache file: " + file);
+			}
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+		}
+
+		for (byte b : MAGIC) {
+			if (buffer.get() != b) {
+				throw new IOException("Not a cache file: " + file);
+			}
+		}
+		int version = buffer.get() & 0xFF;
+		if (version > VERSION) {
+			throw new IOException("Cache file " + file + " was written by a newer version (" + version + ")");
+		}
+		int kind = buffer.get() & 0xFF;
+		if (kind != codec.kind()) {
+			throw new IOException("Cache file " + file + " holds entries of kind " + kind + ", expected " + codec.kind());
+		}
+		int end = buffer.limit() - CHECKSUM_LENGTH;
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, end);
+		if ((int) crc.getValue() != buffer.getInt(end)) {
+			throw new IOException("Cache file " + file + " is damaged, checksum mismatch");
+		}
+		buffer.limit(end);
+
+		try {
+			Input in = new Input(buffer);
+			in.readDictionary();
+			int entries = in.readVarInt();
+			Map<K, V> read = new HashMap<>(entries * 4 / 3 + 1);
+			for (int i = 0; i < entries; i++) {
+				codec.read(in, read);
+			}
+			into.putAll(read);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Cache file " + file + " is damaged", e);
+		}
+	}
+
+	/**
+	 * One entry as a journal record: its kind, the dictionary of its strings and the entry. The dictionary
+	 * is sized up front, at most three bytes per char plus the varint lengths.
+	 */
+	static <K, V> byte[] encodeRecord(Codec<K, V> codec, K key, V value) {
+		Output body = new Output(true, RECORD_BODY_CAPACITY);
+		codec.write(key, value, body);
+		int headCapacity = 1 + 10;
+		for (String string : body.strings.keySet()) {
+			headCapacity += 10 + 3 * string.length();
+		}
+		Output head = new Output(false, headCapacity);
+		head.writeByte(codec.kind());
+		writeDictionary(body, head);
+		return concat(head.flip(), body.flip());
+	}
+
+	static byte[] encodeClear() {
+		return new byte[] {CLEAR};
+	}
+
+	static int recordKind(ByteBuffer record) {
+		return record.get(record.position()) & 0xFF;
+	}
+
+	/**
+	 * Puts the entry of a record of the codec's kind into the map.
+	 *
+	 * @throws IOException when the record is damaged
+	 */
+	static <K, V> void decodeRecord(ByteBuffer record, Codec<K, V> codec, Map<K, V> into) throws IOException {
+		try {
+			int kind = record.get() & 0xFF;
+			if (kind != codec.kind()) {
+				throw new IOException("Journal record of kind " + kind + ", expected " + codec.kind());
+			}
+			Input in = new Input(record);
+			in.readDictionary();
+			codec.read(in, into);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Journal record is damaged", e);
+		}
+	}
+
+	private static void writeDictionary(Output body, Output head) {
+		head.writeVarLong(body.strings.size());
+		for (String string : body.strings.keySet()) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			head.writeVarLong(bytes.length);
+			head.writeBytes(bytes);
+		}
+	}
+
+	private static byte[] concat(ByteBuffer head, ByteBuffer body) {
+		byte[] bytes = new byte[head.remaining() + body.remaining()];
+		head.get(bytes, 0, head.remaining());
+		body.get(bytes, bytes.length - body.remaining(), body.remaining());
+		return bytes;
+	}
+
+	private static void writeJobKey(JobKey jobKey, Output out) {
+		out.writeString(jobKey.getProject());
+		out.writeString(jobKey.getJobCategory());
+		long buildNumber = jobKey.getBuildNumber();
+		out.writeSignedVarLong(buildNumber);
+		if (buildNumber < 0) {
+			out.writeString(jobKey.getJobId());
+		}
+	}
+
+	private static JobKey readJobKey(Input in) throws IOException {
+		String project = in.readString();
+		String jobCategory = in.readString();
+		long buildNumber = in.readSignedVarLong();
+		String jobId = buildNumber >= 0 ? Long.toString(buildNumber) : in.readString();
+		return new JobKey(project, jobId, jobCategory);
+	}
+
+	/** results added after the file was written read back as UNKNOWN */
+	private static Result result(String name) {
+		if (name == null) {
+			return null;
+		}
+		for (Result result : Result.values()) {
+			if (result.name().equals(name)) {
+				return result;
+			}
+		}
+		return Result.UNKNOWN;
+	}
+
+	/**
+	 * Growing buffer the entries are encoded into, collecting the String dictionary on the way.
+	 */
+	static final class Output {
+		private ByteBuffer buffer;
+		private final Map<String, Integer> strings;
+
+		Output(boolean withDictionary) {
+			this(withDictionary, 4096);
+		}
+
+		Output(boolean withDictionary, int capacity) {
+			buffer = ByteBuffer.allocate(capacity);
+			strings = withDictionary ? new LinkedHashMap<>() : null;
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			buffer.put((byte) b);
+		}
+
+		void writeBytes(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			buffer.put(bytes);
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		void writeSignedVarLong(long value) {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeString(String value) {
+			if (value == null) {
+				writeVarLong(0);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index == null) {
+				index = strings.size();
+				strings.put(value, index);
+			}
+			writeVarLong(index + 1);
+		}
+
+		ByteBuffer flip() {
+			buffer.flip();
+			return buffer;
+		}
+
+		private void ensureCapacity(int bytes) {
+			if (buffer.remaining() < bytes) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
+		}
+	}
+
+	/**
+	 * Decodes what {@link Output} wrote.
+	 */
+	static final class Input {
+		private final ByteBuffer buffer;
+		private String[] strings = new String[0];
+
+		Input(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void readDictionary() throws IOException {
+			strings = new String[readVarInt()];
+			for (int i = 0; i < strings.length; i++) {
+				int length = readVarInt();
+				if (length > buffer.remaining()) {
+					throw new IOException("String longer than the rest of the file");
+				}
+				strings[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+				buffer.position(buffer.position() + length);
+			}
+		}
+
+		int readByte() {
+			return buffer.get() & 0xFF;
+		}
+
+		long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = buffer.get();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		long readSignedVarLong() throws IOException {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		int readVarInt() throws IOException {
+			long value = readVarLong();
+			if (value < 0 || value > Integer.MAX_VALUE) {
+				throw new IOException("Count out of range: " + value);
+			}
+			return (int) value;
+		}
+
+		String readString() throws IOException {
+			int index = readVarInt();
+			if (index > strings.length) {
+				throw new IOException("String " + index + " not in the dictionary");
+			}
+			return index == 0 ? null : strings[index - 1];
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package worktools.jenkins.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Append-only log of the changes to the caches, so what was cached survives a crash without the caches
+ * being written out in full on shutdown.
+ * <p>
+ * Appended records are written and fsync'd together every {@value #FLUSH_INTERVAL_IN_MILLI_SECONDS} ms,
+ * so a crash loses at most the last batch. The log is kept in numbered segments,
+ * <code>journal-&lt;n&gt;.log</code>: every {@value #SNAPSHOT_INTERVAL_IN_MILLI_SECONDS} ms, or sooner
+ * once a segment outgrows {@value #MAX_SEGMENT_BYTES} bytes, a new segment is started, the caches are
+ * snapshotted to their {@link CacheFileFormat binary files} and the segments before it deleted. Recovery
+ * loads the snapshot and replays the segments left, oldest first. Records are puts, so replaying one the
+ * snapshot already has does no harm; a record torn by a crash ends the replay of its segment.
+ * <p>
+ * The directory is locked while the journal is open; another process or cache on the same directory
+ * does not get one.
+ */
+final class CacheJournal implements Closeable {
+
+	static final long FLUSH_INTERVAL_IN_MILLI_SECONDS = 200;
+	static final long SNAPSHOT_INTERVAL_IN_MILLI_SECONDS = 5 * 60 * 1000;
+	static final long MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+	private static final byte[] MAGIC = {'J', 'N', 'C', 'J'};
+	private static final int VERSION = 1;
+	private static final int RECORD_HEADER_LENGTH = 8;
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Applies one record to the caches.
+	 */
+	interface RecordHandler {
+
+		void apply(ByteBuffer record) throws IOException;
+	}
+
+	private final Path directory;
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "jenkins-cache-journal");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// guarded by this
+	private final List<byte[]> pending = new ArrayList<>();
+	private FileChannel segment;
+	private long segmentNumber;
+	private long segmentBytes;
+	private boolean snapshotScheduled;
+	private boolean closed;
+
+	private BooleanSupplier snapshot;
+
+	private CacheJournal(Path directory, FileChannel lockChannel, FileLock lock) {
+		this.directory = directory;
+		this.lockChannel = lockChannel;
+		this.lock = lock;
+	}
+
+	/**
+	 * @return the journal of the directory, null when someone else has it open or it cannot be locked
+	 */
+	static CacheJournal open(Path directory) {
+		try {
+			FileChannel lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock lock;
+			try {
+				lock = lockChannel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				lock = null;
+			}
+			if (lock == null) {
+				lockChannel.close();
+				Utils.log("Cache directory %s is in use, changes to the cache will not be journaled", directory);
+				return null;
+			}
+			return new CacheJournal(directory, lockChannel, lock);
+		} catch (IOException e) {
+			Utils.log("Could not open the cache journal in %s: %s", directory, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Applies the records of the segments left by the last run, oldest first.
+	 *
+	 * @return the number of records applied
+	 */
+	int replay(RecordHandler handler) {
+		int records = 0;
+		for (Path file : segments().values()) {
+			records += replay(file, handler);
+		}
+		return records;
+	}
+
+	private int replay(Path file, RecordHandler handler) {
+		ByteBuffer buffer;
+		try {
+			buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		} catch (IOException e) {
+			Utils.log("Could not read cache journal %s: %s", file, e);
+			return 0;
+		}
+		for (byte b : MAGIC) {
+			if (!buffer.hasRemaining() || buffer.get() != b) {
+				Utils.log("Not a cache journal: %s", file);
+				return 0;
+			}
+		}
+		if (!buffer.hasRemaining() || (buffer.get() & 0xFF) > VERSION) {
+			Utils.log("Cache journal %s was written by a newer version", file);
+			return 0;
+		}
+		int records = 0;
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				break;
+			}
+			crc.reset();
+			crc.update(buffer.array(), buffer.position(), length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.wrap(buffer.array(), buffer.position(), length).slice();
+			buffer.position(buffer.position() + length);
+			try {
+				handler.apply(record);
+				records++;
+			} catch (IOException e) {
+				Utils.log("Skipping damaged record in cache journal %s: %s", file, e);
+			}
+		}
+		if (buffer.hasRemaining()) {
+			Utils.log("Cache journal %s ends in %d bytes of a torn record, ignored", file, buffer.remaining());
+		}
+		return records;
+	}
+
+	/**
+	 * Starts a segment after the ones replayed and schedules flushing and snapshots; a recovery is
+	 * compacted into a snapshot right away.
+	 *
+	 * @param snapshot writes out the caches in full, returning whether all of them were written
+	 */
+	void start(BooleanSupplier snapshot) throws IOException {
+		this.snapshot = snapshot;
+		boolean recovered;
+		synchronized (this) {
+			TreeMap<Long, Path> segments = segments();
+			recovered = !segments.isEmpty();
+			segmentNumber = recovered ? segments.lastKey() + 1 : 1;
+			openSegment();
+		}
+		scheduler.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_IN_MILLI_SECONDS, FLUSH_INTERVAL_IN_MILLI_SECONDS,
+				TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::snapshot, SNAPSHOT_INTERVAL_IN_MILLI_SECONDS, SNAPSHOT_INTERVAL_IN_MILLI_SECONDS,
+				TimeUnit.MILLISECONDS);
+		if (recovered) {
+			scheduler.execute(this::snapshot);
+		}
+	}
+
+	/**
+	 * Queues the record for the next flush.
+	 */
+	synchronized void append(byte[] record) {
+		if (!closed) {
+			pending.add(record);
+		}
+	}
+
+	synchronized void flush() throws IOException {
+		if (pending.isEmpty() || segment == null) {
+			return;
+		}
+		int length = 0;
+		for (byte[] record : pending) {
+			length += RECORD_HEADER_LENGTH + record.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		CRC32 crc = new CRC32();
+		for (byte[] record : pending) {
+			crc.reset();
+			crc.update(record, 0, record.length);
+			buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			segment.write(buffer);
+		}
+		segment.force(false);
+		pending.clear();
+		segmentBytes += length;
+		if (segmentBytes > MAX_SEGMENT_BYTES && !snapshotScheduled) {
+			snapshotScheduled = true;
+			scheduler.execute(this::snapshot);
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			Utils.log("Could not write the cache journal: %s", e);
+		}
+	}
+
+	/**
+	 * Starts a new segment, snapshots the caches and deletes the segments the snapshot covers. Should the
+	 * snapshot fail they are kept, to be replayed.
+	 */
+	void snapshot() {
+		long covered;
+		synchronized (this) {
+			if (closed || segment == null) {
+				return;
+			}
+			try {
+				flush();
+				segment.close();
+				covered = segmentNumber++;
+				openSegment();
+			} catch (IOException e) {
+				Utils.log("Could not start a new cache journal segment: %s", e);
+				return;
+			} finally {
+				snapshotScheduled = false;
+			}
+		}
+		if (!snapshot.getAsBoolean()) {
+			Utils.log("Cache snapshot failed, keeping the journal");
+			return;
+		}
+		for (Path file : segments().headMap(covered, true).values()) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				Utils.log("Could not delete cache journal %s: %s", file, e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes what is pending and releases the directory; the segments stay, to be replayed next time.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			flushQuietly();
+			closed = true;
+			try {
+				if (segment != null) {
+					segment.close();
+				}
+				lock.release();
+				lockChannel.close();
+			} catch (IOException e) {
+				Utils.log("Could not close the cache journal: %s", e);
+			}
+		}
+		scheduler.shutdownNow();
+	}
+
+	private void openSegment() throws IOException {
+		segment = FileChannel.open(segmentFile(segmentNumber), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+		header.put(MAGIC).put((byte) VERSION).flip();
+		while (header.hasRemaining()) {
+			segment.write(header);
+		}
+		segment.force(false);
+		segmentBytes = header.capacity();
+	}
+
+	Path segmentFile(long number) {
+		return directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Segments in the directory by number.
+	 */
+	TreeMap<Long, Path> segments() {
+		TreeMap<Long, Path> segments = new TreeMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				long number = Utils.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), -1);
+				if (number > 0) {
+					segments.put(number, file);
+				}
+			}
+		} catch (IOException e) {
+			Utils.log("Could not list the cache journal in %s: %s", directory, e);
+		}
+		return segments;
+	}
+}
@@ -1,42 +1,75 @@
 package worktools.jenkins.services;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import worktools.jenkins.AppConstants;
+import worktools.jenkins.http.RequestContext;
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobMetadata.Result;
 import worktools.jenkins.models.JobSearchKey;
+import worktools.jenkins.utils.TinyLfuMap;
 import worktools.jenkins.utils.Utils;
 
-public class CachedJenkinsDataService implements JenkinsDataService {
+public class CachedJenkinsDataService implements JenkinsDataService, AsyncJenkinsDataService {
 
 	private final JenkinsDataService dataService;
+	/** the same data service when it can fetch in the background, otherwise null */
+	private final AsyncJenkinsDataService asyncDataService;
 	private final Cache cache;
+	private final SingleFlight<JobKey, JobMetadata> jobDataFetches = new SingleFlight<>();
+	private final SingleFlight<String, List<JobKey>> jobsFetches = new SingleFlight<>();
+	private final SingleFlight<String, List<JobMetadata>> jobsWithMetadataFetches = new SingleFlight<>();
+	/** newest build found per tracked search key, kept pinned in the cache; changes are guarded by it */
+	private final Map<JobSearchKey, JobKey> currentJobs = new ConcurrentHashMap<>();
 
 	private int staleTimeoutInSeconds = 30;
 	public CachedJenkinsDataService(JenkinsDataService dataService) {
 		this(dataService, getDefaultCacheDirectory());
 	}
 
+	/**
+	 * @param cacheDirectory where the caches are kept across restarts, or null to keep them in memory only
+	 */
 	public CachedJenkinsDataService(JenkinsDataService dataService, String cacheDirectory) {
+		this(dataService, cacheDirectory, runnable -> {
+			Thread thread = new Thread(runnable, "jenkins-cache-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * Serves right away while the cache files are loaded by the executor; until then lookups miss and
+	 * go to the data service like on a cold cache, instead of waiting.
+	 */
+	CachedJenkinsDataService(JenkinsDataService dataService, String cacheDirectory, Executor warmUpExecutor) {
 
 		this.dataService = dataService;
+		this.asyncDataService = dataService instanceof AsyncJenkinsDataService ? (AsyncJenkinsDataService) dataService : null;
 		cache = new Cache(cacheDirectory);
 		registerShutdownHook();
-		cache.init();
+		cache.warmUp(warmUpExecutor);
 	}
 
 	@Override
@@ -44,54 +77,301 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 
 		JobMetadata jobMetadata = cache.getJobMetadataCache().get(jobKey);
 		if (jobMetadata == null || jobMetadata.getResult() == Result.RUNNING)
-			return fetchJobDataAndUpdate(jobKey);
+			return jobDataFetches.run(jobKey, () -> fetchJobDataAndUpdate(jobKey));
 
 		return jobMetadata;
 	}
 
 	private JobMetadata fetchJobDataAndUpdate(JobKey jobKey) {
-		JobMetadata liveJobMetadata = dataService.fetchJobData(jobKey);
+		return updateJobData(jobKey, dataService.fetchJobData(jobKey));
+	}
+
+	private JobMetadata updateJobData(JobKey jobKey, JobMetadata liveJobMetadata) {
 		if (liveJobMetadata != null) {
-			cache.getJobMetadataCache().put(jobKey, liveJobMetadata);
+			cache.putJobMetadata(jobKey, liveJobMetadata);
 		}
 		return liveJobMetadata;
 	}
 
+	/**
+	 * Cached metadata right away; otherwise fetched in the background when the underlying data service
+	 * is asynchronous, in the calling thread when it is not.
+	 */
+	@Override
+	public CompletableFuture<JobMetadata> fetchJobDataAsync(JobKey jobKey) {
+		JobMetadata jobMetadata = cache.getJobMetadataCache().get(jobKey);
+		if (jobMetadata != null && jobMetadata.getResult() != Result.RUNNING) {
+			return CompletableFuture.completedFuture(jobMetadata);
+		}
+		if (asyncDataService == null) {
+			return completed(() -> jobDataFetches.run(jobKey, () -> fetchJobDataAndUpdate(jobKey)));
+		}
+		return jobDataFetches.runAsync(jobKey,
+				() -> thenApply(asyncDataService.fetchJobDataAsync(jobKey), live -> updateJobData(jobKey, live)));
+	}
+
+	@Override
+	public CompletableFuture<List<JobKey>> fetchJobsAsync(String project, String jobCategory) {
+		CachedJobKeys cachedJobKeys = cache.getJobKeyCache().get(jobCategory);
+		if (cachedJobKeys != null && !cachedJobKeys.isStale(this.staleTimeoutInSeconds)) {
+			return CompletableFuture.completedFuture(cachedJobKeys.toJobKeys());
+		}
+		if (asyncDataService == null) {
+			return completed(() -> jobsFetches.run(jobCategory, () -> fetchJobsAndUpdate(project, jobCategory)));
+		}
+		if (cachedJobKeys == null || !cachedJobKeys.canFetchNewerOnly()) {
+			return jobsFetches.runAsync(jobCategory, () -> thenApply(asyncDataService.fetchJobsAsync(project, jobCategory), jobKeys -> {
+				cache.putJobKeys(jobCategory, new CachedJobKeys(jobKeys));
+				return jobKeys;
+			}));
+		}
+		return jobsFetches.runAsync(jobCategory, () -> thenApply(
+				asyncDataService.fetchJobsAfterAsync(project, jobCategory, cachedJobKeys.getHighWaterMark()),
+				newerJobKeys -> mergeNewer(jobCategory, cachedJobKeys, newerJobKeys)));
+	}
+
+	@Override
+	public int parallelism() {
+		return asyncDataService == null ? 1 : asyncDataService.parallelism();
+	}
+
+	/**
+	 * Like {@link CompletableFuture#thenApply(Function)}, with cancelling the result cancelling the fetch.
+	 */
+	private static <T, U> CompletableFuture<U> thenApply(CompletableFuture<T> fetch, Function<T, U> update) {
+		CompletableFuture<U> result = fetch.thenApply(update);
+		result.whenComplete((value, e) -> {
+			if (result.isCancelled()) {
+				fetch.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	private static <T> CompletableFuture<T> completed(Supplier<T> fetch) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			future.complete(fetch.get());
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
 	@Override
 	public List<JobKey> fetchJobs(String project, String jobCategory) {
 
 		CachedJobKeys cachedJobKeys = cache.getJobKeyCache().get(jobCategory);
 		if (cachedJobKeys == null || cachedJobKeys.isStale(this.staleTimeoutInSeconds)) {
-			return fetchJobsAndUpdate(project, jobCategory);
+			return jobsFetches.run(jobCategory, () -> fetchJobsAndUpdate(project, jobCategory));
 		}
 
 		return cachedJobKeys.toJobKeys();
 	}
 
+	/**
+	 * Builds are numbered in order and never change number, so once the list is known only builds above
+	 * its high-water mark are asked for and put in front of it. The whole list is fetched again when
+	 * nothing is known yet and every {@link CachedJobKeys#FULL_REFRESH_INTERVAL_IN_MILLI_SECONDS}, in case
+	 * the job was recreated and numbering started over.
+	 */
 	private List<JobKey> fetchJobsAndUpdate(String project, String jobCategory) {
+		CachedJobKeys cachedJobKeys = cache.getJobKeyCache().get(jobCategory);
+		if (cachedJobKeys != null && cachedJobKeys.canFetchNewerOnly()) {
+			return mergeNewer(jobCategory, cachedJobKeys, dataService.fetchJobsAfter(project, jobCategory, cachedJobKeys.getHighWaterMark()));
+		}
 		List<JobKey> jobKeys = dataService.fetchJobs(project, jobCategory);
-		this.cache.jobKeyCache.put(jobCategory, new CachedJobKeys(jobKeys));
+		cache.putJobKeys(jobCategory, new CachedJobKeys(jobKeys));
 		return jobKeys;
 	}
+
+	private List<JobKey> mergeNewer(String jobCategory, CachedJobKeys cachedJobKeys, List<JobKey> newerJobKeys) {
+		CachedJobKeys merged = cachedJobKeys.withNewer(newerJobKeys);
+		cache.putJobKeys(jobCategory, merged);
+		return merged.toJobKeys();
+	}
+	
+	/**
+	 * While the job list is fresh, the cached list and metadata; otherwise, when the data service can, all
+	 * of it in one request, which refreshes the job list, metadata and owner caches together. Like
+	 * {@link #fetchJobs(String, String)}, once the list is known only the builds above its high-water mark
+	 * are asked for, along with any older ones whose metadata is not cached or still running.
+	 */
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		if (!dataService.supportsJobsWithMetadata(jobCategory) || !isStale(jobCategory)) {
+			return JenkinsDataService.super.fetchJobsWithMetadata(project, jobCategory);
+		}
+		return jobsWithMetadataFetches.run(jobCategory, () -> fetchJobsWithMetadataAndUpdate(project, jobCategory));
+	}
+
+	@Override
+	public boolean supportsJobsWithMetadata(String jobCategory) {
+		return dataService.supportsJobsWithMetadata(jobCategory);
+	}
+
+	/**
+	 * Marks the cached job list of the category stale, keeping its high-water mark, so the next lookup
+	 * asks Jenkins for the builds after it.
+	 */
+	@Override
+	public void jobsChanged(String jobCategory) {
+		cache.expireJobKeys(jobCategory);
+		dataService.jobsChanged(jobCategory);
+	}
+
+	/**
+	 * Unpins the build last found for the search key, unless another search key found it too.
+	 */
+	@Override
+	public void trackingStopped(JobSearchKey jobSearchKey) {
+		synchronized (currentJobs) {
+			JobKey current = currentJobs.remove(jobSearchKey);
+			if (current != null && !currentJobs.containsValue(current)) {
+				cache.unpin(current);
+			}
+		}
+		dataService.trackingStopped(jobSearchKey);
+	}
+
+	private List<JobMetadata> fetchJobsWithMetadataAndUpdate(String project, String jobCategory) {
+		CachedJobKeys cachedJobKeys = cache.getJobKeyCache().get(jobCategory);
+		if (cachedJobKeys != null && cachedJobKeys.canFetchNewerOnly()) {
+			long highWaterMark = cachedJobKeys.getHighWaterMark();
+			List<JobMetadata> fetched = dataService.fetchJobsWithMetadataAfter(project, jobCategory, refreshAfter(cachedJobKeys));
+			List<JobKey> jobKeys = mergeNewer(jobCategory, cachedJobKeys, fetched.stream()
+					.map(JobMetadata::getJobKey)
+					.filter(jobKey -> jobKey.getBuildNumber() > highWaterMark)
+					.collect(Collectors.toList()));
+			putJobsMetadata(fetched);
+			List<JobMetadata> jobs = new ArrayList<>(jobKeys.size());
+			for (JobKey jobKey : jobKeys) {
+				JobMetadata jobMetadata = cache.getJobMetadataCache().get(jobKey);
+				if (jobMetadata != null) {
+					jobs.add(jobMetadata);
+				}
+			}
+			return jobs;
+		}
+		List<JobMetadata> jobs = dataService.fetchJobsWithMetadata(project, jobCategory);
+		cache.putJobKeys(jobCategory, new CachedJobKeys(jobs.stream().map(JobMetadata::getJobKey).collect(Collectors.toList())));
+		putJobsMetadata(jobs);
+		return jobs;
+	}
+
+	/**
+	 * The high-water mark of the list, lowered to just below its oldest build whose metadata is not
+	 * cached or still running, so those are fetched again too.
+	 */
+	private long refreshAfter(CachedJobKeys cachedJobKeys) {
+		long after = cachedJobKeys.getHighWaterMark();
+		for (JobKey jobKey : cachedJobKeys.toJobKeys()) {
+			JobMetadata jobMetadata = cache.getJobMetadataCache().get(jobKey);
+			if (jobKey.getBuildNumber() > 0 && (jobMetadata == null || jobMetadata.getResult() == Result.RUNNING)) {
+				after = Math.min(after, jobKey.getBuildNumber() - 1);
+			}
+		}
+		return after;
+	}
+
+	private void putJobsMetadata(List<JobMetadata> jobs) {
+		for (JobMetadata jobMetadata : jobs) {
+			cache.putJobMetadata(jobMetadata.getJobKey(), jobMetadata);
+			if (jobMetadata.getOwner() != null) {
+				cache.putJobOwnerIfAbsent(jobMetadata.getJobKey(), jobMetadata.getOwner());
+			}
+		}
+	}
+
+	private boolean isStale(String jobCategory) {
+		CachedJobKeys cachedJobKeys = cache.getJobKeyCache().get(jobCategory);
+		return cachedJobKeys == null || cachedJobKeys.isStale(this.staleTimeoutInSeconds);
+	}
 	
 	@Override
 	public JobMetadata fetchJob(JobSearchKey jobSearchKey) {
+		return AsyncJenkinsDataService.join(fetchJobAsync(jobSearchKey));
+	}
+
+	/**
+	 * A stale job list is refreshed together with the metadata of its builds when the data service can
+	 * do that in one request. Either way the owner's latest build then comes from the {@link OwnerIndex}
+	 * when the owners of the newer builds are all known; failing that, the list is gone through, and on
+	 * the one-build-at-a-time path candidates known to belong to someone else are skipped and the rest
+	 * are fetched {@link #parallelism()} at a time, newest first.
+	 */
+	@Override
+	public CompletableFuture<JobMetadata> fetchJobAsync(JobSearchKey jobSearchKey) {
 		String owner = jobSearchKey.getOwner();
 		String jobCategory = jobSearchKey.getJobCategory();
-		List<JobKey> allJobsForCategory = fetchJobs(jobSearchKey.getProject(), jobCategory);
-		List<JobKey> jobsTrigerredByOwner = allJobsForCategory.stream()
-				.filter(jobKey -> filterJobsTrigerredByOwner(jobKey, owner))
-				.collect(Collectors.toList());
-		
-		return jobsTrigerredByOwner.stream()
-				.map(jobKey -> this.fetchJobData(jobKey))
-				.filter(Objects::nonNull)
-				.peek(jobMetadata -> cache.getJobOwnerCache().putIfAbsent(jobMetadata.getJobKey(), jobMetadata.getOwner()))
+		RequestContext context = RequestContext.current();
+		if (dataService.supportsJobsWithMetadata(jobCategory) && isStale(jobCategory)) {
+			return completed(() -> latestWithMetadata(jobSearchKey))
+					.thenApply(jobMetadata -> pinCurrentJob(jobSearchKey, jobMetadata, context));
+		}
+		return fetchJobsAsync(jobSearchKey.getProject(), jobCategory).thenCompose(allJobsForCategory -> {
+			JobKey latest = cache.getOwnerIndex().latest(jobSearchKey.getProject(), jobCategory, owner);
+			if (latest != null) {
+				return fetchJobDataAsync(latest);
+			}
+			List<JobKey> jobsTrigerredByOwner = allJobsForCategory.stream()
+					.filter(jobKey -> filterJobsTrigerredByOwner(jobKey, owner))
+					.collect(Collectors.toList());
+			
+			return OrderedFanOut.firstMatch(jobsTrigerredByOwner, parallelism(), this::fetchJobDataAsync, jobMetadata -> {
+				cache.putJobOwnerIfAbsent(jobMetadata.getJobKey(), jobMetadata.getOwner());
+				return owner.equalsIgnoreCase(jobMetadata.getOwner());
+			});
+		}).thenApply(jobMetadata -> pinCurrentJob(jobSearchKey, jobMetadata != null ? jobMetadata : JobMetadata.empty(), context));
+	}
+
+	private JobMetadata latestWithMetadata(JobSearchKey jobSearchKey) {
+		String owner = jobSearchKey.getOwner();
+		List<JobMetadata> jobs = fetchJobsWithMetadata(jobSearchKey.getProject(), jobSearchKey.getJobCategory());
+		JobKey latest = cache.getOwnerIndex().latest(jobSearchKey.getProject(), jobSearchKey.getJobCategory(), owner);
+		JobMetadata latestJobMetadata = latest == null ? null : cache.getJobMetadataCache().get(latest);
+		if (latestJobMetadata != null) {
+			return latestJobMetadata;
+		}
+		return jobs.stream()
 				.filter(jobMetadata -> owner.equalsIgnoreCase(jobMetadata.getOwner()))
 				.findFirst()
 				.orElse(JobMetadata.empty());
 	}
 
+	/**
+	 * The build last found for a search key is what gets polled over and over, so it stays cached until
+	 * a newer build of the owner replaces it or the key stops being {@link #trackingStopped tracked}. A
+	 * lookup cancelled by then, as the poll of a key no longer tracked is, pins nothing.
+	 */
+	private JobMetadata pinCurrentJob(JobSearchKey jobSearchKey, JobMetadata jobMetadata, RequestContext context) {
+		if (jobMetadata.getResult() == Result.UNKNOWN) {
+			return jobMetadata;
+		}
+		synchronized (currentJobs) {
+			if (context.isCancelled()) {
+				return jobMetadata;
+			}
+			JobKey current = jobMetadata.getJobKey();
+			JobKey previous = currentJobs.put(jobSearchKey, current);
+			if (!current.equals(previous)) {
+				cache.pin(current);
+				if (previous != null && !currentJobs.containsValue(previous)) {
+					cache.unpin(previous);
+				}
+			}
+		}
+		return jobMetadata;
+	}
+
+	SingleFlight<JobKey, JobMetadata> jobDataFetches() {
+		return jobDataFetches;
+	}
+
+	SingleFlight<String, List<JobKey>> jobsFetches() {
+		return jobsFetches;
+	}
+
 	void setJobMetadataCache(Map<JobKey, JobMetadata> map) {
 		this.cache.jobMetadataCache = map;
 	}
@@ -112,15 +392,45 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 		return System.getProperty("user.home") + "/jenkins_notifications_cache";
 	}
 
+	/**
+	 * Only flushes the journal when there is one; the caches are snapshotted in the background.
+	 */
 	private void registerShutdownHook() {
-		Thread saveJobMapToCacheTask = new Thread(() -> cache.save());
+		Thread saveJobMapToCacheTask = new Thread(cache::close);
 		Runtime.getRuntime().addShutdownHook(saveJobMapToCacheTask);
 	}
 
+	void saveCache() {
+		cache.save();
+	}
+
+	/**
+	 * Registers the size, hit ratio and evictions of the metadata and owner caches as
+	 * <code>worktools.jenkins:type=Cache</code> MBeans.
+	 */
+	public CachedJenkinsDataService registerMBeans() {
+		cache.registerMBeans();
+		return this;
+	}
+
 	public void clearCache() {
 		cache.clear();
 	}
 
+	/**
+	 * Completes once the cache files have been loaded.
+	 */
+	public CompletableFuture<Void> warmedUp() {
+		return cache.warmedUp();
+	}
+
+	/**
+	 * Share of the cache files loaded so far, from 0 to 1.
+	 */
+	public double getWarmUpProgress() {
+		return cache.getWarmUpProgress();
+	}
+
 	private boolean filterJobsTrigerredByOwner(JobKey jobKey, String owner) {
 		Map<JobKey, String> jobOwnerCache = cache.getJobOwnerCache();
 		if (jobOwnerCache.containsKey(jobKey)) {
@@ -129,17 +439,37 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 		return true;
 	}
 
-	static class CachedJobKeys {
+	/**
+	 * Job list of a category, newest first, with the highest build number seen in it. Instances are
+	 * immutable; newer builds are merged into a copy, so readers always see a consistent list.
+	 */
+	static class CachedJobKeys implements Serializable {
+
+		private static final long serialVersionUID = -3370525342359131522L;
+		static final long FULL_REFRESH_INTERVAL_IN_MILLI_SECONDS = 60 * 60 * 1000;
+
 		private final List<JobKey> jobKeys;
 		private final long cachedAtTimeStamp;
+		private final long fullFetchTimeStamp;
+		private final long highWaterMark;
 
 		public CachedJobKeys(List<JobKey> jobKeys) {
 			this(jobKeys, System.currentTimeMillis());
 		}
 
 		public CachedJobKeys(List<JobKey> jobKeys, long timeStamp) {
-			this.jobKeys = jobKeys;
+			this(jobKeys, timeStamp, timeStamp);
+		}
+
+		CachedJobKeys(List<JobKey> jobKeys, long timeStamp, long fullFetchTimeStamp) {
+			this.jobKeys = Collections.unmodifiableList(new ArrayList<>(jobKeys));
 			this.cachedAtTimeStamp = timeStamp;
+			this.fullFetchTimeStamp = fullFetchTimeStamp;
+			long highest = -1;
+			for (JobKey jobKey : jobKeys) {
+				highest = Math.max(highest, jobKey.getBuildNumber());
+			}
+			this.highWaterMark = highest;
 		}
 
 		public boolean isStale(int staleTimeoutInSeconds) {
@@ -149,22 +479,84 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 		public List<JobKey> toJobKeys() {
 			return jobKeys;
 		}
+
+		long getCachedAtTimeStamp() {
+			return cachedAtTimeStamp;
+		}
+
+		long getFullFetchTimeStamp() {
+			return fullFetchTimeStamp;
+		}
+
+		/**
+		 * Highest build number in the list, -1 when there are no numbered builds.
+		 */
+		public long getHighWaterMark() {
+			return highWaterMark;
+		}
+
+		CachedJobKeys expired() {
+			return new CachedJobKeys(jobKeys, 0, fullFetchTimeStamp);
+		}
+
+		boolean canFetchNewerOnly() {
+			return highWaterMark > 0 && System.currentTimeMillis() - fullFetchTimeStamp < FULL_REFRESH_INTERVAL_IN_MILLI_SECONDS;
+		}
+
+		/**
+		 * The newer builds, newest first, in front of the ones already known, keeping the list as long as
+		 * the longer of the two.
+		 */
+		CachedJobKeys withNewer(List<JobKey> newerJobKeys) {
+			int size = Math.max(jobKeys.size(), newerJobKeys.size());
+			List<JobKey> merged = new ArrayList<>(size);
+			for (JobKey jobKey : newerJobKeys) {
+				if (merged.size() < size && jobKey.getBuildNumber() > highWaterMark) {
+					merged.add(jobKey);
+				}
+			}
+			for (JobKey jobKey : jobKeys) {
+				if (merged.size() < size) {
+					merged.add(jobKey);
+				}
+			}
+			return new CachedJobKeys(merged, System.currentTimeMillis(), fullFetchTimeStamp);
+		}
 	}	
 	
 	public static class Cache implements Serializable{
 
 		private static final long serialVersionUID = 5564676405710851740L;
-		private Map<JobKey, JobMetadata> jobMetadataCache = new ConcurrentHashMap<>();
+		/** enough for a few hundred builds in each of the categories anyone tracks, with room for history */
+		public static final int DEFAULT_MAX_CACHED_JOBS = 4096;
+		/** the three cache files and the journal */
+		private static final int WARM_UP_STEPS = 4;
+
+		private Map<JobKey, JobMetadata> jobMetadataCache;
 		private Map<String, CachedJobKeys> jobKeyCache = new ConcurrentHashMap<>();
-		private Map<JobKey, String> jobOwnerCache = new ConcurrentHashMap<>();
-		private final String jobMetadataCacheFileName;
-		private final String jobOwnerCacheFileName;
+		private Map<JobKey, String> jobOwnerCache;
+		private final String cacheDirectory;
+		private transient volatile CacheJournal journal;
+		private final transient CompletableFuture<Void> warmedUp = new CompletableFuture<>();
+		private final transient AtomicInteger warmUpSteps = new AtomicInteger();
+		private final transient OwnerIndex ownerIndex = new OwnerIndex();
+		/** guarded by this */
+		private transient int clears;
 		
 		public Cache(String cacheDirectory) {
-			jobMetadataCacheFileName = cacheDirectory + "/jobMetadata.cache";
-			jobOwnerCacheFileName = cacheDirectory + "/jobOwner.cache";
+			this(cacheDirectory, Integer.getInteger(AppConstants.MAX_CACHED_JOBS_PROPERTY, DEFAULT_MAX_CACHED_JOBS));
+		}
+
+		/**
+		 * @param maxCachedJobs how many builds the metadata and owner caches each keep, besides the
+		 * {@link #pin(JobKey) pinned} ones
+		 */
+		public Cache(String cacheDirectory, int maxCachedJobs) {
+			jobMetadataCache = new TinyLfuMap<>(maxCachedJobs);
+			jobOwnerCache = new TinyLfuMap<>(maxCachedJobs);
+			this.cacheDirectory = cacheDirectory;
 			
-			if(!Files.exists(Paths.get(cacheDirectory))) {
+			if(cacheDirectory != null && !Files.exists(Paths.get(cacheDirectory))) {
 				try {
 					Utils.log("Creating cache directory - %s", cacheDirectory);
 					Files.createDirectories(Paths.get(cacheDirectory));
@@ -175,52 +567,297 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 			}
 		}
 
-		void save() {
+		/**
+		 * @return whether all of the caches were written, true when kept in memory only
+		 */
+		boolean save() {
+			if (cacheDirectory == null) {
+				return true;
+			}
 			Utils.log("Flushing jobMetadataCache to disk");
-			writeToCacheFile(jobMetadataCache, jobMetadataCacheFileName);
+			boolean saved = writeToCacheFile(jobMetadataCache, "jobMetadata", CacheFileFormat.JOB_METADATA);
 			
 			Utils.log("Flushing jobOwnerCache to disk");
-			writeToCacheFile(jobOwnerCache, jobOwnerCacheFileName);
+			saved &= writeToCacheFile(jobOwnerCache, "jobOwner", CacheFileFormat.JOB_OWNERS);
+			
+			Utils.log("Flushing jobKeyCache to disk");
+			saved &= writeToCacheFile(jobKeyCache, "jobKeys", CacheFileFormat.JOB_KEYS);
+			return saved;
+		}
+
+		/**
+		 * Makes what is cached durable: flushes and releases the journal, or, without one, writes out the
+		 * caches in full.
+		 */
+		void close() {
+			CacheJournal journal = this.journal;
+			if (journal != null) {
+				this.journal = null;
+				journal.close();
+			} else if (warmedUp.isDone()) {
+				save();
+			} else {
+				Utils.log("Cache is still warming up, keeping the cache files as they are");
+			}
 		}
 		
-		<U,V> void writeToCacheFile(Map<U, V> cacheMap, String cacheFileName) {
-			try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(cacheFileName))) {
-				oos.writeObject(cacheMap);
-				oos.flush();
+		/**
+		 * Writes <code>&lt;name&gt;.bin</code> in the {@link CacheFileFormat binary format}; the serialized
+		 * <code>&lt;name&gt;.cache</code> of earlier versions is dropped once it has been replaced.
+		 */
+		<U,V> boolean writeToCacheFile(Map<U, V> cacheMap, String name, CacheFileFormat.Codec<U, V> codec) {
+			Path cacheFile = Paths.get(cacheDirectory, name + ".bin");
+			try {
+				CacheFileFormat.write(cacheFile, codec, cacheMap);
+				Files.deleteIfExists(Paths.get(cacheDirectory, name + ".cache"));
+				return true;
 			} catch (IOException e) {
-				System.err.println("Could not write to cache file - " + cacheFileName);
+				System.err.println("Could not write to cache file - " + cacheFile);
 				e.printStackTrace();
+				return false;
 			}
 		}
 
-		void loadFromCacheFiles() {
-			jobMetadataCache = readFromCacheFile(jobMetadataCacheFileName);
-			jobOwnerCache = readFromCacheFile(jobOwnerCacheFileName);
+		/**
+		 * Replaces the contents of the caches with the files' in place, so registered MBeans keep
+		 * watching the same caches.
+		 *
+		 * @return whether any of them came from a serialized file of an earlier version
+		 */
+		boolean loadFromCacheFiles() {
+			return loadFromCacheFiles(jobMetadataCache, jobOwnerCache, jobKeyCache, name -> {});
+		}
+
+		private boolean loadFromCacheFiles(Map<JobKey, JobMetadata> jobMetadataCache, Map<JobKey, String> jobOwnerCache,
+				Map<String, CachedJobKeys> jobKeyCache, Consumer<String> progress) {
+			boolean legacy = readFromCacheFile("jobMetadata", CacheFileFormat.JOB_METADATA, jobMetadataCache);
+			progress.accept("jobMetadata");
+			legacy |= readFromCacheFile("jobOwner", CacheFileFormat.JOB_OWNERS, jobOwnerCache);
+			progress.accept("jobOwner");
+			legacy |= readFromCacheFile("jobKeys", CacheFileFormat.JOB_KEYS, jobKeyCache);
+			progress.accept("jobKeys");
+			return legacy;
 		}
 		
-		<U, V> Map<U, V> readFromCacheFile(String cacheFileName) {
-			try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(cacheFileName));) {
-				Utils.log("Reading jobMetadataCache from disk");
+		/**
+		 * Reads <code>&lt;name&gt;.bin</code>, or the serialized <code>&lt;name&gt;.cache</code> when that is
+		 * all there is or it is newer, as after running an earlier version again. A binary file that cannot
+		 * be read is moved aside to <code>&lt;name&gt;.bin.unreadable</code> rather than silently overwritten.
+		 *
+		 * @return whether the serialized file was read
+		 */
+		<U, V> boolean readFromCacheFile(String name, CacheFileFormat.Codec<U, V> codec, Map<U, V> cacheMap) {
+			cacheMap.clear();
+			Path cacheFile = Paths.get(cacheDirectory, name + ".bin");
+			Path legacyCacheFile = Paths.get(cacheDirectory, name + ".cache");
+			try {
+				if (Files.exists(legacyCacheFile)
+						&& (!Files.exists(cacheFile) || Files.getLastModifiedTime(legacyCacheFile).compareTo(Files.getLastModifiedTime(cacheFile)) > 0)) {
+					readFromLegacyCacheFile(legacyCacheFile, cacheMap);
+					return true;
+				}
+				if (Files.exists(cacheFile)) {
+					Utils.log("Reading %s from disk", cacheFile);
+					CacheFileFormat.read(cacheFile, codec, cacheMap);
+				}
+			} catch (IOException e) {
+				Utils.log("Could not read cache file %s, moving it aside: %s", cacheFile, e);
+				cacheMap.clear();
+				try {
+					Files.move(cacheFile, cacheFile.resolveSibling(cacheFile.getFileName() + ".unreadable"), StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException moveFailed) {
+					Utils.log("Could not move %s aside: %s", cacheFile, moveFailed);
+				}
+			}
+			return false;
+		}
+
+		private <U, V> void readFromLegacyCacheFile(Path legacyCacheFile, Map<U, V> cacheMap) {
+			try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(legacyCacheFile))) {
+				Utils.log("Reading %s from disk", legacyCacheFile);
 				@SuppressWarnings("unchecked")
 				Map<U, V> map = (Map<U, V>) ois.readObject();
-				return new ConcurrentHashMap<>(map);
-			} catch (IOException | ClassNotFoundException e) {
-				e.printStackTrace();
-				return new ConcurrentHashMap<>();
+				cacheMap.putAll(map);
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				Utils.log("Could not read legacy cache file %s: %s", legacyCacheFile, e);
 			}
 		}
 
+		/**
+		 * Loads the last snapshot and replays the {@link CacheJournal journal} written since, then journals
+		 * every change from here on.
+		 */
 		public void init() {
-			loadFromCacheFiles();
+			warmUp(Runnable::run);
+		}
+
+		/**
+		 * Like {@link #init()}, with the loading done by the executor. The caches serve right away and
+		 * fill up with what is fetched meanwhile; loaded entries do not replace those, and are dropped if
+		 * the caches are cleared first. Changes are journaled from the start, after the segments being
+		 * replayed. The journal is left alone when the files of an earlier version were read, being older
+		 * than them. A cache kept in memory only is warm from the start and journals nothing.
+		 */
+		CompletableFuture<Void> warmUp(Executor executor) {
+			if (cacheDirectory == null) {
+				warmedUp.complete(null);
+				return warmedUp;
+			}
+			CacheJournal journal = CacheJournal.open(Paths.get(cacheDirectory));
+			this.journal = journal;
+			Map<JobKey, JobMetadata> jobMetadataCache = this.jobMetadataCache;
+			Map<JobKey, String> jobOwnerCache = this.jobOwnerCache;
+			Map<String, CachedJobKeys> jobKeyCache = this.jobKeyCache;
+			int clearsBefore;
+			synchronized (this) {
+				clearsBefore = clears;
+			}
+			executor.execute(() -> {
+				try {
+					Map<JobKey, JobMetadata> loadedJobMetadata = new HashMap<>();
+					Map<JobKey, String> loadedJobOwners = new HashMap<>();
+					Map<String, CachedJobKeys> loadedJobKeys = new HashMap<>();
+					boolean legacy = loadFromCacheFiles(loadedJobMetadata, loadedJobOwners, loadedJobKeys, this::warmUpProgress);
+					if (journal != null && !legacy) {
+						int records = journal.replay(record -> applyJournalRecord(record, loadedJobMetadata, loadedJobOwners, loadedJobKeys));
+						if (records > 0) {
+							Utils.log("Replayed %d changes from the cache journal", records);
+						}
+					}
+					warmUpProgress("journal");
+					synchronized (this) {
+						if (clears == clearsBefore) {
+							loadedJobKeys.forEach((jobCategory, cachedJobKeys) -> {
+								if (jobKeyCache.putIfAbsent(jobCategory, cachedJobKeys) == null) {
+									ownerIndex.jobsListed(jobCategory, cachedJobKeys.toJobKeys());
+								}
+							});
+							loadedJobMetadata.forEach((jobKey, jobMetadata) -> {
+								jobMetadataCache.putIfAbsent(jobKey, jobMetadata);
+								ownerIndex.ownerFound(jobKey, jobMetadata.getOwner());
+							});
+							loadedJobOwners.forEach((jobKey, owner) -> {
+								jobOwnerCache.putIfAbsent(jobKey, owner);
+								ownerIndex.ownerFound(jobKey, owner);
+							});
+						}
+					}
+					if (journal != null) {
+						startJournal(journal);
+					}
+				} finally {
+					warmedUp.complete(null);
+				}
+			});
+			return warmedUp;
+		}
+
+		private void startJournal(CacheJournal journal) {
+			try {
+				journal.start(this::save);
+			} catch (IOException e) {
+				Utils.log("Could not start the cache journal, the cache will be saved on shutdown: %s", e);
+				this.journal = null;
+				journal.close();
+			}
+		}
+
+		private void warmUpProgress(String loaded) {
+			int steps = warmUpSteps.incrementAndGet();
+			Utils.log("Cache warm-up %d%%, loaded %s", steps * 100 / WARM_UP_STEPS, loaded);
+		}
+
+		/**
+		 * Share of the files loaded, 1 once warmed up.
+		 */
+		double getWarmUpProgress() {
+			return warmedUp.isDone() ? 1 : (double) warmUpSteps.get() / WARM_UP_STEPS;
+		}
+
+		CompletableFuture<Void> warmedUp() {
+			return warmedUp;
+		}
+
+		private static void applyJournalRecord(ByteBuffer record, Map<JobKey, JobMetadata> jobMetadataCache,
+				Map<JobKey, String> jobOwnerCache, Map<String, CachedJobKeys> jobKeyCache) throws IOException {
+			int kind = CacheFileFormat.recordKind(record);
+			if (kind == CacheFileFormat.CLEAR) {
+				jobMetadataCache.clear();
+				jobOwnerCache.clear();
+				jobKeyCache.clear();
+			} else if (kind == CacheFileFormat.JOB_METADATA.kind()) {
+				CacheFileFormat.decodeRecord(record, CacheFileFormat.JOB_METADATA, jobMetadataCache);
+			} else if (kind == CacheFileFormat.JOB_OWNERS.kind()) {
+				CacheFileFormat.decodeRecord(record, CacheFileFormat.JOB_OWNERS, jobOwnerCache);
+			} else if (kind == CacheFileFormat.JOB_KEYS.kind()) {
+				CacheFileFormat.decodeRecord(record, CacheFileFormat.JOB_KEYS, jobKeyCache);
+			} else {
+				throw new IOException("Unknown journal record kind " + kind);
+			}
+		}
+
+		/*
+		 * Changes to the maps and their journal records are made together under the cache's monitor, so
+		 * the journal has them in the order the maps got them; records are encoded before taking it.
+		 */
+
+		void putJobMetadata(JobKey jobKey, JobMetadata jobMetadata) {
+			byte[] record = encode(CacheFileFormat.JOB_METADATA, jobKey, jobMetadata);
+			synchronized (this) {
+				jobMetadataCache.put(jobKey, jobMetadata);
+				ownerIndex.ownerFound(jobKey, jobMetadata.getOwner());
+				journal(record);
+			}
+		}
+
+		synchronized void putJobOwnerIfAbsent(JobKey jobKey, String owner) {
+			if (owner != null && jobOwnerCache.putIfAbsent(jobKey, owner) == null) {
+				journal(encode(CacheFileFormat.JOB_OWNERS, jobKey, owner));
+			}
+			ownerIndex.ownerFound(jobKey, owner);
+		}
+
+		void putJobKeys(String jobCategory, CachedJobKeys cachedJobKeys) {
+			byte[] record = encode(CacheFileFormat.JOB_KEYS, jobCategory, cachedJobKeys);
+			synchronized (this) {
+				jobKeyCache.put(jobCategory, cachedJobKeys);
+				ownerIndex.jobsListed(jobCategory, cachedJobKeys.toJobKeys());
+				journal(record);
+			}
+		}
+
+		synchronized void expireJobKeys(String jobCategory) {
+			CachedJobKeys expired = jobKeyCache.computeIfPresent(jobCategory, (category, cachedJobKeys) -> cachedJobKeys.expired());
+			if (expired != null) {
+				journal(encode(CacheFileFormat.JOB_KEYS, jobCategory, expired));
+			}
+		}
+
+		/**
+		 * @return the entry as a journal record, null when there is no journal
+		 */
+		private <K, V> byte[] encode(CacheFileFormat.Codec<K, V> codec, K key, V value) {
+			return journal == null ? null : CacheFileFormat.encodeRecord(codec, key, value);
+		}
+
+		private void journal(byte[] record) {
+			CacheJournal journal = this.journal;
+			if (journal != null && record != null) {
+				journal.append(record);
+			}
 		}
 
 		Map<JobKey, JobMetadata> getJobMetadataCache() {
 			return jobMetadataCache;
 		}
 
-		public void clear() {
+		public synchronized void clear() {
+			clears++;
+			ownerIndex.clear();
 			jobMetadataCache.clear();
 			jobOwnerCache.clear();
+			jobKeyCache.clear();
+			journal(CacheFileFormat.encodeClear());
 		}
 
 		public Map<String, CachedJobKeys> getJobKeyCache() {
@@ -231,5 +868,39 @@ public class CachedJenkinsDataService implements JenkinsDataService {
 			return jobOwnerCache;
 		}
 
+		OwnerIndex getOwnerIndex() {
+			return ownerIndex;
+		}
+
+		/**
+		 * Keeps the build's metadata and owner cached however many other builds come and go.
+		 */
+		void pin(JobKey jobKey) {
+			if (jobMetadataCache instanceof TinyLfuMap) {
+				((TinyLfuMap<JobKey, JobMetadata>) jobMetadataCache).pin(jobKey);
+			}
+			if (jobOwnerCache instanceof TinyLfuMap) {
+				((TinyLfuMap<JobKey, String>) jobOwnerCache).pin(jobKey);
+			}
+		}
+
+		void unpin(JobKey jobKey) {
+			if (jobMetadataCache instanceof TinyLfuMap) {
+				((TinyLfuMap<JobKey, JobMetadata>) jobMetadataCache).unpin(jobKey);
+			}
+			if (jobOwnerCache instanceof TinyLfuMap) {
+				((TinyLfuMap<JobKey, String>) jobOwnerCache).unpin(jobKey);
+			}
+		}
+
+		void registerMBeans() {
+			if (jobMetadataCache instanceof TinyLfuMap) {
+				Utils.registerMBean(jobMetadataCache, "worktools.jenkins:type=Cache,name=jobMetadata");
+			}
+			if (jobOwnerCache instanceof TinyLfuMap) {
+				Utils.registerMBean(jobOwnerCache, "worktools.jenkins:type=Cache,name=jobOwner");
+			}
+		}
+
 	}
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package worktools.jenkins.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import worktools.jenkins.http.RateLimitedException;
+import worktools.jenkins.http.RequestCancelledException;
+import worktools.jenkins.http.RequestContext;
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Stops calling Jenkins after a run of consecutive failures and answers with the last values it
+ * fetched successfully instead, until the open interval has passed. Then a single trial call goes
+ * through: success closes the circuit again, failure keeps it open for another interval.
+ * Calls with nothing to fall back on fail fast with a {@link CircuitOpenException}.
+ * <p>
+ * Calls given up on by the caller, because the {@link RequestContext} was cancelled or ran past its
+ * deadline, and calls held back by the rate limiter say nothing about Jenkins and are not counted.
+ */
+public class CircuitBreakingJenkinsDataService implements JenkinsDataService {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN;
+	}
+
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	public static final long DEFAULT_OPEN_INTERVAL_IN_MILLI_SECONDS = 30 * 1000;
+	static final int MAX_LAST_KNOWN_JOB_DATA = 1024;
+	/** categories whose last known job lists are kept */
+	static final int MAX_LAST_KNOWN_JOB_LISTS = 64;
+
+	private final JenkinsDataService dataService;
+	private final int failureThreshold;
+	private final long openIntervalInNanos;
+	private final LongSupplier nanoClock;
+
+	private final Map<JobKey, JobMetadata> lastKnownJobData = lastKnown(MAX_LAST_KNOWN_JOB_DATA);
+	private final Map<String, List<JobKey>> lastKnownJobs = lastKnown(MAX_LAST_KNOWN_JOB_LISTS);
+	private final Map<String, List<JobMetadata>> lastKnownJobsWithMetadata = lastKnown(MAX_LAST_KNOWN_JOB_LISTS);
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private long shortCircuitedCount;
+
+	public CircuitBreakingJenkinsDataService(JenkinsDataService dataService) {
+		this(dataService, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_INTERVAL_IN_MILLI_SECONDS);
+	}
+
+	public CircuitBreakingJenkinsDataService(JenkinsDataService dataService, int failureThreshold, long openIntervalInMilliSeconds) {
+		this(dataService, failureThreshold, openIntervalInMilliSeconds, System::nanoTime);
+	}
+
+	CircuitBreakingJenkinsDataService(JenkinsDataService dataService, int failureThreshold, long openIntervalInMilliSeconds, LongSupplier nanoClock) {
+		this.dataService = dataService;
+		this.failureThreshold = failureThreshold;
+		this.openIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(openIntervalInMilliSeconds);
+		this.nanoClock = nanoClock;
+	}
+
+	@Override
+	public JobMetadata fetchJobData(JobKey jobKey) {
+		return call(() -> dataService.fetchJobData(jobKey),
+				jobData -> lastKnownJobData.put(jobKey, jobData),
+				() -> lastKnownJobData.get(jobKey), jobKey);
+	}
+
+	@Override
+	public List<JobKey> fetchJobs(String project, String jobCategory) {
+		String key = project + "/" + jobCategory;
+		return call(() -> dataService.fetchJobs(project, jobCategory),
+				jobKeys -> lastKnownJobs.put(key, jobKeys),
+				() -> lastKnownJobs.get(key), key);
+	}
+
+	@Override
+	public List<JobKey> fetchJobsAfter(String project, String jobCategory, long afterBuildNumber) {
+		String key = project + "/" + jobCategory;
+		return call(() -> dataService.fetchJobsAfter(project, jobCategory, afterBuildNumber),
+				jobKeys -> {
+					if (afterBuildNumber <= 0) {
+						lastKnownJobs.put(key, jobKeys);
+					}
+				},
+				() -> {
+					List<JobKey> jobKeys = lastKnownJobs.get(key);
+					return jobKeys == null ? null : jobKeys.stream()
+							.filter(jobKey -> jobKey.getBuildNumber() > afterBuildNumber)
+							.collect(Collectors.toList());
+				}, key);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		String key = project + "/" + jobCategory;
+		return call(() -> dataService.fetchJobsWithMetadata(project, jobCategory),
+				jobs -> lastKnownJobsWithMetadata.put(key, jobs),
+				() -> lastKnownJobsWithMetadata.get(key), key);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadataAfter(String project, String jobCategory, long afterBuildNumber) {
+		String key = project + "/" + jobCategory;
+		return call(() -> dataService.fetchJobsWithMetadataAfter(project, jobCategory, afterBuildNumber),
+				jobs -> {
+					if (afterBuildNumber <= 0) {
+						lastKnownJobsWithMetadata.put(key, jobs);
+					}
+				},
+				() -> {
+					List<JobMetadata> jobs = lastKnownJobsWithMetadata.get(key);
+					return jobs == null ? null : jobs.stream()
+							.filter(jobMetadata -> jobMetadata.getJobKey().getBuildNumber() > afterBuildNumber)
+							.collect(Collectors.toList());
+				}, key);
+	}
+
+	@Override
+	public boolean supportsJobsWithMetadata(String jobCategory) {
+		return dataService.supportsJobsWithMetadata(jobCategory);
+	}
+
+	@Override
+	public void jobsChanged(String jobCategory) {
+		dataService.jobsChanged(jobCategory);
+	}
+
+	@Override
+	public void trackingStopped(JobSearchKey jobSearchKey) {
+		dataService.trackingStopped(jobSearchKey);
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/** calls answered from the last known values, or refused, without asking Jenkins */
+	public synchronized long getShortCircuitedCount() {
+		return shortCircuitedCount;
+	}
+
+	/**
+	 * Least recently used values go first once there are more than <code>maxEntries</code>.
+	 */
+	private static <K, V> Map<K, V> lastKnown(int maxEntries) {
+		return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	private <T> T call(Supplier<T> fetch, Consumer<T> remember, Supplier<T> lastKnown, Object what) {
+		if (!allowRequest()) {
+			T value = lastKnown.get();
+			if (value == null) {
+				throw new CircuitOpenException("Not asking Jenkins for " + what + " while it keeps failing");
+			}
+			return value;
+		}
+
+		T value;
+		try {
+			value = fetch.get();
+		} catch (RuntimeException e) {
+			if (isJenkinsFailure(e)) {
+				onFailure();
+			} else {
+				onAbandoned();
+			}
+			throw e;
+		}
+		onSuccess();
+		if (value != null) {
+			remember.accept(value);
+		}
+		return value;
+	}
+
+	private synchronized boolean allowRequest() {
+		if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openIntervalInNanos) {
+			state = State.HALF_OPEN;
+			return true;
+		}
+		if (state != State.CLOSED) {
+			shortCircuitedCount++;
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isJenkinsFailure(RuntimeException e) {
+		if (!RequestContext.current().isActive()) {
+			return false;
+		}
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof RequestCancelledException || cause instanceof RateLimitedException) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A trial call that did not get an answer leaves the circuit open, with the next call tried again.
+	 */
+	private synchronized void onAbandoned() {
+		if (state == State.HALF_OPEN) {
+			state = State.OPEN;
+		}
+	}
+
+	private synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			Utils.log("Jenkins is answering again, closing the circuit");
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+	}
+
+	private synchronized void onFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+			Utils.log("Jenkins failed %s times in a row, serving last known values for %s ms", consecutiveFailures,
+					TimeUnit.NANOSECONDS.toMillis(openIntervalInNanos));
+			state = State.OPEN;
+			openedAt = nanoClock.getAsLong();
+		}
+	}
+}
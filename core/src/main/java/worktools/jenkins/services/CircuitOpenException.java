@@ -0,0 +1,13 @@
+package worktools.jenkins.services;
+
+/**
+ * Jenkins is not being asked while it keeps failing, and there is no earlier answer to fall back on.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = -2417392054938237046L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
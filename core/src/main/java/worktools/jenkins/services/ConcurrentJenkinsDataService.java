@@ -0,0 +1,109 @@
+package worktools.jenkins.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+
+/**
+ * Runs the fetches of a blocking {@link JenkinsDataService} in the background, never more than
+ * <code>maxConcurrentFetches</code> at once. Wraps the data service of one Jenkins server, so that is
+ * the number of requests that server sees from us at any time. Looking up a job fetches that many
+ * candidate builds in parallel instead of one after the other.
+ */
+public class ConcurrentJenkinsDataService implements JenkinsDataService, AsyncJenkinsDataService {
+
+	public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 4;
+
+	private final JenkinsDataService dataService;
+	private final BoundedExecutor executor;
+
+	public ConcurrentJenkinsDataService(JenkinsDataService dataService, int maxConcurrentFetches) {
+		this(dataService, Executors.newFixedThreadPool(maxConcurrentFetches, daemonThreads()), maxConcurrentFetches);
+	}
+
+	public ConcurrentJenkinsDataService(JenkinsDataService dataService, ExecutorService executor, int maxConcurrentFetches) {
+		this.dataService = dataService;
+		this.executor = new BoundedExecutor(executor, maxConcurrentFetches);
+	}
+
+	@Override
+	public CompletableFuture<JobMetadata> fetchJobDataAsync(JobKey jobKey) {
+		return executor.submit(() -> dataService.fetchJobData(jobKey));
+	}
+
+	@Override
+	public CompletableFuture<List<JobKey>> fetchJobsAsync(String project, String jobCategory) {
+		return executor.submit(() -> dataService.fetchJobs(project, jobCategory));
+	}
+
+	@Override
+	public CompletableFuture<List<JobKey>> fetchJobsAfterAsync(String project, String jobCategory, long afterBuildNumber) {
+		return executor.submit(() -> dataService.fetchJobsAfter(project, jobCategory, afterBuildNumber));
+	}
+
+	@Override
+	public int parallelism() {
+		return executor.getMaxConcurrent();
+	}
+
+	@Override
+	public JobMetadata fetchJobData(JobKey jobKey) {
+		return dataService.fetchJobData(jobKey);
+	}
+
+	@Override
+	public List<JobKey> fetchJobs(String project, String jobCategory) {
+		return dataService.fetchJobs(project, jobCategory);
+	}
+
+	@Override
+	public List<JobKey> fetchJobsAfter(String project, String jobCategory, long afterBuildNumber) {
+		return dataService.fetchJobsAfter(project, jobCategory, afterBuildNumber);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		return dataService.fetchJobsWithMetadata(project, jobCategory);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadataAfter(String project, String jobCategory, long afterBuildNumber) {
+		return dataService.fetchJobsWithMetadataAfter(project, jobCategory, afterBuildNumber);
+	}
+
+	@Override
+	public boolean supportsJobsWithMetadata(String jobCategory) {
+		return dataService.supportsJobsWithMetadata(jobCategory);
+	}
+
+	@Override
+	public void jobsChanged(String jobCategory) {
+		dataService.jobsChanged(jobCategory);
+	}
+
+	@Override
+	public void trackingStopped(JobSearchKey jobSearchKey) {
+		dataService.trackingStopped(jobSearchKey);
+	}
+
+	@Override
+	public JobMetadata fetchJob(JobSearchKey jobSearchKey) {
+		return AsyncJenkinsDataService.join(fetchJobAsync(jobSearchKey));
+	}
+
+	private static ThreadFactory daemonThreads() {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "jenkins-fetch-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,83 @@
+package worktools.jenkins.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What to extract from the run documents of a group of job categories, as declared in
+ * <code>extraction-specs.properties</code>.
+ */
+public class ExtractionSpec {
+
+	public enum Engine {
+		/** owner, comment and build stage come from the build parameters */
+		PARAMETERS,
+		/** owner and result come from the first matching xml tags / json fields */
+		TAGS;
+	}
+
+	private final String name;
+	private final Engine engine;
+	private final String treeProjection;
+	private final List<String> ownerFields;
+	private final String commentField;
+	private final String resultField;
+	private final String stageParameterPrefix;
+	private final String defaultStage;
+	private final Map<String, List<String>> stagesByProject;
+
+	public ExtractionSpec(String name, Engine engine, String treeProjection, List<String> ownerFields, String commentField,
+			String resultField, String stageParameterPrefix, String defaultStage, Map<String, List<String>> stagesByProject) {
+		this.name = name;
+		this.engine = engine;
+		this.treeProjection = treeProjection;
+		this.ownerFields = Collections.unmodifiableList(ownerFields);
+		this.commentField = commentField;
+		this.resultField = resultField;
+		this.stageParameterPrefix = stageParameterPrefix;
+		this.defaultStage = defaultStage;
+		this.stagesByProject = Collections.unmodifiableMap(stagesByProject);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public String getTreeProjection() {
+		return treeProjection;
+	}
+
+	public List<String> getOwnerFields() {
+		return ownerFields;
+	}
+
+	public String getCommentField() {
+		return commentField;
+	}
+
+	public String getResultField() {
+		return resultField;
+	}
+
+	public String getStageParameterPrefix() {
+		return stageParameterPrefix;
+	}
+
+	public String getDefaultStage() {
+		return defaultStage;
+	}
+
+	public Map<String, List<String>> getStagesByProject() {
+		return stagesByProject;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ExtractionSpec [%s, %s]", name, engine);
+	}
+}
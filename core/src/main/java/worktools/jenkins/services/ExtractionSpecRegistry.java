@@ -0,0 +1,174 @@
+package worktools.jenkins.services;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import worktools.jenkins.AppConstants;
+import worktools.jenkins.services.ExtractionSpec.Engine;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Maps job categories to their {@link ExtractionSpec}s and holds one xml and one json parser per spec.
+ * Specs are loaded and compiled once; the parsers are stateless, so lookups on the fetch path only
+ * cost a map get.
+ */
+public class ExtractionSpecRegistry {
+
+	private static final String SPECS_RESOURCE = "extraction-specs.properties";
+	private static final String SPEC_PREFIX = "spec.";
+	private static final String CATEGORY_PREFIX = "category.";
+	private static final String STAGES_KEY = ".stages.";
+
+	private final Map<String, ExtractionSpec> specs;
+	private final Map<String, JobMetadataParser> xmlParsersBySpec = new HashMap<>();
+	private final Map<String, JobMetadataParser> jsonParsersBySpec = new HashMap<>();
+	private final Map<String, JobMetadataParser> xmlParsersByCategory = new HashMap<>();
+	private final Map<String, JobMetadataParser> jsonParsersByCategory = new HashMap<>();
+	private final JobMetadataParser defaultXmlParser;
+	private final JobMetadataParser defaultJsonParser;
+
+	public ExtractionSpecRegistry(Properties properties) {
+		specs = parseSpecs(properties);
+		for (ExtractionSpec spec : specs.values()) {
+			xmlParsersBySpec.put(spec.getName(), xmlParser(spec));
+			jsonParsersBySpec.put(spec.getName(), jsonParser(spec));
+		}
+		
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(CATEGORY_PREFIX)) {
+				String category = key.substring(CATEGORY_PREFIX.length());
+				String specName = properties.getProperty(key).trim();
+				xmlParsersByCategory.put(category, parserFor(xmlParsersBySpec, specName, key));
+				jsonParsersByCategory.put(category, parserFor(jsonParsersBySpec, specName, key));
+			}
+		}
+		
+		String defaultSpec = properties.getProperty("default.spec", "").trim();
+		defaultXmlParser = parserFor(xmlParsersBySpec, defaultSpec, "default.spec");
+		defaultJsonParser = parserFor(jsonParsersBySpec, defaultSpec, "default.spec");
+	}
+
+	public static ExtractionSpecRegistry defaultRegistry() {
+		return DefaultRegistryHolder.REGISTRY;
+	}
+
+	/**
+	 * Specs from the file named by the extractionSpecs system property, falling back to the bundled ones.
+	 */
+	static ExtractionSpecRegistry load() {
+		String specsFile = System.getProperty(AppConstants.EXTRACTION_SPECS_PROPERTY);
+		Properties properties = new Properties();
+		try (InputStream in = specsFile != null 
+				? new FileInputStream(specsFile)
+				: Thread.currentThread().getContextClassLoader().getResourceAsStream(SPECS_RESOURCE)) {
+			if (in == null) {
+				throw new IllegalStateException(SPECS_RESOURCE + " not found on the classpath");
+			}
+			properties.load(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read extraction specs from " + (specsFile != null ? specsFile : SPECS_RESOURCE), e);
+		}
+		Utils.log("Loaded extraction specs from %s", specsFile != null ? specsFile : SPECS_RESOURCE);
+		return new ExtractionSpecRegistry(properties);
+	}
+
+	public JobMetadataParser xmlParser(String jobCategory) {
+		return xmlParsersByCategory.getOrDefault(jobCategory, defaultXmlParser);
+	}
+
+	public JobMetadataParser jsonParser(String jobCategory) {
+		return jsonParsersByCategory.getOrDefault(jobCategory, defaultJsonParser);
+	}
+
+	public ExtractionSpec spec(String name) {
+		ExtractionSpec spec = specs.get(name);
+		if (spec == null) {
+			throw new IllegalArgumentException("No extraction spec named " + name);
+		}
+		return spec;
+	}
+
+	private static JobMetadataParser xmlParser(ExtractionSpec spec) {
+		switch (spec.getEngine()) {
+		case PARAMETERS:
+			return new G3JobMetadataParser(spec);
+		case TAGS:
+			return new MinimalJobMetadataParser(spec);
+		default:
+			throw new IllegalStateException("No xml parser for " + spec);
+		}
+	}
+
+	private static JobMetadataParser jsonParser(ExtractionSpec spec) {
+		switch (spec.getEngine()) {
+		case PARAMETERS:
+			return new G3JsonJobMetadataParser(spec);
+		case TAGS:
+			return new MinimalJsonJobMetadataParser(spec);
+		default:
+			throw new IllegalStateException("No json parser for " + spec);
+		}
+	}
+
+	private static JobMetadataParser parserFor(Map<String, JobMetadataParser> parsers, String specName, String key) {
+		JobMetadataParser parser = parsers.get(specName);
+		if (parser == null) {
+			throw new IllegalStateException(String.format("%s refers to unknown extraction spec '%s'", key, specName));
+		}
+		return parser;
+	}
+
+	private static Map<String, ExtractionSpec> parseSpecs(Properties properties) {
+		Map<String, ExtractionSpec> specs = new LinkedHashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(SPEC_PREFIX) && key.endsWith(".engine")) {
+				String name = key.substring(SPEC_PREFIX.length(), key.length() - ".engine".length());
+				specs.put(name, parseSpec(name, properties));
+			}
+		}
+		return specs;
+	}
+
+	private static ExtractionSpec parseSpec(String name, Properties properties) {
+		String prefix = SPEC_PREFIX + name;
+		Engine engine = Engine.valueOf(properties.getProperty(prefix + ".engine").trim().toUpperCase(Locale.ROOT));
+		
+		Map<String, List<String>> stagesByProject = new HashMap<>();
+		String stagesPrefix = prefix + STAGES_KEY;
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(stagesPrefix)) {
+				stagesByProject.put(key.substring(stagesPrefix.length()), list(properties.getProperty(key)));
+			}
+		}
+		
+		return new ExtractionSpec(name, engine, 
+				properties.getProperty(prefix + ".tree", ""), 
+				list(properties.getProperty(prefix + ".owner", "")),
+				properties.getProperty(prefix + ".comment"),
+				properties.getProperty(prefix + ".result", "result"),
+				properties.getProperty(prefix + ".stageParameterPrefix", ""),
+				properties.getProperty(prefix + ".defaultStage"),
+				stagesByProject);
+	}
+
+	private static List<String> list(String value) {
+		return new ArrayList<>(Arrays.stream(value.split(","))
+				.map(String::trim)
+				.filter(item -> !item.isEmpty())
+				.collect(Collectors.toList()));
+	}
+
+	private static class DefaultRegistryHolder {
+		private static final ExtractionSpecRegistry REGISTRY = load();
+	}
+}
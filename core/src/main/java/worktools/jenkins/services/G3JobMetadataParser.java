@@ -1,107 +1,162 @@
 package worktools.jenkins.services;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobMetadata.Result;
 import worktools.jenkins.utils.Utils;
 
+/**
+ * Parses G3 style workflowRun documents in a single forward pass over a StAX reader.
+ * Only the parameters, result, duration and timestamp are looked at; everything else
+ * (the buildsByBranchName / revision history on master runs in particular) is skipped
+ * without being materialised.
+ * <p>
+ * Which parameters hold the owner, comment and build stages comes from a
+ * {@link ExtractionSpec.Engine#PARAMETERS} spec. Instances are immutable and thread-safe.
+ */
 public class G3JobMetadataParser implements JobMetadataParser {
 
+	private final String treeProjection;
+	private final String ownerParameter;
+	private final String commentParameter;
+	private final String defaultStage;
+	private final Map<String, Stages> stagesByProject = new HashMap<>();
+
+	public G3JobMetadataParser() {
+		this(ExtractionSpecRegistry.defaultRegistry().spec("g3"));
+	}
+
+	public G3JobMetadataParser(ExtractionSpec spec) {
+		this.treeProjection = spec.getTreeProjection();
+		this.ownerParameter = spec.getOwnerFields().isEmpty() ? null : spec.getOwnerFields().get(0);
+		this.commentParameter = spec.getCommentField();
+		this.defaultStage = spec.getDefaultStage();
+		for (Map.Entry<String, List<String>> entry : spec.getStagesByProject().entrySet()) {
+			stagesByProject.put(entry.getKey(), new Stages(entry.getValue(), spec.getStageParameterPrefix()));
+		}
+	}
+
 	@Override
-	public JobMetadata parseJobMetadata(JobKey jobKey, String response) {
-		JobMetadata jobMetadata = null;
-		Document document = Utils.extractDocument(response);
-		
-		Map<String, String> parameters = extractValuePairs(document, "/workflowRun/action/parameter");
-		
-		String owner = parameters.get("hudson.model.StringParameterValue_" + "GERRIT_CHANGE_OWNER_EMAIL");
-		String gerritComment = parameters.get("hudson.model.StringParameterValue_" + "GERRIT_CHANGE_SUBJECT");
-		
-		String buildStage = parseBuildStage(parameters, jobKey.getProject());
-	
-		
-		String result =  extractXpath(document, "/workflowRun/result", Result.RUNNING.name());
-//		String buildTime = extractXpath(document, "/workflowRun/duration", "0");
+	public JobMetadata parseJobMetadata(JobKey jobKey, InputStream response) throws IOException {
+		XMLStreamReader reader = Utils.createXmlStreamReader(response);
+		try {
+			reader.nextTag();
+			JobMetadata jobMetadata = parseRun(jobKey, reader);
+			Utils.log("%s", jobMetadata);
+			return jobMetadata;
+		} catch (XMLStreamException e) {
+			throw new RuntimeException("Could not parse job data for " + jobKey, e);
+		} finally {
+			Utils.closeQuietly(reader);
+		}
+	}
+
+	@Override
+	public String treeProjection() {
+		return treeProjection;
+	}
+
+	/**
+	 * Reads the children of the run element the reader is positioned on.
+	 */
+	JobMetadata parseRun(JobKey jobKey, XMLStreamReader reader) throws XMLStreamException {
+		Map<String, String> parameters = new LinkedHashMap<>();
+		String result = Result.RUNNING.name();
 		long duration = 0;
+		long timestamp = 0;
 		
-		/*try{
-			duration = Long.parseLong(buildTime);
-		} catch(RuntimeException e) {
-		}*/
-		
-		jobMetadata = new JobMetadata(jobKey, result, owner, gerritComment, buildStage, duration);
-		
-		Utils.log(jobMetadata.toString());
-		return jobMetadata;
-	}
-	
-	String extractXpath(Document document, String xpathExpression, String defaultValue) {
-		NodeList resultNodes = Utils.extractNodes(document, xpathExpression);
-		if(resultNodes.getLength() > 0) {
-			return resultNodes.item(0).getTextContent();
-		} else {
-			return defaultValue;
+		while (Utils.nextChildElement(reader)) {
+			switch (reader.getLocalName()) {
+			case "action":
+				extractValuePairs(reader, parameters);
+				break;
+			case "result":
+				result = Utils.elementText(reader);
+				break;
+			case "duration":
+				duration = Utils.parseLong(Utils.elementText(reader), 0);
+				break;
+			case "timestamp":
+				timestamp = Utils.parseLong(Utils.elementText(reader), 0);
+				break;
+			default:
+				Utils.skipElement(reader);
+			}
 		}
+		
+		return toJobMetadata(jobKey, parameters, result, duration, timestamp);
 	}
 
-	Map<String, String> extractValuePairs(Document document, String xpath) {
-	
-		Map<String, String> map = new LinkedHashMap<>();
-		NodeList paramNodes = Utils.extractNodes(document, xpath);
+	JobMetadata toJobMetadata(JobKey jobKey, Map<String, String> parameters, String result, long duration, long timestamp) {
+		String owner = parameters.get(ownerParameter);
+		String gerritComment = parameters.get(commentParameter);
+		String buildStage = parseBuildStage(parameters, jobKey.getProject());
 		
-		for(int i=0; i< paramNodes.getLength(); i++) {
-			Node paramNode = paramNodes.item(i);
-			NamedNodeMap attributes = paramNode.getAttributes();
-			Node namedItem = attributes.getNamedItem("_class");
-			String textContent = namedItem.getTextContent();
+		return new JobMetadata(jobKey, Result.of(result), owner, gerritComment, buildStage, duration, timestamp);
+	}
+
+	/**
+	 * Collects the parameter name/value pairs of an action element, keyed as <code>_class + "_" + name</code>.
+	 */
+	void extractValuePairs(XMLStreamReader reader, Map<String, String> map) throws XMLStreamException {
+		while (Utils.nextChildElement(reader)) {
+			if (!"parameter".equals(reader.getLocalName())) {
+				Utils.skipElement(reader);
+				continue;
+			}
+			
+			String parameterClass = reader.getAttributeValue(null, "_class");
 			String name = "";
 			String value = "";
-			NodeList childNodes = paramNode.getChildNodes();
-			
-			for(int j=0; j < childNodes.getLength(); j++) {
-				
-				Node childNode = childNodes.item(j);
-				if("name".equals(childNode.getNodeName())) {
-					name = childNode.getTextContent();
-				} else if("value".equals(childNode.getNodeName())) {
-					value = childNode.getTextContent();
-				} 
+			while (Utils.nextChildElement(reader)) {
+				String childName = reader.getLocalName();
+				if ("name".equals(childName)) {
+					name = Utils.elementText(reader);
+				} else if ("value".equals(childName)) {
+					value = Utils.elementText(reader);
+				} else {
+					Utils.skipElement(reader);
+				}
 			}
-			map.put(textContent + "_" + name, value);
+			map.put(parameterClass + "_" + name, value);
 		}
-		return map;
 	}
 
+	/**
+	 * The last stage, in pipeline order, whose boolean parameter is set.
+	 */
 	String parseBuildStage(Map<String, String> extractAllValuePairs, String project) {
-		Map<String, String[]> map = new HashMap<>();
-		map.put("PROJECT_1", new String[]{"G3Build", "G3Inspect", "G3Deploy", "G3Test", "G3Publish"});
-		map.put("NGI", new String[]{"NGIBuild", "NGIDeploy", "NGISmoke", "NGIIntegration", "NGIPublish"});
-		
-		String[] stages = map.get(project);
-		if(stages == null) {
-			stages = new String[]{};
+		Stages stages = stagesByProject.get(project);
+		if(stages != null) {
+			for(int i = stages.names.length - 1; i >= 0; i--) {
+				if("true".equals(extractAllValuePairs.get(stages.parameters[i]))) {
+					return stages.names[i];
+				}
+			}
 		}
-		
-		List<String> passedStages = Stream.of(stages)
-			.filter(stage -> "true".equals(extractAllValuePairs.get("hudson.model.BooleanParameterValue_" + stage)))
-			.collect(Collectors.toList());
-		
-		if(passedStages.isEmpty()) {
-			return "G3Build";
-		} else {
-			return passedStages.get(passedStages.size() - 1);
+		return defaultStage;
+	}
+
+	private static class Stages {
+		private final String[] names;
+		private final String[] parameters;
+
+		Stages(List<String> names, String parameterPrefix) {
+			this.names = names.toArray(new String[names.size()]);
+			this.parameters = new String[this.names.length];
+			for(int i = 0; i < this.names.length; i++) {
+				parameters[i] = parameterPrefix + this.names[i];
+			}
 		}
 	}
 }
@@ -0,0 +1,121 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.utils.JsonTokenizer;
+import worktools.jenkins.utils.JsonTokenizer.Token;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * api/json counterpart of {@link G3JobMetadataParser}; produces the same {@link JobMetadata}.
+ */
+public class G3JsonJobMetadataParser extends G3JobMetadataParser {
+
+	public G3JsonJobMetadataParser(ExtractionSpec spec) {
+		super(spec);
+	}
+
+	@Override
+	public JobMetadata parseJobMetadata(JobKey jobKey, InputStream response) throws IOException {
+		JsonTokenizer json = Utils.createJsonTokenizer(response);
+		json.next();
+		JobMetadata jobMetadata = parseRun(jobKey, json);
+		Utils.log("%s", jobMetadata);
+		return jobMetadata;
+	}
+
+	/**
+	 * Reads the fields of the run object the tokenizer is positioned at the start of.
+	 */
+	JobMetadata parseRun(JobKey jobKey, JsonTokenizer json) throws IOException {
+		Map<String, String> parameters = new LinkedHashMap<>();
+		String result = Result.RUNNING.name();
+		long duration = 0;
+		long timestamp = 0;
+		
+		while (json.next() == Token.NAME) {
+			if (json.textEquals("actions")) {
+				extractValuePairs(json, parameters);
+			} else if (json.textEquals("result")) {
+				if (json.next() == Token.STRING) {
+					result = json.text();
+				}
+			} else if (json.textEquals("duration")) {
+				json.next();
+				duration = json.longValue(0);
+			} else if (json.textEquals("timestamp")) {
+				json.next();
+				timestamp = json.longValue(0);
+			} else {
+				json.skipValue();
+			}
+		}
+		
+		return toJobMetadata(jobKey, parameters, result, duration, timestamp);
+	}
+
+	void extractValuePairs(JsonTokenizer json, Map<String, String> map) throws IOException {
+		if (json.next() != Token.START_ARRAY) {
+			return;
+		}
+		
+		for (Token action = json.next(); action != Token.END_ARRAY; action = json.next()) {
+			if (action != Token.START_OBJECT) {
+				skipIfContainer(json, action);
+				continue;
+			}
+			while (json.next() == Token.NAME) {
+				if (json.textEquals("parameters")) {
+					extractParameters(json, map);
+				} else {
+					json.skipValue();
+				}
+			}
+		}
+	}
+
+	private void extractParameters(JsonTokenizer json, Map<String, String> map) throws IOException {
+		if (json.next() != Token.START_ARRAY) {
+			return;
+		}
+		
+		for (Token parameter = json.next(); parameter != Token.END_ARRAY; parameter = json.next()) {
+			if (parameter != Token.START_OBJECT) {
+				skipIfContainer(json, parameter);
+				continue;
+			}
+			
+			String parameterClass = null;
+			String name = "";
+			String value = "";
+			while (json.next() == Token.NAME) {
+				if (json.textEquals("_class")) {
+					json.next();
+					parameterClass = json.text();
+				} else if (json.textEquals("name")) {
+					json.next();
+					name = json.text();
+				} else if (json.textEquals("value")) {
+					Token valueToken = json.next();
+					skipIfContainer(json, valueToken);
+					value = valueToken == Token.NULL ? "" : json.text();
+				} else {
+					json.skipValue();
+				}
+			}
+			map.put(parameterClass + "_" + name, value == null ? "" : value);
+		}
+	}
+
+	private void skipIfContainer(JsonTokenizer json, Token token) throws IOException {
+		if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+			json.skipChildren();
+		}
+	}
+}
@@ -2,16 +2,70 @@ package worktools.jenkins.services;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobSearchKey;
+import worktools.jenkins.utils.Utils;
 
 public interface JenkinsDataService {
 
 	JobMetadata fetchJobData(JobKey jobKey);
 
 	List<JobKey> fetchJobs(String project, String jobCategory);
+
+	/**
+	 * Like {@link #fetchJobs(String, String)}, limited to builds numbered above <code>afterBuildNumber</code>.
+	 */
+	default List<JobKey> fetchJobsAfter(String project, String jobCategory, long afterBuildNumber) {
+		return fetchJobs(project, jobCategory).stream()
+			.filter(jobKey -> Utils.parseLong(jobKey.getJobId(), Long.MAX_VALUE) > afterBuildNumber)
+			.collect(Collectors.toList());
+	}
+	
+	/**
+	 * The newest builds of the category with their metadata, newest first, as {@link #fetchJobs(String, String)}
+	 * followed by {@link #fetchJobData(JobKey)} per build. Data services that can get them all in one request
+	 * override this and {@link #supportsJobsWithMetadata(String)}.
+	 */
+	default List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		return fetchJobs(project, jobCategory).stream()
+			.map(this::fetchJobData)
+			.filter(Objects::nonNull)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Like {@link #fetchJobsWithMetadata(String, String)}, limited to builds numbered above
+	 * <code>afterBuildNumber</code>.
+	 */
+	default List<JobMetadata> fetchJobsWithMetadataAfter(String project, String jobCategory, long afterBuildNumber) {
+		return fetchJobsAfter(project, jobCategory, afterBuildNumber).stream()
+			.map(this::fetchJobData)
+			.filter(Objects::nonNull)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Whether {@link #fetchJobsWithMetadata(String, String)} costs a single request for the category.
+	 */
+	default boolean supportsJobsWithMetadata(String jobCategory) {
+		return false;
+	}
+
+	/**
+	 * Tells the data service the category has new or changed builds, e.g. on a pushed build event, so
+	 * whatever it holds on to for the category is fetched again next time.
+	 */
+	default void jobsChanged(String jobCategory) {
+	}
+
+	/**
+	 * Tells the data service the search key is no longer tracked, so whatever it keeps for it can go.
+	 */
+	default void trackingStopped(JobSearchKey jobSearchKey) {
+	}
 	
 	default JobMetadata fetchJob(JobSearchKey jobSearchKey) {
 		String owner = jobSearchKey.getOwner();
@@ -1,69 +1,354 @@
 package worktools.jenkins.services;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import worktools.jenkins.AppConstants;
+import worktools.jenkins.http.ConditionalGetCache;
+import worktools.jenkins.http.HttpTransport;
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.utils.Utils;
 
 public class JenkinsHttpDataService implements JenkinsDataService {
 
-	private static final int MAX_JOBS = 25;
-	private static final String ALL_JOBS_URL = AppConstants.JENKINS_SERVER + "/view/%s/job/%s/api/xml";
-	private static final String JOB_URL = AppConstants.JENKINS_SERVER + "/job/%s/%s/api/xml";
+	static final int MAX_JOBS = 25;
+	private static final String ALL_JOBS_URL = "%s/view/%s/job/%s/api/%s?tree=%s";
+	private static final String JOB_URL = "%s/job/%s/%s/api/%s?tree=%s";
+	private static final String JOBS_TREE_PROJECTION = "builds[number]{0,%d}";
+	private static final String JOBS_WITH_METADATA_TREE_PROJECTION = "builds[number,%s]{0,%d}";
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
 	
+	protected final ExtractionSpecRegistry extractionSpecs;
+	private final String serverUrl;
+	private final HttpTransport transport;
+	private final ConditionalGetCache conditionalGets = new ConditionalGetCache();
+	private volatile int maxJobs = MAX_JOBS;
+	
+	public JenkinsHttpDataService() {
+		this(ExtractionSpecRegistry.defaultRegistry());
+	}
+	
+	public JenkinsHttpDataService(ExtractionSpecRegistry extractionSpecs) {
+		this(AppConstants.JENKINS_SERVER, extractionSpecs);
+	}
+
+	public JenkinsHttpDataService(String serverUrl, ExtractionSpecRegistry extractionSpecs) {
+		this(serverUrl, extractionSpecs, HttpTransport.defaultTransport());
+	}
+
+	public JenkinsHttpDataService(String serverUrl, ExtractionSpecRegistry extractionSpecs, HttpTransport transport) {
+		this.serverUrl = serverUrl;
+		this.extractionSpecs = extractionSpecs;
+		this.transport = transport;
+	}
 	
 	@Override
 	public JobMetadata fetchJobData(JobKey jobKey) {
-		try {
-			String data = fetchJobData(jobKey.getProject(), jobKey.getJobId(), jobKey.getJobCategory());
-			return metadataParser(jobKey).parseJobMetadata(jobKey, data);
+		long start = System.currentTimeMillis();
+		JobMetadataParser parser = metadataParser(jobKey.getJobCategory());
+		String key = conditionalGetKey(jobKey.getProject(), jobUrl(jobKey.getJobId(), jobKey.getJobCategory(), parser.treeProjection()));
+		try (InputStream data = openJobData(jobKey.getProject(), jobKey.getJobId(), jobKey.getJobCategory(), parser.treeProjection())) {
+			if (ConditionalGetCache.isNotModified(data)) {
+				return ConditionalGetCache.notModifiedValue(data);
+			}
+			return conditionalGets.store(key, data, parser.parseJobMetadata(jobKey, data));
 		} catch(IOException e) {
-			throw new RuntimeException(e);
+			throw new RuntimeException("Error reading " + jobKey, e);
+		} finally {
+			Utils.logTimeTaken("Fetching %s", start, jobKey);
 		}
 	}
 
-	private JobMetadataParser metadataParser(JobKey jobKey) {
-		List<String> goodBuildCategories = Arrays.asList("G3Build-Branch", "G3Build-Master","NGIBuild-Branch", "NGIBuild-Master");
-		if(goodBuildCategories.contains(jobKey.getJobCategory())) {
-			return new G3JobMetadataParser();
-		} else {
-			return new MinimalJobMetadataParser();
-		}
+	protected JobMetadataParser metadataParser(String jobCategory) {
+		return extractionSpecs.xmlParser(jobCategory);
+	}
+
+	/**
+	 * Remote api flavour requested from Jenkins, i.e. the <code>api/xml</code> in the urls.
+	 */
+	protected String apiFormat() {
+		return "xml";
 	}
 
-	protected String fetchJobData(String project, String jobId, String jobCategory) throws MalformedURLException, IOException {
-		String url = String.format(JOB_URL, jobCategory, jobId);
-		String data = Utils.fetchHttpData(url);
-		return data;
+	/**
+	 * Response body of the run, or a {@link ConditionalGetCache#isNotModified(InputStream) not modified}
+	 * marker when the run parsed last time has not changed since.
+	 */
+	protected InputStream openJobData(String project, String jobId, String jobCategory, String treeProjection) throws MalformedURLException, IOException {
+		String url = jobUrl(jobId, jobCategory, treeProjection);
+		return conditionalGets.open(transport, url, conditionalGetKey(project, url));
 	}
 
 	@Override
 	public List<JobKey> fetchJobs(String project, String jobCategory) {
+		return fetchJobsAfter(project, jobCategory, 0);
+	}
+
+	/**
+	 * Reads the job list only until {@link #setMaxJobs(int) maxJobs} builds, or the first build
+	 * numbered at or below <code>afterBuildNumber</code>, have been seen. Jenkins lists builds
+	 * newest first, so the rest of the response is never read.
+	 * <p>
+	 * The complete list is kept for conditional requests; when it has not changed, any
+	 * <code>afterBuildNumber</code> is answered from it.
+	 */
+	@Override
+	public List<JobKey> fetchJobsAfter(String project, String jobCategory, long afterBuildNumber) {
+		long start = System.currentTimeMillis();
+		String key = conditionalGetKey(project, jobsUrl(project, jobCategory));
+		try (InputStream jobsResponse = openJobsData(project, jobCategory)) {
+			if (ConditionalGetCache.isNotModified(jobsResponse)) {
+				return jobsAfter(ConditionalGetCache.<List<JobKey>>notModifiedValue(jobsResponse), afterBuildNumber);
+			}
+			List<JobKey> jobs = parseJobKeys(project, jobCategory, jobsResponse, afterBuildNumber);
+			if (afterBuildNumber <= 0) {
+				conditionalGets.store(key, jobsResponse, Collections.unmodifiableList(new ArrayList<>(jobs)));
+			}
+			return jobs;
+		} catch (IOException e) {
+			throw(new RuntimeException("Error reading from " + jobsUrl(project, jobCategory), e));
+		} finally {
+			Utils.logTimeTaken("Fetching jobs of %s", start, jobCategory);
+		}
+	}
+
+	/**
+	 * One request for the job list with the run fields of every build nested in it, instead of one
+	 * request per build. Each build is handed to the category's parser on its own, so it yields the
+	 * same {@link JobMetadata} as {@link #fetchJobData(JobKey)}.
+	 */
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		return fetchJobsWithMetadataAfter(project, jobCategory, 0);
+	}
+
+	/**
+	 * Stops reading the job list at the first build numbered at or below <code>afterBuildNumber</code>,
+	 * the way {@link #fetchJobsAfter(String, String, long)} does.
+	 */
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadataAfter(String project, String jobCategory, long afterBuildNumber) {
+		long start = System.currentTimeMillis();
+		JobMetadataParser parser = metadataParser(jobCategory);
+		String url = jobsWithMetadataUrl(project, jobCategory, parser.treeProjection());
+		String key = conditionalGetKey(project, url);
+		try (InputStream jobsResponse = conditionalGets.open(transport, url, key)) {
+			if (ConditionalGetCache.isNotModified(jobsResponse)) {
+				return jobsWithMetadataAfter(ConditionalGetCache.<List<JobMetadata>>notModifiedValue(jobsResponse), afterBuildNumber);
+			}
+			List<JobMetadata> jobs = parseJobsWithMetadata(project, jobCategory, jobsResponse, parser, afterBuildNumber);
+			if (afterBuildNumber <= 0) {
+				conditionalGets.store(key, jobsResponse, Collections.unmodifiableList(new ArrayList<>(jobs)));
+			}
+			return jobs;
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading from " + url, e);
+		} finally {
+			Utils.logTimeTaken("Fetching jobs with metadata of %s", start, jobCategory);
+		}
+	}
+
+	@Override
+	public boolean supportsJobsWithMetadata(String jobCategory) {
+		return true;
+	}
+
+	/**
+	 * Copies each build element out of the job list and parses the copy as a run document.
+	 */
+	protected List<JobMetadata> parseJobsWithMetadata(String project, String jobCategory, InputStream jobsResponse, JobMetadataParser parser,
+			long afterBuildNumber) throws IOException {
+		List<JobMetadata> jobs = new ArrayList<>();
+		ByteArrayOutputStream build = new ByteArrayOutputStream(4 * 1024);
+		XMLStreamReader reader = Utils.createXmlStreamReader(jobsResponse);
+		try {
+			reader.nextTag();
+			while (jobs.size() < maxJobs && Utils.nextChildElement(reader)) {
+				if (!"build".equals(reader.getLocalName())) {
+					Utils.skipElement(reader);
+					continue;
+				}
+				
+				build.reset();
+				String jobId = copyBuild(reader, build);
+				if (jobId != null) {
+					if (Utils.parseLong(jobId, Long.MAX_VALUE) <= afterBuildNumber) {
+						break;
+					}
+					jobs.add(parser.parseJobMetadata(new JobKey(project, jobId, jobCategory), build.toByteArray()));
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse jobs of " + jobCategory, e);
+		} finally {
+			Utils.closeQuietly(reader);
+		}
+		return jobs;
+	}
+
+	/**
+	 * Writes the build element the reader is on to <code>out</code>, leaving the reader on its end
+	 * tag, and returns its number.
+	 */
+	private static String copyBuild(XMLStreamReader reader, OutputStream out) throws XMLStreamException {
+		XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+		String jobId = null;
+		int depth = 0;
+		while (true) {
+			switch (reader.getEventType()) {
+			case XMLStreamConstants.START_ELEMENT:
+				writer.writeStartElement(reader.getLocalName());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+				}
+				depth++;
+				if (depth == 2 && "number".equals(reader.getLocalName())) {
+					jobId = Utils.elementText(reader).trim();
+					writer.writeCharacters(jobId);
+					writer.writeEndElement();
+					depth--;
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				writer.writeCharacters(reader.getText());
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				writer.writeEndElement();
+				depth--;
+				break;
+			default:
+			}
+			if (depth == 0) {
+				writer.flush();
+				writer.close();
+				return jobId;
+			}
+			reader.next();
+		}
+	}
+
+	protected List<JobKey> parseJobKeys(String project, String jobCategory, InputStream jobsResponse, long afterBuildNumber) throws IOException {
 		List<JobKey> jobs = new ArrayList<>();
-		String jobsResponse = fetchJobsData(project, jobCategory);
-		NodeList jobIdNodes = Utils.extractNodes(jobsResponse, "/workflowJob/build/number");
-		for(int i=0; i<jobIdNodes.getLength() && i < MAX_JOBS; i++) {
-			String jobId = jobIdNodes.item(i).getTextContent();
-			jobs.add(new JobKey(project, jobId, jobCategory));
+		XMLStreamReader reader = Utils.createXmlStreamReader(jobsResponse);
+		try {
+			reader.nextTag();
+			while (jobs.size() < maxJobs && Utils.nextChildElement(reader)) {
+				if (!"build".equals(reader.getLocalName())) {
+					Utils.skipElement(reader);
+					continue;
+				}
+				
+				String jobId = null;
+				while (Utils.nextChildElement(reader)) {
+					if ("number".equals(reader.getLocalName())) {
+						jobId = Utils.elementText(reader).trim();
+					} else {
+						Utils.skipElement(reader);
+					}
+				}
+				
+				if (jobId != null) {
+					if (Utils.parseLong(jobId, Long.MAX_VALUE) <= afterBuildNumber) {
+						break;
+					}
+					jobs.add(new JobKey(project, jobId, jobCategory));
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not parse jobs of " + jobCategory, e);
+		} finally {
+			Utils.closeQuietly(reader);
 		}
 		return jobs;
 	}
 
-	protected String fetchJobsData(String project, String jobCategory) {
-		String url = String.format(ALL_JOBS_URL, project, jobCategory);
-		
+	public int getMaxJobs() {
+		return maxJobs;
+	}
+
+	public void setMaxJobs(int maxJobs) {
+		this.maxJobs = maxJobs;
+	}
+
+	private static List<JobKey> jobsAfter(List<JobKey> jobs, long afterBuildNumber) {
+		List<JobKey> jobsAfter = new ArrayList<>();
+		for (JobKey jobKey : jobs) {
+			if (Utils.parseLong(jobKey.getJobId(), Long.MAX_VALUE) <= afterBuildNumber) {
+				break;
+			}
+			jobsAfter.add(jobKey);
+		}
+		return jobsAfter;
+	}
+
+	private static List<JobMetadata> jobsWithMetadataAfter(List<JobMetadata> jobs, long afterBuildNumber) {
+		List<JobMetadata> jobsAfter = new ArrayList<>();
+		for (JobMetadata jobMetadata : jobs) {
+			if (Utils.parseLong(jobMetadata.getJobKey().getJobId(), Long.MAX_VALUE) <= afterBuildNumber) {
+				break;
+			}
+			jobsAfter.add(jobMetadata);
+		}
+		return jobsAfter;
+	}
+
+	/**
+	 * Response body of the job list, or a {@link ConditionalGetCache#isNotModified(InputStream) not modified}
+	 * marker when the complete list read last time has not changed since.
+	 */
+	protected InputStream openJobsData(String project, String jobCategory) throws IOException {
+		String url = jobsUrl(project, jobCategory);
+		return conditionalGets.open(transport, url, conditionalGetKey(project, url));
+	}
+
+	/**
+	 * The project is not part of the urls but is of the job keys parsed from them, so what was parsed for
+	 * one project is never handed out for another.
+	 */
+	private static String conditionalGetKey(String project, String url) {
+		return project + " " + url;
+	}
+
+	ConditionalGetCache conditionalGets() {
+		return conditionalGets;
+	}
+
+	String jobUrl(String jobId, String jobCategory, String treeProjection) {
+		return String.format(JOB_URL, serverUrl, jobCategory, jobId, apiFormat(), encode(treeProjection));
+	}
+
+	String jobsWithMetadataUrl(String project, String jobCategory, String runTreeProjection) {
+		String treeProjection = runTreeProjection.isEmpty()
+				? String.format(JOBS_TREE_PROJECTION, maxJobs)
+				: String.format(JOBS_WITH_METADATA_TREE_PROJECTION, runTreeProjection, maxJobs);
+		return String.format(ALL_JOBS_URL, serverUrl, project, jobCategory, apiFormat(), encode(treeProjection));
+	}
+
+	String jobsUrl(String project, String jobCategory) {
+		return String.format(ALL_JOBS_URL, serverUrl, project, jobCategory, apiFormat(), encode(String.format(JOBS_TREE_PROJECTION, maxJobs)));
+	}
+
+	private static String encode(String queryValue) {
 		try {
-			return Utils.fetchHttpData(url);
-		} catch (IOException e) {
-			throw(new RuntimeException("Error reading from " + url, e));
+			return URLEncoder.encode(queryValue, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
 		}
 	}
-}
\ No newline at end of file
+}
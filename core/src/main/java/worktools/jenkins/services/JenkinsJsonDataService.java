@@ -0,0 +1,199 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import worktools.jenkins.http.HttpTransport;
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.utils.JsonTokenizer;
+import worktools.jenkins.utils.JsonTokenizer.Token;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Talks to the Jenkins <code>api/json</code> endpoints instead of <code>api/xml</code>.
+ * Uses the same tree projections and yields the same {@link worktools.jenkins.models.JobMetadata}
+ * as {@link JenkinsHttpDataService}.
+ */
+public class JenkinsJsonDataService extends JenkinsHttpDataService {
+
+	public JenkinsJsonDataService() {
+		super();
+	}
+
+	public JenkinsJsonDataService(ExtractionSpecRegistry extractionSpecs) {
+		super(extractionSpecs);
+	}
+
+	public JenkinsJsonDataService(String serverUrl, ExtractionSpecRegistry extractionSpecs) {
+		super(serverUrl, extractionSpecs);
+	}
+
+	public JenkinsJsonDataService(String serverUrl, ExtractionSpecRegistry extractionSpecs, HttpTransport transport) {
+		super(serverUrl, extractionSpecs, transport);
+	}
+
+	@Override
+	protected String apiFormat() {
+		return "json";
+	}
+
+	@Override
+	protected JobMetadataParser metadataParser(String jobCategory) {
+		return extractionSpecs.jsonParser(jobCategory);
+	}
+
+	/**
+	 * Writes each build object back out as json and parses that as a run document.
+	 */
+	@Override
+	protected List<JobMetadata> parseJobsWithMetadata(String project, String jobCategory, InputStream jobsResponse, JobMetadataParser parser,
+			long afterBuildNumber) throws IOException {
+		List<JobMetadata> jobs = new ArrayList<>();
+		StringBuilder build = new StringBuilder(4 * 1024);
+		JsonTokenizer json = Utils.createJsonTokenizer(jobsResponse);
+		json.next();
+		while (json.next() == Token.NAME) {
+			if (!json.textEquals("builds")) {
+				json.skipValue();
+				continue;
+			}
+			if (json.next() != Token.START_ARRAY) {
+				continue;
+			}
+			
+			for (Token token = json.next(); token == Token.START_OBJECT && jobs.size() < getMaxJobs(); token = json.next()) {
+				build.setLength(0);
+				String jobId = copyBuild(json, build);
+				if (jobId != null) {
+					if (Utils.parseLong(jobId, Long.MAX_VALUE) <= afterBuildNumber) {
+						break;
+					}
+					jobs.add(parser.parseJobMetadata(new JobKey(project, jobId, jobCategory), build.toString()));
+				}
+			}
+			return jobs;
+		}
+		return jobs;
+	}
+
+	/**
+	 * Writes the build object the tokenizer is at the start of to <code>out</code>, up to and including
+	 * its closing brace, and returns its number.
+	 */
+	private static String copyBuild(JsonTokenizer json, StringBuilder out) throws IOException {
+		String jobId = null;
+		boolean separate = false;
+		boolean number = false;
+		int depth = 0;
+		Token token = json.current();
+		while (true) {
+			switch (token) {
+			case START_OBJECT:
+			case START_ARRAY:
+				appendSeparator(out, separate);
+				out.append(token == Token.START_OBJECT ? '{' : '[');
+				depth++;
+				separate = false;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				out.append(token == Token.END_OBJECT ? '}' : ']');
+				depth--;
+				separate = true;
+				break;
+			case NAME:
+				appendSeparator(out, separate);
+				appendString(out, json.text()).append(':');
+				number = depth == 1 && json.textEquals("number");
+				separate = false;
+				break;
+			case STRING:
+				appendSeparator(out, separate);
+				appendString(out, json.text());
+				separate = true;
+				break;
+			case NULL:
+				appendSeparator(out, separate);
+				out.append("null");
+				separate = true;
+				break;
+			default:
+				appendSeparator(out, separate);
+				out.append(json.text());
+				if (number && token == Token.NUMBER) {
+					jobId = json.text();
+				}
+				separate = true;
+			}
+			if (token != Token.NAME) {
+				number = false;
+			}
+			if (depth == 0) {
+				return jobId;
+			}
+			token = json.next();
+		}
+	}
+
+	private static void appendSeparator(StringBuilder out, boolean separate) {
+		if (separate) {
+			out.append(',');
+		}
+	}
+
+	private static StringBuilder appendString(StringBuilder out, String value) {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+		return out.append('"');
+	}
+
+	@Override
+	protected List<JobKey> parseJobKeys(String project, String jobCategory, InputStream jobsResponse, long afterBuildNumber) throws IOException {
+		List<JobKey> jobs = new ArrayList<>();
+		JsonTokenizer json = Utils.createJsonTokenizer(jobsResponse);
+		json.next();
+		while (json.next() == Token.NAME) {
+			if (!json.textEquals("builds")) {
+				json.skipValue();
+				continue;
+			}
+			if (json.next() != Token.START_ARRAY) {
+				continue;
+			}
+			
+			for (Token build = json.next(); build == Token.START_OBJECT; build = json.next()) {
+				String jobId = null;
+				while (json.next() == Token.NAME) {
+					if (!json.textEquals("number")) {
+						json.skipValue();
+					} else if (json.next() == Token.NUMBER) {
+						jobId = json.text();
+					}
+				}
+				
+				if (jobId != null) {
+					if (Utils.parseLong(jobId, Long.MAX_VALUE) <= afterBuildNumber) {
+						return jobs;
+					}
+					jobs.add(new JobKey(project, jobId, jobCategory));
+					if (jobs.size() >= getMaxJobs()) {
+						return jobs;
+					}
+				}
+			}
+		}
+		return jobs;
+	}
+}
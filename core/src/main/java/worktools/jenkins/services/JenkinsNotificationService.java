@@ -1,13 +1,16 @@
 package worktools.jenkins.services;
 
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
 
+import worktools.jenkins.http.RequestContext;
+import worktools.jenkins.models.BuildEvent;
+import worktools.jenkins.models.BuildEvent.Phase;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobSearchKey;
 import worktools.jenkins.utils.Utils;
@@ -21,10 +24,25 @@ public class JenkinsNotificationService {
 	
 	private final JobPolling jobPolling;
 
+	/** polling intervals are never stretched more than this */
+	static final double MAX_POLLING_SLOWDOWN = 10;
+	/** while build events are pushed, the tracked job is only polled every this many polling intervals */
+	static final int RECONCILIATION_POLLS = 10;
+	/** pushes are taken to have stopped after this many polling intervals without a build event */
+	static final int PUSH_SILENCE_POLLS = 10;
+
 	public JenkinsNotificationService(JenkinsDataService dataService, int pollingIntervalInMilliSeconds) {
+		this(dataService, pollingIntervalInMilliSeconds, () -> 1);
+	}
+
+	/**
+	 * @param pollingSlowdown factor each polling interval is stretched by when it is scheduled, e.g.
+	 * {@link worktools.jenkins.http.RateLimitingTransport#getPollingSlowdown()}
+	 */
+	public JenkinsNotificationService(JenkinsDataService dataService, int pollingIntervalInMilliSeconds, DoubleSupplier pollingSlowdown) {
 		this.dataService = dataService;
 		scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
-		this.jobPolling = new JobPolling(scheduler, pollingIntervalInMilliSeconds, this);
+		this.jobPolling = new JobPolling(scheduler, pollingIntervalInMilliSeconds, pollingSlowdown, this);
 		
 		registerShutdownHook();
 	}
@@ -37,8 +55,23 @@ public class JenkinsNotificationService {
 		jobPolling.track(jobSearchKey);
 	}
 
+	/**
+	 * Fetches the tracked job right away when the event is about its category, instead of waiting for the
+	 * next poll. While events keep coming, polling drops to a slow reconciliation sweep.
+	 */
+	public void onBuildEvent(BuildEvent buildEvent) {
+		jobPolling.onBuildEvent(buildEvent);
+	}
+
+	/**
+	 * Whether build events have been pushed recently enough to poll slowly.
+	 */
+	public boolean isReceivingPushes() {
+		return jobPolling.isReceivingPushes();
+	}
+
 	private JobMetadata fetch(JobSearchKey jobSearchKey) {
-		Utils.log("Fetching details for: " + jobSearchKey);
+		Utils.log("Fetching details for: %s", jobSearchKey);
 		JobMetadata jobMetadata = dataService.fetchJob(jobSearchKey);
 		return jobMetadata;
 	}
@@ -65,53 +98,232 @@ public class JenkinsNotificationService {
 		
 		private final ScheduledExecutorService scheduler;
 		private final int pollingIntervalInMilliSeconds;
-		private ScheduledFuture<?> pollingTask;
+		private final DoubleSupplier pollingSlowdown;
 		private final JenkinsNotificationService notificationService;
-		private JobSearchKey trackedJobSearchKey;
-		public JobPolling(ScheduledExecutorService scheduler, int pollingIntervalInMilliSeconds, JenkinsNotificationService notificationService) {
+		private Subscription subscription;
+		public JobPolling(ScheduledExecutorService scheduler, int pollingIntervalInMilliSeconds, DoubleSupplier pollingSlowdown, JenkinsNotificationService notificationService) {
 			this.scheduler = scheduler;
 			this.pollingIntervalInMilliSeconds = pollingIntervalInMilliSeconds;
+			this.pollingSlowdown = pollingSlowdown;
 			this.notificationService = notificationService;
 		}
 
-		void poll(JobSearchKey jobSearchKey) {
-			if(Objects.equals(trackedJobSearchKey, jobSearchKey)) {
+		/**
+		 * Each poll schedules the next one once it is done, so a slow Jenkins is never polled again
+		 * before it has answered, and the interval can stretch while Jenkins is being rate limited.
+		 */
+		private synchronized void schedulePoll(Subscription polled) {
+			if(subscription != polled) {
+				return;
+			}
+			polled.nextPoll = scheduler.schedule(() -> {
+				if(!isReceivingPushes(polled) || polled.nanosSinceLastFetch() >= reconciliationIntervalInNanos()) {
+					fetchJobAndNotify(polled);
+				}
+				schedulePoll(polled);
+			}, nextPollingDelay(), TimeUnit.MILLISECONDS);
+		}
+
+		long nextPollingDelay() {
+			double slowdown = Math.min(MAX_POLLING_SLOWDOWN, Math.max(1, pollingSlowdown.getAsDouble()));
+			return (long) (pollingIntervalInMilliSeconds * slowdown);
+		}
+		
+		/**
+		 * Polls keep their usual interval while events are pushed, only skipping the fetch until a
+		 * reconciliation sweep is due, so polling is back to full speed as soon as pushes go quiet.
+		 * Only events of the tracked category count, and tracking something else starts over.
+		 */
+		synchronized boolean isReceivingPushes() {
+			return subscription != null && isReceivingPushes(subscription);
+		}
+
+		private boolean isReceivingPushes(Subscription tracked) {
+			return tracked.pushed && System.nanoTime() - tracked.lastPushNanos < TimeUnit.MILLISECONDS.toNanos((long) pollingIntervalInMilliSeconds * PUSH_SILENCE_POLLS);
+		}
+
+		private long reconciliationIntervalInNanos() {
+			return TimeUnit.MILLISECONDS.toNanos((long) pollingIntervalInMilliSeconds * RECONCILIATION_POLLS);
+		}
+
+		void onBuildEvent(BuildEvent buildEvent) {
+			Subscription tracked;
+			synchronized (this) {
+				tracked = subscription;
+			}
+			if(tracked == null || !buildEvent.getJobCategory().equalsIgnoreCase(tracked.jobSearchKey.getJobCategory())) {
+				return;
+			}
+			tracked.lastPushNanos = System.nanoTime();
+			tracked.pushed = true;
+			if(buildEvent.getPhase() == Phase.QUEUED) {
 				return;
 			}
-			
-			if(pollingTask != null) {
-				pollingTask.cancel(true);
+			Utils.log("Build event %s, fetching %s", buildEvent, tracked.jobSearchKey);
+			if(tracked.buildChanged()) {
+				scheduler.execute(() -> fetchJobAndNotify(tracked));
 			}
-			
-			pollingTask = scheduler.scheduleAtFixedRate(() -> fetchJobAndNotify(jobSearchKey) , pollingIntervalInMilliSeconds, pollingIntervalInMilliSeconds, TimeUnit.MILLISECONDS);
-			trackedJobSearchKey = jobSearchKey;
 		}
 		
 		public void trackAsync(JobSearchKey jobSearchKey) {
 			scheduler.execute(() -> track(jobSearchKey));
 		}
 
+		/**
+		 * Replaces whatever was tracked before: its poll in progress is cancelled, down to closing its
+		 * connections, and nothing it still fetches reaches the listeners. Tracking the same job again
+		 * only fetches it, polling carries on as scheduled.
+		 */
 		public void track(JobSearchKey jobSearchKey) {
-			fetchJobAndNotify(jobSearchKey);
-			poll(jobSearchKey);
+			Subscription tracked = subscribe(jobSearchKey);
+			fetchJobAndNotify(tracked);
+			startPolling(tracked);
+		}
+
+		private synchronized Subscription subscribe(JobSearchKey jobSearchKey) {
+			if(subscription != null) {
+				if(subscription.jobSearchKey.equals(jobSearchKey)) {
+					return subscription;
+				}
+				subscription.cancel();
+				notificationService.dataService.trackingStopped(subscription.jobSearchKey);
+			}
+			subscription = new Subscription(jobSearchKey);
+			return subscription;
+		}
+
+		private synchronized void startPolling(Subscription tracked) {
+			if(tracked.nextPoll == null) {
+				schedulePoll(tracked);
+			}
 		}
 		
-		private void fetchJobAndNotify(JobSearchKey jobSearchKey) {
+		/**
+		 * Fetches in a request context expiring with the next poll, by which time the answer would be stale.
+		 * A subscription fetches one at a time: build events coming in meanwhile are caught up on with a
+		 * single fetch once it is done.
+		 */
+		private void fetchJobAndNotify(Subscription polled) {
+			RequestContext context = polled.startFetch(nextPollingDelay());
+			if(context == null) {
+				return;
+			}
 			try {
-				JobMetadata jobMetadata = notificationService.fetch(jobSearchKey);
-				notificationService.notifyListeners(jobMetadata);
+				if(polled.takeBuildChanged()) {
+					notificationService.dataService.jobsChanged(polled.jobSearchKey.getJobCategory());
+				}
+				JobMetadata jobMetadata = context.call(() -> notificationService.fetch(polled.jobSearchKey));
+				synchronized (this) {
+					if(subscription != polled) {
+						Utils.log("Dropping result for %s, no longer tracked", polled.jobSearchKey);
+						return;
+					}
+					notificationService.notifyListeners(jobMetadata);
+				}
 			} catch (Exception e) {
-				e.printStackTrace();
+				if(context.isCancelled()) {
+					return;
+				}
+				Utils.log("Could not fetch %s, trying again on the next poll: %s", polled.jobSearchKey, e);
+			} finally {
+				if(polled.endFetch(context)) {
+					scheduler.execute(() -> fetchJobAndNotify(polled));
+				}
 			}
 		}
 		
-		public void stopTracking() {
-			pollingTask.cancel(true);
+		public synchronized void stopTracking() {
+			if(subscription != null) {
+				subscription.cancel();
+				notificationService.dataService.trackingStopped(subscription.jobSearchKey);
+				subscription = null;
+			}
 		}
 
 		void registerShutdownHook(JenkinsNotificationService jenkinsNotificationService) {
 			Thread shutdownSchedulerTask = new Thread(() -> jenkinsNotificationService.scheduler.shutdown());
 			Runtime.getRuntime().addShutdownHook(shutdownSchedulerTask);
 		}
+
+		/**
+		 * One tracked job, from the {@link JobPolling#track(JobSearchKey)} call that started tracking it: the
+		 * fetch it has in progress and its next poll.
+		 */
+		private static class Subscription {
+			private final JobSearchKey jobSearchKey;
+			private boolean cancelled;
+			private RequestContext fetching;
+			/** a build event came in that no fetch has started after yet */
+			private boolean buildChanged;
+			/** a fetch catching up on build events is waiting to run */
+			private boolean catchUpQueued;
+			private ScheduledFuture<?> nextPoll;
+			private long lastFetchNanos;
+			/** when a build event of the tracked category last came in */
+			private volatile long lastPushNanos;
+			private volatile boolean pushed;
+
+			Subscription(JobSearchKey jobSearchKey) {
+				this.jobSearchKey = jobSearchKey;
+			}
+
+			synchronized RequestContext startFetch(long deadlineInMilliSeconds) {
+				if(cancelled || fetching != null) {
+					return null;
+				}
+				fetching = RequestContext.withTimeout(deadlineInMilliSeconds);
+				lastFetchNanos = System.nanoTime();
+				return fetching;
+			}
+
+			synchronized long nanosSinceLastFetch() {
+				return System.nanoTime() - lastFetchNanos;
+			}
+
+			/**
+			 * @return whether a fetch catching up on the event has to be queued: not when one is
+			 * already queued, nor while a fetch is in progress, which catches up once it is done.
+			 */
+			synchronized boolean buildChanged() {
+				buildChanged = true;
+				if(cancelled || fetching != null || catchUpQueued) {
+					return false;
+				}
+				catchUpQueued = true;
+				return true;
+			}
+
+			synchronized boolean takeBuildChanged() {
+				catchUpQueued = false;
+				boolean changed = buildChanged;
+				buildChanged = false;
+				return changed;
+			}
+
+			/**
+			 * @return whether build events came in during the fetch, so a fetch catching up on them has
+			 * to be queued.
+			 */
+			synchronized boolean endFetch(RequestContext context) {
+				if(fetching == context) {
+					fetching = null;
+				}
+				if(cancelled || !buildChanged || catchUpQueued) {
+					return false;
+				}
+				catchUpQueued = true;
+				return true;
+			}
+
+			synchronized void cancel() {
+				cancelled = true;
+				if(fetching != null) {
+					fetching.cancel();
+				}
+				if(nextPoll != null) {
+					nextPoll.cancel(true);
+				}
+			}
+		}
 	}
 }
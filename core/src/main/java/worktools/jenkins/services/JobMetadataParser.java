@@ -1,10 +1,40 @@
 package worktools.jenkins.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 
 public interface JobMetadataParser {
-	
-	JobMetadata parseJobMetadata(JobKey jobKey, String response);
+
+	/**
+	 * Parses the (utf-8) response as it is read off the connection; implementations read it
+	 * through bounded buffers and never hold the whole document.
+	 */
+	JobMetadata parseJobMetadata(JobKey jobKey, InputStream response) throws IOException;
+
+	default JobMetadata parseJobMetadata(JobKey jobKey, String response) {
+		return parseJobMetadata(jobKey, response.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses a response already in memory. Parsers that can make use of random access override this.
+	 */
+	default JobMetadata parseJobMetadata(JobKey jobKey, byte[] response) {
+		try {
+			return parseJobMetadata(jobKey, new ByteArrayInputStream(response));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not parse job data for " + jobKey, e);
+		}
+	}
+
+	/**
+	 * Jenkins remote api <code>tree</code> projection covering the fields this parser reads,
+	 * so the server only sends what is actually needed.
+	 */
+	String treeProjection();
 
 }
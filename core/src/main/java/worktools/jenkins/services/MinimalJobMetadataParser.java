@@ -1,42 +1,71 @@
 package worktools.jenkins.services;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.utils.XmlTagScanner;
 
+/**
+ * Picks the result and owner out of any Jenkins run document by scanning the raw bytes: the
+ * <code>result</code>, which Jenkins writes near the end of a run, is looked up backwards from the
+ * tail, and the owner tags (e.g. <code>userId</code>, falling back to <code>authorEmail</code>) in one
+ * forward pass. A streamed document is scanned once, through a fixed size buffer, for the result and
+ * owner tags together. Either way the result is the <code>result</code> element directly under the
+ * document element, never one nested deeper, such as a sub-build's.
+ * <p>
+ * The tags come from a {@link ExtractionSpec.Engine#TAGS} spec and are compiled into scanners
+ * once. Instances are immutable and thread-safe.
+ */
 public class MinimalJobMetadataParser implements JobMetadataParser {
 
-	private static final Pattern RESULT_PATTERN = Pattern.compile("<result>(\\S+)</result>");
-	private static final Pattern OWNER_PATTERN_1 = Pattern.compile("<userId>(\\S+)</userId>");
-	private static final Pattern OWNER_PATTERN_2 = Pattern.compile("<authorEmail>(\\S+)</authorEmail>");
+	private final String treeProjection;
+	private final XmlTagScanner resultScanner;
+	private final XmlTagScanner ownerScanner;
+	private final XmlTagScanner resultAndOwnerScanner;
 
-	@Override
-	public JobMetadata parseJobMetadata(JobKey jobKey, String response) {
-		Result result = parseResult(response, RESULT_PATTERN);
+	public MinimalJobMetadataParser() {
+		this(ExtractionSpecRegistry.defaultRegistry().spec("minimal"));
+	}
+
+	public MinimalJobMetadataParser(ExtractionSpec spec) {
+		List<String> ownerFields = spec.getOwnerFields();
+		String[] resultAndOwnerFields = new String[ownerFields.size() + 1];
+		resultAndOwnerFields[0] = spec.getResultField();
+		for (int i = 0; i < ownerFields.size(); i++) {
+			resultAndOwnerFields[i + 1] = ownerFields.get(i);
+		}
 		
-		String owner = parse(response, OWNER_PATTERN_1, OWNER_PATTERN_2);
+		this.treeProjection = spec.getTreeProjection();
+		this.resultScanner = new XmlTagScanner(spec.getResultField());
+		this.ownerScanner = new XmlTagScanner(ownerFields.toArray(new String[ownerFields.size()]));
+		this.resultAndOwnerScanner = new XmlTagScanner(resultAndOwnerFields);
+	}
+
+	@Override
+	public JobMetadata parseJobMetadata(JobKey jobKey, byte[] response) {
+		Result result = Result.of(resultScanner.lastTopLevelValue(response, 0, response.length));
+		String owner = ownerScanner.firstValue(response, 0, response.length);
 		return new JobMetadata(jobKey, result, owner, null, null, 0);
 	}
 
-	private Result parseResult(String response, Pattern pattern) {
-		String match = parse(response, pattern);
-		if(match != null){
-			return Result.valueOf(match);
+	@Override
+	public JobMetadata parseJobMetadata(JobKey jobKey, InputStream response) throws IOException {
+		// stop once the result and the preferred owner tag are known
+		String[] values = resultAndOwnerScanner.firstValues(response, Math.min(2, resultAndOwnerScanner.tagCount()), true);
+		String owner = null;
+		for (int i = 1; i < values.length && owner == null; i++) {
+			owner = values[i];
 		}
-		return Result.UNKNOWN;
+		return new JobMetadata(jobKey, Result.of(values[0]), owner, null, null, 0);
 	}
 
-	private String parse(String response, Pattern... patterns) {
-		for(Pattern pattern : patterns) {
-			Matcher matcher = pattern.matcher(response);
-			if(matcher.find()) {
-				return matcher.group(1);
-			}
-		}
-		return null;
+	@Override
+	public String treeProjection() {
+		return treeProjection;
 	}
 
 }
@@ -0,0 +1,99 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.utils.JsonTokenizer;
+import worktools.jenkins.utils.JsonTokenizer.Token;
+import worktools.jenkins.utils.Utils;
+
+/**
+ * api/json counterpart of {@link MinimalJobMetadataParser}; produces the same {@link JobMetadata}.
+ */
+public class MinimalJsonJobMetadataParser implements JobMetadataParser {
+
+	private final String treeProjection;
+	private final String resultField;
+	private final String[] ownerFields;
+
+	public MinimalJsonJobMetadataParser(ExtractionSpec spec) {
+		this.treeProjection = spec.getTreeProjection();
+		this.resultField = spec.getResultField();
+		List<String> owners = spec.getOwnerFields();
+		this.ownerFields = owners.toArray(new String[owners.size()]);
+	}
+
+	@Override
+	public JobMetadata parseJobMetadata(JobKey jobKey, InputStream response) throws IOException {
+		Result result = Result.UNKNOWN;
+		String[] owners = new String[ownerFields.length];
+		
+		JsonTokenizer json = Utils.createJsonTokenizer(response);
+		int depth = 0;
+		for (Token token = json.next(); token != Token.END_DOCUMENT; token = json.next()) {
+			switch (token) {
+			case START_OBJECT:
+			case START_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			case NAME:
+				if (depth == 1 && json.textEquals(resultField)) {
+					if (json.next() == Token.STRING) {
+						result = Result.of(json.text());
+					}
+					break;
+				}
+				for (int i = 0; i < ownerFields.length; i++) {
+					if (owners[i] == null && json.textEquals(ownerFields[i])) {
+						owners[i] = ownerValue(json);
+						break;
+					}
+				}
+				break;
+			default:
+			}
+		}
+		
+		return new JobMetadata(jobKey, result, firstOwner(owners), null, null, 0);
+	}
+
+	@Override
+	public String treeProjection() {
+		return treeProjection;
+	}
+
+	private String firstOwner(String[] owners) {
+		for (String owner : owners) {
+			if (owner != null) {
+				return owner;
+			}
+		}
+		return null;
+	}
+
+	private String ownerValue(JsonTokenizer json) throws IOException {
+		Token token = json.next();
+		if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+			json.skipChildren();
+			return null;
+		}
+		String value = json.text();
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (Character.isWhitespace(value.charAt(i))) {
+				return null;
+			}
+		}
+		return value;
+	}
+}
@@ -0,0 +1,106 @@
+package worktools.jenkins.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * First matching result over candidates in order, fetching up to <code>window</code> candidates
+ * ahead. A later candidate that matches early never wins over an earlier one; once the answer is
+ * known the fetches still outstanding are cancelled.
+ */
+class OrderedFanOut<K, T> {
+
+	private final List<K> candidates;
+	private final int window;
+	private final Function<K, CompletableFuture<T>> fetch;
+	private final Predicate<T> match;
+	private final List<CompletableFuture<T>> launched;
+	private final CompletableFuture<T> result = new CompletableFuture<>();
+
+	private OrderedFanOut(List<K> candidates, int window, Function<K, CompletableFuture<T>> fetch, Predicate<T> match) {
+		this.candidates = candidates;
+		this.window = Math.max(1, window);
+		this.fetch = fetch;
+		this.match = match;
+		this.launched = new ArrayList<>(candidates.size());
+	}
+
+	/**
+	 * Completes with the first non null result accepted by <code>match</code>, with null when there is
+	 * none, or with the first failure met before a match.
+	 */
+	static <K, T> CompletableFuture<T> firstMatch(List<K> candidates, int window, Function<K, CompletableFuture<T>> fetch, Predicate<T> match) {
+		OrderedFanOut<K, T> fanOut = new OrderedFanOut<>(candidates, window, fetch, match);
+		fanOut.result.whenComplete((value, e) -> fanOut.cancelFrom(0));
+		fanOut.launchUpTo(fanOut.window);
+		fanOut.check(0);
+		return fanOut.result;
+	}
+
+	private void check(int index) {
+		while (index < candidates.size()) {
+			CompletableFuture<T> candidate = launched(index);
+			if (candidate == null) {
+				return;
+			}
+			if (!candidate.isDone()) {
+				int next = index;
+				candidate.whenComplete((value, e) -> check(next));
+				return;
+			}
+			if (!accept(candidate)) {
+				return;
+			}
+			launchUpTo(index + 1 + window);
+			index++;
+		}
+		result.complete(null);
+	}
+
+	/**
+	 * False when the candidate decided the result.
+	 */
+	private boolean accept(CompletableFuture<T> candidate) {
+		if (result.isDone()) {
+			return false;
+		}
+		T value;
+		try {
+			value = candidate.join();
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+			return false;
+		}
+		if (value != null && match.test(value)) {
+			result.complete(value);
+			return false;
+		}
+		return true;
+	}
+
+	private synchronized CompletableFuture<T> launched(int index) {
+		return index < launched.size() ? launched.get(index) : null;
+	}
+
+	private synchronized void launchUpTo(int end) {
+		while (launched.size() < Math.min(end, candidates.size()) && !result.isDone()) {
+			CompletableFuture<T> future;
+			try {
+				future = fetch.apply(candidates.get(launched.size()));
+			} catch (RuntimeException e) {
+				future = new CompletableFuture<>();
+				future.completeExceptionally(e);
+			}
+			launched.add(future);
+		}
+	}
+
+	private synchronized void cancelFrom(int index) {
+		for (int i = index; i < launched.size(); i++) {
+			launched.get(i).cancel(true);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package worktools.jenkins.services;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobSearchKey;
+
+/**
+ * Builds of each owner by project, category and owner, newest first, kept up to date as owners become
+ * known, so the latest build of an owner is found without going through the job list.
+ * <p>
+ * That answer holds only while the owner of every build in the category's job list newer than it is
+ * known; otherwise, and for categories whose list has not been seen, {@link #latest} has no answer and
+ * the list has to be gone through. Only builds in their category's job list are indexed, and they are
+ * dropped when they leave it, so the index holds no more builds than the job lists do, whatever the
+ * caches load or evict; a job list is therefore to be put before the owners of its builds.
+ */
+final class OwnerIndex {
+
+	private static final Comparator<JobKey> NEWEST_FIRST = Comparator.comparingLong(JobKey::getBuildNumber).reversed();
+	/** owner of builds that have none, until one turns up */
+	private static final String NOBODY = "";
+
+	private static final class Listing {
+		final Set<JobKey> jobKeys;
+		/** numbers of the listed builds whose owner is not known, non-numbered builds counting as newest */
+		final TreeSet<Long> unresolved = new TreeSet<>();
+
+		Listing(List<JobKey> jobKeys) {
+			this.jobKeys = new HashSet<>(jobKeys);
+		}
+	}
+
+	private final Map<JobSearchKey, TreeSet<JobKey>> buildsByOwner = new HashMap<>();
+	private final Map<JobKey, String> owners = new HashMap<>();
+	private final Map<String, Listing> listings = new HashMap<>();
+
+	/**
+	 * Records the owner of a build in its category's job list; other builds are ignored.
+	 */
+	synchronized void ownerFound(JobKey jobKey, String owner) {
+		Listing listing = listings.get(jobKey.getJobCategory());
+		String known = owners.get(jobKey);
+		if (listing == null || !listing.jobKeys.contains(jobKey) || jobKey.getBuildNumber() < 0
+				|| known != null && (!known.isEmpty() || owner == null)) {
+			return;
+		}
+		String normalizedOwner = owner == null ? NOBODY : normalize(owner);
+		owners.put(jobKey, normalizedOwner);
+		listing.unresolved.remove(jobKey.getBuildNumber());
+		if (!normalizedOwner.isEmpty()) {
+			buildsByOwner.computeIfAbsent(ownerKey(jobKey.getProject(), jobKey.getJobCategory(), normalizedOwner),
+					key -> new TreeSet<>(NEWEST_FIRST)).add(jobKey);
+		}
+	}
+
+	/**
+	 * Replaces the job list of the category, forgetting builds no longer in it.
+	 */
+	synchronized void jobsListed(String jobCategory, List<JobKey> jobKeys) {
+		Listing listing = new Listing(jobKeys);
+		for (JobKey jobKey : jobKeys) {
+			if (!owners.containsKey(jobKey)) {
+				listing.unresolved.add(jobKey.getBuildNumber() < 0 ? Long.MAX_VALUE : jobKey.getBuildNumber());
+			}
+		}
+		Listing previous = listings.put(jobCategory, listing);
+		if (previous != null) {
+			for (JobKey jobKey : previous.jobKeys) {
+				if (!listing.jobKeys.contains(jobKey)) {
+					forget(jobKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The owner's newest build in the category's job list, null when that is not known for sure.
+	 */
+	synchronized JobKey latest(String project, String jobCategory, String owner) {
+		Listing listing = listings.get(jobCategory);
+		TreeSet<JobKey> builds = buildsByOwner.get(ownerKey(project, jobCategory, normalize(owner)));
+		if (listing == null || builds == null) {
+			return null;
+		}
+		for (JobKey jobKey : builds) {
+			if (listing.jobKeys.contains(jobKey)) {
+				return listing.unresolved.isEmpty() || listing.unresolved.last() < jobKey.getBuildNumber() ? jobKey : null;
+			}
+		}
+		return null;
+	}
+
+	synchronized void clear() {
+		buildsByOwner.clear();
+		owners.clear();
+		listings.clear();
+	}
+
+	private void forget(JobKey jobKey) {
+		String owner = owners.remove(jobKey);
+		if (owner == null || owner.isEmpty()) {
+			return;
+		}
+		JobSearchKey key = ownerKey(jobKey.getProject(), jobKey.getJobCategory(), owner);
+		TreeSet<JobKey> builds = buildsByOwner.get(key);
+		if (builds != null && builds.remove(jobKey) && builds.isEmpty()) {
+			buildsByOwner.remove(key);
+		}
+	}
+
+	private static JobSearchKey ownerKey(String project, String jobCategory, String normalizedOwner) {
+		return new JobSearchKey(project, jobCategory, normalizedOwner);
+	}
+
+	/** owners are matched ignoring case */
+	static String normalize(String owner) {
+		return owner.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,84 @@
+package worktools.jenkins.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobSearchKey;
+
+/**
+ * Picks the data service per job category, e.g. to move some categories to the json api
+ * while the rest stay on xml.
+ */
+public class RoutingJenkinsDataService implements JenkinsDataService {
+
+	private final JenkinsDataService defaultDataService;
+	private final Map<String, JenkinsDataService> categoryDataServices = new ConcurrentHashMap<>();
+
+	public RoutingJenkinsDataService(JenkinsDataService defaultDataService) {
+		this.defaultDataService = defaultDataService;
+	}
+
+	public RoutingJenkinsDataService route(String jobCategory, JenkinsDataService dataService) {
+		categoryDataServices.put(jobCategory, dataService);
+		return this;
+	}
+
+	/**
+	 * Routes each of the given categories to the data service, ignoring blank entries.
+	 */
+	public RoutingJenkinsDataService route(String[] jobCategories, JenkinsDataService dataService) {
+		for (String jobCategory : jobCategories) {
+			if (!jobCategory.trim().isEmpty()) {
+				route(jobCategory.trim(), dataService);
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public JobMetadata fetchJobData(JobKey jobKey) {
+		return dataService(jobKey.getJobCategory()).fetchJobData(jobKey);
+	}
+
+	@Override
+	public List<JobKey> fetchJobs(String project, String jobCategory) {
+		return dataService(jobCategory).fetchJobs(project, jobCategory);
+	}
+
+	@Override
+	public List<JobKey> fetchJobsAfter(String project, String jobCategory, long afterBuildNumber) {
+		return dataService(jobCategory).fetchJobsAfter(project, jobCategory, afterBuildNumber);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadata(String project, String jobCategory) {
+		return dataService(jobCategory).fetchJobsWithMetadata(project, jobCategory);
+	}
+
+	@Override
+	public List<JobMetadata> fetchJobsWithMetadataAfter(String project, String jobCategory, long afterBuildNumber) {
+		return dataService(jobCategory).fetchJobsWithMetadataAfter(project, jobCategory, afterBuildNumber);
+	}
+
+	@Override
+	public boolean supportsJobsWithMetadata(String jobCategory) {
+		return dataService(jobCategory).supportsJobsWithMetadata(jobCategory);
+	}
+
+	@Override
+	public void jobsChanged(String jobCategory) {
+		dataService(jobCategory).jobsChanged(jobCategory);
+	}
+
+	@Override
+	public void trackingStopped(JobSearchKey jobSearchKey) {
+		dataService(jobSearchKey.getJobCategory()).trackingStopped(jobSearchKey);
+	}
+
+	JenkinsDataService dataService(String jobCategory) {
+		return categoryDataServices.getOrDefault(jobCategory, defaultDataService);
+	}
+}
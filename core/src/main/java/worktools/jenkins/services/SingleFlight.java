@@ -0,0 +1,118 @@
+package worktools.jenkins.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent fetches of the same key: whoever comes first fetches, everyone asking for the
+ * key until that fetch completes gets its result (or failure) instead of fetching again. Blocking and
+ * asynchronous callers share the same fetches.
+ */
+class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Result of the fetch in flight for the key, or of <code>fetch</code> run in the calling thread.
+	 */
+	V run(K key, Supplier<V> fetch) {
+		Flight<V> flight = new Flight<>(new CompletableFuture<>());
+		Flight<V> existing = claim(key, flight);
+		if (existing != null) {
+			return AsyncJenkinsDataService.join(existing.join());
+		}
+		try {
+			V value = fetch.get();
+			inFlight.remove(key, flight);
+			flight.source.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			inFlight.remove(key, flight);
+			flight.source.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Result of the fetch in flight for the key, or of the one <code>fetch</code> starts. Each caller gets
+	 * its own future; the fetch itself is cancelled only once every caller has cancelled theirs.
+	 */
+	CompletableFuture<V> runAsync(K key, Supplier<CompletableFuture<V>> fetch) {
+		CompletableFuture<V> source = new CompletableFuture<>();
+		Flight<V> flight = new Flight<>(source);
+		Flight<V> existing = claim(key, flight);
+		if (existing != null) {
+			return existing.join();
+		}
+		CompletableFuture<V> result = flight.join();
+		CompletableFuture<V> started;
+		try {
+			started = fetch.get();
+		} catch (RuntimeException e) {
+			started = new CompletableFuture<>();
+			started.completeExceptionally(e);
+		}
+		CompletableFuture<V> fetching = started;
+		source.whenComplete((value, e) -> {
+			if (source.isCancelled()) {
+				fetching.cancel(true);
+			}
+		});
+		fetching.whenComplete((value, e) -> {
+			inFlight.remove(key, flight);
+			if (e != null) {
+				source.completeExceptionally(e);
+			} else {
+				source.complete(value);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * The flight to join, or null when the new one is now in flight. A flight everyone gave up on is
+	 * replaced rather than joined.
+	 */
+	private Flight<V> claim(K key, Flight<V> flight) {
+		Flight<V> existing = inFlight.putIfAbsent(key, flight);
+		while (existing != null && existing.source.isCancelled()) {
+			existing = inFlight.replace(key, existing, flight) ? null : inFlight.putIfAbsent(key, flight);
+		}
+		return existing;
+	}
+
+	int inFlightCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Callers waiting on the fetch in flight for the key, besides a blocking caller running it.
+	 */
+	int waitingCount(K key) {
+		Flight<V> flight = inFlight.get(key);
+		return flight == null ? 0 : flight.waiting.get();
+	}
+
+	private static class Flight<V> {
+		private final CompletableFuture<V> source;
+		private final AtomicInteger waiting = new AtomicInteger();
+
+		Flight(CompletableFuture<V> source) {
+			this.source = source;
+		}
+
+		CompletableFuture<V> join() {
+			waiting.incrementAndGet();
+			CompletableFuture<V> copy = source.thenApply(value -> value);
+			copy.whenComplete((value, e) -> {
+				if (copy.isCancelled() && waiting.decrementAndGet() == 0) {
+					source.cancel(true);
+				}
+			});
+			return copy;
+		}
+	}
+}
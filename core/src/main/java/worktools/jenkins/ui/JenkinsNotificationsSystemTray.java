@@ -7,6 +7,8 @@ import java.awt.PopupMenu;
 import java.awt.SystemTray;
 import java.awt.TrayIcon;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -15,15 +17,25 @@ import javax.imageio.ImageIO;
 import javax.swing.SwingUtilities;
 
 import worktools.jenkins.AppConstants;
+import worktools.jenkins.http.HedgingTransport;
+import worktools.jenkins.http.HttpTransport;
+import worktools.jenkins.http.RateLimitingTransport;
+import worktools.jenkins.http.WebhookReceiver;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobSearchKey;
 import worktools.jenkins.models.Settings;
 import worktools.jenkins.models.JobMetadata.Result;
 import worktools.jenkins.models.Settings.SettingsListener;
 import worktools.jenkins.services.CachedJenkinsDataService;
+import worktools.jenkins.services.CircuitBreakingJenkinsDataService;
+import worktools.jenkins.services.ConcurrentJenkinsDataService;
+import worktools.jenkins.services.ExtractionSpecRegistry;
+import worktools.jenkins.services.JenkinsDataService;
 import worktools.jenkins.services.JenkinsHttpDataService;
+import worktools.jenkins.services.JenkinsJsonDataService;
 import worktools.jenkins.services.JenkinsNotificationService;
 import worktools.jenkins.services.NotificationsListener;
+import worktools.jenkins.services.RoutingJenkinsDataService;
 import worktools.jenkins.utils.Utils;
 
 public class JenkinsNotificationsSystemTray implements SettingsListener, NotificationsListener {
@@ -52,7 +64,23 @@ public class JenkinsNotificationsSystemTray implements SettingsListener, Notific
 
 	public static void main(String[] args) throws AWTException {
 		Settings settings = Settings.load();
-		JenkinsNotificationService jenkinsNotificationService = new JenkinsNotificationService(new CachedJenkinsDataService(new JenkinsHttpDataService()), AppConstants.POLLING_INTERVAL_IN_MILLI_SECONDS);
+		RateLimitingTransport rateLimitingTransport = new RateLimitingTransport(HttpTransport.defaultTransport()).registerMBeans();
+		HttpTransport transport = Boolean.getBoolean(AppConstants.HEDGE_REQUESTS_PROPERTY) ? new HedgingTransport(rateLimitingTransport) : rateLimitingTransport;
+		ExtractionSpecRegistry extractionSpecs = ExtractionSpecRegistry.defaultRegistry();
+		JenkinsDataService dataService = new RoutingJenkinsDataService(new JenkinsHttpDataService(AppConstants.JENKINS_SERVER, extractionSpecs, transport))
+				.route(System.getProperty(AppConstants.JSON_API_CATEGORIES_PROPERTY, "").split(","), new JenkinsJsonDataService(AppConstants.JENKINS_SERVER, extractionSpecs, transport));
+		dataService = new CircuitBreakingJenkinsDataService(dataService);
+		dataService = new ConcurrentJenkinsDataService(dataService,
+				Integer.getInteger(AppConstants.MAX_CONCURRENT_FETCHES_PROPERTY, ConcurrentJenkinsDataService.DEFAULT_MAX_CONCURRENT_FETCHES));
+		JenkinsNotificationService jenkinsNotificationService = new JenkinsNotificationService(new CachedJenkinsDataService(dataService).registerMBeans(), AppConstants.POLLING_INTERVAL_IN_MILLI_SECONDS,
+				rateLimitingTransport::getPollingSlowdown);
+		Integer webhookPort = Integer.getInteger(AppConstants.WEBHOOK_PORT_PROPERTY);
+		if (webhookPort != null) {
+			String bindAddress = System.getProperty(AppConstants.WEBHOOK_BIND_ADDRESS_PROPERTY);
+			InetSocketAddress address = bindAddress == null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), webhookPort)
+					: new InetSocketAddress(bindAddress, webhookPort);
+			new WebhookReceiver(address, System.getProperty(AppConstants.WEBHOOK_SECRET_PROPERTY), jenkinsNotificationService::onBuildEvent).start();
+		}
 		JenkinsNotificationsSystemTray systemTray = new JenkinsNotificationsSystemTray(jenkinsNotificationService, settings.toJobSearchKey());
 		systemTray.init();
 		SwingUtilities.invokeLater(systemTray::createGUI);
@@ -205,7 +233,7 @@ public class JenkinsNotificationsSystemTray implements SettingsListener, Notific
 		}
 		
 		if(!Objects.equals(jobSearchKey, settings.toJobSearchKey())) {
-			Utils.log("Tracking : " + settings.getJobCategory());
+			Utils.log("Tracking : %s", settings.getJobCategory());
 			jenkinsService.trackAsync(settings.toJobSearchKey());
 		}
 		this.jobSearchKey = settings.toJobSearchKey();
@@ -0,0 +1,25 @@
+package worktools.jenkins.utils;
+
+/**
+ * Size and effectiveness of a {@link TinyLfuMap}, registered as
+ * <code>worktools.jenkins:type=Cache,name=&lt;cache&gt;</code>.
+ */
+public interface CacheStatsMXBean {
+
+	int getSize();
+
+	int getMaximumSize();
+
+	/** entries kept regardless of the maximum size */
+	int getPinnedCount();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	/** hits over all lookups, 0 before the first lookup */
+	double getHitRatio();
+
+	/** entries dropped to stay within the maximum size, including new entries refused admission */
+	long getEvictionCount();
+}
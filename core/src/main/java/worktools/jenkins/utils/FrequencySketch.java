@@ -0,0 +1,81 @@
+package worktools.jenkins.utils;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch of how often keys were seen, in four rows of counters saturating at 15. Once as many
+ * increments as ten times the expected number of keys have been counted, every counter is halved,
+ * so the frequencies favour recent history.
+ * <p>
+ * Not thread safe, see {@link TinyLfuMap}.
+ */
+class FrequencySketch {
+
+	private static final int ROWS = 4;
+	private static final int MAX_COUNT = 15;
+	private static final int COUNTERS_PER_KEY = 8;
+	private static final int[] SEEDS = {0x97cb3127, 0xbe4b28a5, 0x9e3779b9, 0x7f4a7c15};
+
+	private final byte[][] counters;
+	private final int mask;
+	private final int sampleSize;
+	private int additions;
+
+	FrequencySketch(int expectedKeys) {
+		// a few counters per key keeps the over-counting from collisions low
+		int width = Integer.highestOneBit(Math.max(16, COUNTERS_PER_KEY * expectedKeys - 1) << 1);
+		counters = new byte[ROWS][width];
+		mask = width - 1;
+		sampleSize = 10 * Math.max(16, expectedKeys);
+	}
+
+	void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int row = 0; row < ROWS; row++) {
+			int index = index(hash, row);
+			if (counters[row][index] < MAX_COUNT) {
+				counters[row][index]++;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			age();
+		}
+	}
+
+	int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < ROWS; row++) {
+			frequency = Math.min(frequency, counters[row][index(hash, row)]);
+		}
+		return frequency;
+	}
+
+	void clear() {
+		for (byte[] row : counters) {
+			Arrays.fill(row, (byte) 0);
+		}
+		additions = 0;
+	}
+
+	private void age() {
+		for (byte[] row : counters) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		additions /= 2;
+	}
+
+	private int index(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * 0x9e3779b1;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private static int spread(int hash) {
+		int h = hash * 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+}
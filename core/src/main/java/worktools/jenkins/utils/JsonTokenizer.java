@@ -0,0 +1,272 @@
+package worktools.jenkins.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal pull tokenizer for the Jenkins JSON api. Text of names, strings and numbers is
+ * kept in a reused buffer and only turned into a String when asked for with {@link #text()},
+ * so skipping over uninteresting parts of a document allocates nothing.
+ */
+public class JsonTokenizer implements Closeable {
+
+	public enum Token {
+		START_OBJECT,
+		END_OBJECT,
+		START_ARRAY,
+		END_ARRAY,
+		NAME,
+		STRING,
+		NUMBER,
+		TRUE,
+		FALSE,
+		NULL,
+		END_DOCUMENT;
+	}
+
+	private final Reader reader;
+	private final char[] buffer = new char[8 * 1024];
+	private int position;
+	private int limit;
+
+	private char[] text = new char[64];
+	private int textLength;
+
+	private Token token;
+
+	public JsonTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	public Token next() throws IOException {
+		int c = nextSignificant();
+		switch (c) {
+		case -1:
+			return token = Token.END_DOCUMENT;
+		case '{':
+			return token = Token.START_OBJECT;
+		case '}':
+			return token = Token.END_OBJECT;
+		case '[':
+			return token = Token.START_ARRAY;
+		case ']':
+			return token = Token.END_ARRAY;
+		case '"':
+			readString();
+			int following = nextSignificant();
+			if (following == ':') {
+				return token = Token.NAME;
+			}
+			if (following != -1) {
+				position--;
+			}
+			return token = Token.STRING;
+		case 't':
+			expectLiteral("rue");
+			return token = Token.TRUE;
+		case 'f':
+			expectLiteral("alse");
+			return token = Token.FALSE;
+		case 'n':
+			expectLiteral("ull");
+			return token = Token.NULL;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				readNumber((char) c);
+				return token = Token.NUMBER;
+			}
+			throw new IOException("Unexpected character '" + (char) c + "' in json");
+		}
+	}
+
+	public Token current() {
+		return token;
+	}
+
+	/**
+	 * Text of the current NAME, STRING or NUMBER token, "true"/"false" for booleans and null for null.
+	 */
+	public String text() {
+		switch (token) {
+		case NAME:
+		case STRING:
+		case NUMBER:
+			return new String(text, 0, textLength);
+		case TRUE:
+			return "true";
+		case FALSE:
+			return "false";
+		default:
+			return null;
+		}
+	}
+
+	public boolean textEquals(String value) {
+		if (value.length() != textLength) {
+			return false;
+		}
+		for (int i = 0; i < textLength; i++) {
+			if (text[i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long longValue(long defaultValue) {
+		if (token != Token.NUMBER) {
+			return defaultValue;
+		}
+		long value = 0;
+		boolean negative = false;
+		for (int i = 0; i < textLength; i++) {
+			char c = text[i];
+			if (c == '-' && i == 0) {
+				negative = true;
+			} else if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+			} else {
+				return Utils.parseLong(new String(text, 0, textLength), defaultValue);
+			}
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads the next value and, when it is an object or array, everything up to its end.
+	 */
+	public void skipValue() throws IOException {
+		Token value = next();
+		if (value == Token.START_OBJECT || value == Token.START_ARRAY) {
+			skipChildren();
+		}
+	}
+
+	/**
+	 * Skips to the end of the object or array the tokenizer is currently positioned at the start of.
+	 */
+	public void skipChildren() throws IOException {
+		int depth = 1;
+		while (depth > 0) {
+			switch (next()) {
+			case START_OBJECT:
+			case START_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			case END_DOCUMENT:
+				throw new IOException("Unexpected end of json");
+			default:
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private int nextSignificant() throws IOException {
+		while (true) {
+			int c = read();
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != ',') {
+				return c;
+			}
+		}
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+
+	private void readString() throws IOException {
+		textLength = 0;
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				append(readEscaped());
+			} else if (c == -1) {
+				throw new IOException("Unterminated string in json");
+			} else {
+				append((char) c);
+			}
+		}
+	}
+
+	private char readEscaped() throws IOException {
+		int c = read();
+		switch (c) {
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) {
+					throw new IOException("Invalid unicode escape in json");
+				}
+				value = (value << 4) | digit;
+			}
+			return (char) value;
+		case -1:
+			throw new IOException("Unterminated string in json");
+		default:
+			return (char) c;
+		}
+	}
+
+	private void readNumber(char first) throws IOException {
+		textLength = 0;
+		append(first);
+		while (true) {
+			int c = read();
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+				append((char) c);
+			} else {
+				if (c != -1) {
+					position--;
+				}
+				return;
+			}
+		}
+	}
+
+	private void expectLiteral(String rest) throws IOException {
+		for (int i = 0; i < rest.length(); i++) {
+			if (read() != rest.charAt(i)) {
+				throw new IOException("Invalid literal in json");
+			}
+		}
+	}
+
+	private void append(char c) {
+		if (textLength == text.length) {
+			char[] grown = new char[text.length * 2];
+			System.arraycopy(text, 0, grown, 0, textLength);
+			text = grown;
+		}
+		text[textLength++] = c;
+	}
+}
@@ -0,0 +1,318 @@
+package worktools.jenkins.utils;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map holding at most a maximum number of entries, evicting with W-TinyLFU. New entries go to a small
+ * LRU window; when it overflows, its oldest entry only makes it into the main cache if it has been
+ * looked up more often, according to a {@link FrequencySketch}, than the main cache's next victim. The
+ * main cache is a segmented LRU: entries looked up again move from probation to a protected segment
+ * taking most of the space. So a scan of builds seen once cannot push out the builds polled over and
+ * over, and builds nobody looks at any more age out.
+ * <p>
+ * {@link #pin(Object) Pinned} keys are kept outside of the bound until unpinned. Like
+ * <code>ConcurrentHashMap</code> it does not take null keys or values. All operations are synchronized;
+ * views are snapshots.
+ */
+public class TinyLfuMap<K, V> extends AbstractMap<K, V> implements CacheStatsMXBean {
+
+	static final double WINDOW_FRACTION = 0.01;
+	static final double PROTECTED_FRACTION = 0.8;
+
+	private enum Segment {
+		WINDOW,
+		PROBATION,
+		PROTECTED;
+	}
+
+	private static final class Node<K, V> {
+		final K key;
+		V value;
+		Segment segment;
+		Node<K, V> previous = this;
+		Node<K, V> next = this;
+
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private final int maximumSize;
+	private final int maximumWindowSize;
+	private final int maximumProtectedSize;
+	private final FrequencySketch sketch;
+	private final Map<K, Node<K, V>> data = new HashMap<>();
+	private final Set<Object> pins = new HashSet<>();
+	private final Map<K, V> pinned = new HashMap<>();
+
+	// circular lists around a sentinel, most recently used first
+	private final Node<K, V> window = new Node<>(null, null);
+	private final Node<K, V> probation = new Node<>(null, null);
+	private final Node<K, V> protectedSegment = new Node<>(null, null);
+	private int windowSize;
+	private int protectedSize;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public TinyLfuMap(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive, was " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.maximumWindowSize = Math.max(1, (int) (maximumSize * WINDOW_FRACTION));
+		this.maximumProtectedSize = (int) ((maximumSize - maximumWindowSize) * PROTECTED_FRACTION);
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	@Override
+	public synchronized V get(Object key) {
+		V value = pinned.get(key);
+		if (value != null) {
+			hits++;
+			return value;
+		}
+		if (key == null) {
+			return null;
+		}
+		sketch.increment(key);
+		Node<K, V> node = data.get(key);
+		if (node == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		onAccess(node);
+		return node.value;
+	}
+
+	@Override
+	public synchronized V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		if (pins.contains(key)) {
+			return pinned.put(key, value);
+		}
+		sketch.increment(key);
+		Node<K, V> node = data.get(key);
+		if (node != null) {
+			V previous = node.value;
+			node.value = value;
+			onAccess(node);
+			return previous;
+		}
+		add(key, value);
+		return null;
+	}
+
+	@Override
+	public synchronized V putIfAbsent(K key, V value) {
+		V existing = peek(key);
+		return existing != null ? existing : put(key, value);
+	}
+
+	@Override
+	public synchronized V remove(Object key) {
+		if (pins.contains(key)) {
+			return pinned.remove(key);
+		}
+		Node<K, V> node = data.remove(key);
+		if (node == null) {
+			return null;
+		}
+		unlink(node);
+		return node.value;
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return pinned.containsKey(key) || data.containsKey(key);
+	}
+
+	@Override
+	public synchronized int size() {
+		return data.size() + pinned.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		data.clear();
+		pinned.clear();
+		window.next = window.previous = window;
+		probation.next = probation.previous = probation;
+		protectedSegment.next = protectedSegment.previous = protectedSegment;
+		windowSize = 0;
+		protectedSize = 0;
+		sketch.clear();
+	}
+
+	/**
+	 * Snapshot of the entries; changes to the map are not reflected in it and it cannot be modified.
+	 */
+	@Override
+	public synchronized Set<Entry<K, V>> entrySet() {
+		Map<K, V> snapshot = new HashMap<>(pinned);
+		for (Node<K, V> node : data.values()) {
+			snapshot.put(node.key, node.value);
+		}
+		return Collections.unmodifiableMap(snapshot).entrySet();
+	}
+
+	/**
+	 * Keeps the key, now and whenever it is put later, regardless of the maximum size until it is
+	 * {@link #unpin(Object) unpinned}.
+	 */
+	public synchronized void pin(K key) {
+		if (!pins.add(key)) {
+			return;
+		}
+		Node<K, V> node = data.remove(key);
+		if (node != null) {
+			unlink(node);
+			pinned.put(key, node.value);
+		}
+	}
+
+	/**
+	 * Returns the key to the bounded part of the map, where it competes for space again.
+	 */
+	public synchronized void unpin(K key) {
+		if (!pins.remove(key)) {
+			return;
+		}
+		V value = pinned.remove(key);
+		if (value != null) {
+			add(key, value);
+		}
+	}
+
+	@Override
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return size();
+	}
+
+	@Override
+	public synchronized int getPinnedCount() {
+		return pinned.size();
+	}
+
+	@Override
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	@Override
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	@Override
+	public synchronized double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	private V peek(Object key) {
+		V value = pinned.get(key);
+		if (value != null) {
+			return value;
+		}
+		Node<K, V> node = data.get(key);
+		return node == null ? null : node.value;
+	}
+
+	private void add(K key, V value) {
+		Node<K, V> node = new Node<>(key, value);
+		data.put(key, node);
+		linkFirst(window, node, Segment.WINDOW);
+		evict();
+	}
+
+	private void onAccess(Node<K, V> node) {
+		switch (node.segment) {
+		case WINDOW:
+			unlink(node);
+			linkFirst(window, node, Segment.WINDOW);
+			break;
+		case PROBATION:
+			unlink(node);
+			linkFirst(protectedSegment, node, Segment.PROTECTED);
+			if (protectedSize > maximumProtectedSize) {
+				Node<K, V> demoted = protectedSegment.previous;
+				unlink(demoted);
+				linkFirst(probation, demoted, Segment.PROBATION);
+			}
+			break;
+		case PROTECTED:
+			unlink(node);
+			linkFirst(protectedSegment, node, Segment.PROTECTED);
+			break;
+		default:
+		}
+	}
+
+	/**
+	 * Moves the window's overflow to probation and, while over the maximum size, lets each such
+	 * candidate compete with the least recently used entry of the main cache; the less frequent one goes.
+	 */
+	private void evict() {
+		while (windowSize > maximumWindowSize) {
+			Node<K, V> candidate = window.previous;
+			unlink(candidate);
+			linkFirst(probation, candidate, Segment.PROBATION);
+			if (data.size() <= maximumSize) {
+				continue;
+			}
+			Node<K, V> victim = probation.previous != candidate ? probation.previous : protectedSegment.previous;
+			if (victim == protectedSegment || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+				victim = candidate;
+			}
+			data.remove(victim.key);
+			unlink(victim);
+			evictions++;
+		}
+	}
+
+	private void linkFirst(Node<K, V> sentinel, Node<K, V> node, Segment segment) {
+		node.segment = segment;
+		node.previous = sentinel;
+		node.next = sentinel.next;
+		sentinel.next.previous = node;
+		sentinel.next = node;
+		if (segment == Segment.WINDOW) {
+			windowSize++;
+		} else if (segment == Segment.PROTECTED) {
+			protectedSize++;
+		}
+	}
+
+	private void unlink(Node<K, V> node) {
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		node.previous = node;
+		node.next = node;
+		if (node.segment == Segment.WINDOW) {
+			windowSize--;
+		} else if (node.segment == Segment.PROTECTED) {
+			protectedSize--;
+		}
+	}
+}
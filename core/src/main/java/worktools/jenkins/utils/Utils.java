@@ -4,12 +4,13 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
@@ -17,9 +18,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -31,6 +39,10 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import worktools.jenkins.http.HttpRequest;
+import worktools.jenkins.http.HttpResponse;
+import worktools.jenkins.http.HttpTransport;
+
 public class Utils {
 	
 	private static final ThreadLocal<XPath> xpathCacheFactory = new ThreadLocal<XPath>(){
@@ -47,6 +59,16 @@ public class Utils {
 		
 	};
 
+	private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+
 	public static NodeList extractNodes(String data, String xpathExpression) {
 		Document document = extractDocument(data);
 		NodeList nodes = extractNodes(document, xpathExpression);
@@ -77,12 +99,16 @@ public class Utils {
 	}
 
 	public static Document extractDocument(String data) {
+		return extractDocument(new ByteArrayInputStream(data.getBytes()));
+	}
+
+	public static Document extractDocument(InputStream data) {
 		DocumentBuilder documentBuilder;
 		Document document;
 		try {
 			long start = System.currentTimeMillis();
 			documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			document = documentBuilder.parse(new ByteArrayInputStream(data.getBytes()));
+			document = documentBuilder.parse(data);
 //			Utils.logTimeTaken("extractDocument()", start);
 		} catch (IOException | ParserConfigurationException | SAXException e) {
 			throw new RuntimeException(e);
@@ -90,6 +116,93 @@ public class Utils {
 		return document;
 	}
 	
+	public static XMLStreamReader createXmlStreamReader(InputStream data) {
+		try {
+			return xmlInputFactory.createXMLStreamReader(data);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static JsonTokenizer createJsonTokenizer(InputStream data) {
+		return new JsonTokenizer(new InputStreamReader(data, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Moves the reader to the next child element of the current element.
+	 * Returns false, leaving the reader on the END_ELEMENT, once there are no more children.
+	 */
+	public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Text content of the current element, nested elements included (same as DOM's getTextContent()).
+	 * Leaves the reader on the matching END_ELEMENT.
+	 */
+	public static String elementText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = null;
+		String firstText = "";
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				if (text == null && firstText.isEmpty()) {
+					firstText = reader.getText();
+				} else {
+					if (text == null) {
+						text = new StringBuilder(firstText);
+					}
+					text.append(reader.getText());
+				}
+			}
+		}
+		return text == null ? firstText : text.toString();
+	}
+
+	/**
+	 * Skips the current element and all its children, leaving the reader on its END_ELEMENT.
+	 */
+	public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	public static void closeQuietly(XMLStreamReader reader) {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// swallow
+		}
+	}
+
+	public static long parseLong(String value, long defaultValue) {
+		try {
+			return Long.parseLong(value.trim());
+		} catch (RuntimeException e) {
+			return defaultValue;
+		}
+	}
+
 	public static Document cloneDocument(Document originalDocument) {
 		Document copiedDocument = null;
 		DocumentBuilder documentBuilder;
@@ -114,24 +227,72 @@ public class Utils {
 		return new String(bytes);
 	}
 
+	public static byte[] fetchClasspathFileBytes(String file) throws FileNotFoundException, IOException, URISyntaxException {
+		URI uri = Thread.currentThread().getContextClassLoader().getResource(file).toURI();
+		return Files.readAllBytes(Paths.get(uri));
+	}
+
+	public static InputStream openClasspathFile(String file) throws FileNotFoundException {
+		InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(file);
+		if (in == null) {
+			throw new FileNotFoundException(file + " not found on the classpath");
+		}
+		return in;
+	}
+
+	/**
+	 * Opens the response body for the parser to read as it arrives, so nothing is copied
+	 * or decoded up front. The caller closes the stream.
+	 */
+	public static InputStream openHttpStream(String url) throws MalformedURLException, IOException {
+		return openHttpStream(HttpTransport.defaultTransport(), url);
+	}
+
+	/**
+	 * Like {@link #openHttpStream(String)}, through the given transport. Error responses become IOExceptions.
+	 */
+	public static InputStream openHttpStream(HttpTransport transport, String url) throws MalformedURLException, IOException {
+		Utils.log("Fetching url: %s", url);
+		HttpResponse response = transport.execute(new HttpRequest(url));
+		if (!response.isSuccessful()) {
+			response.close();
+			throw new IOException("HTTP " + response.getStatusCode() + " from " + url);
+		}
+		return response.getBody();
+	}
+
 	public static String fetchHttpData(String url) throws MalformedURLException, IOException {
-		Utils.log("Fetching url: " + url);
 		long start = System.currentTimeMillis();
-		URL httpsUrl = new URL(url);
-		HttpURLConnection urlConnection = (HttpURLConnection) httpsUrl.openConnection();
-		
-		BufferedReader rd = new BufferedReader(new InputStreamReader(urlConnection.getInputStream()));
-		char[] buf = new char[1024 * 256];
-		int read = -1;
-		StringBuilder result = new StringBuilder();
-		while ( (read = rd.read(buf)) > 0) {
-			result.append(buf, 0, read);
+		try (BufferedReader rd = new BufferedReader(new InputStreamReader(openHttpStream(url), StandardCharsets.UTF_8))) {
+			char[] buf = new char[1024 * 256];
+			int read = -1;
+			StringBuilder result = new StringBuilder();
+			while ( (read = rd.read(buf)) > 0) {
+				result.append(buf, 0, read);
+			}
+			return result.toString();
+		} finally {
+			Utils.logTimeTaken("Fetching url", start);
+		}
+	}
+
+	/**
+	 * Registers the bean with the platform MBean server, replacing one registered under the same name
+	 * before. Failures are only logged, monitoring is never worth failing for.
+	 */
+	public static void registerMBean(Object mbean, String objectName) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(objectName);
+			try {
+				server.registerMBean(mbean, name);
+			} catch (InstanceAlreadyExistsException e) {
+				server.unregisterMBean(name);
+				server.registerMBean(mbean, name);
+			}
+		} catch (Exception e) {
+			Utils.log("Could not register %s: %s", objectName, e);
 		}
-		
-		String response = result.toString();
-		
-		Utils.logTimeTaken("Fetching url", start);
-		return response;
 	}
 
 	public static void log(String msg, Object... params) {
@@ -0,0 +1,343 @@
+package worktools.jenkins.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds <code>&lt;tag&gt;value&lt;/tag&gt;</code> pairs directly in raw xml bytes, without decoding
+ * the document. The opening tags are compiled once into an Aho-Corasick automaton with every
+ * transition precomputed, so a forward scan is a single table lookup per byte with no backtracking.
+ * Values follow the same rule as the <code>&lt;tag&gt;(\S+)&lt;/tag&gt;</code> regular expressions it
+ * replaces: non-empty, no whitespace, immediately followed by the closing tag.
+ * <p>
+ * A tag that sits near the end of large documents can be looked up backwards from the tail with
+ * {@link #lastTopLevelValue(byte[], int, int)}. Only a direct child of the document element counts
+ * then, the same as with {@link #firstValues(InputStream, int, boolean)}, so both agree on documents
+ * nesting elements of the same name.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class XmlTagScanner {
+
+	private static final int ALPHABET = 256;
+	/** longest value {@link #firstValues(InputStream, int)} will pick up; owners and results are far shorter */
+	static final int MAX_STREAMED_VALUE = 1024;
+	private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+	private final byte[][] openingTags;
+	private final byte[][] closingTags;
+	private final int[] transitions;
+	private final int[] matches;
+
+	/**
+	 * @param tags tag names in priority order, see {@link #firstValue(byte[], int, int)}
+	 */
+	public XmlTagScanner(String... tags) {
+		openingTags = new byte[tags.length][];
+		closingTags = new byte[tags.length][];
+		for (int i = 0; i < tags.length; i++) {
+			openingTags[i] = ("<" + tags[i] + ">").getBytes(StandardCharsets.UTF_8);
+			closingTags[i] = ("</" + tags[i] + ">").getBytes(StandardCharsets.UTF_8);
+		}
+
+		List<int[]> trie = new ArrayList<>();
+		List<Integer> output = new ArrayList<>();
+		trie.add(newState());
+		output.add(-1);
+		for (int i = 0; i < openingTags.length; i++) {
+			int state = 0;
+			for (byte b : openingTags[i]) {
+				int symbol = b & 0xFF;
+				if (trie.get(state)[symbol] <= 0) {
+					trie.get(state)[symbol] = trie.size();
+					trie.add(newState());
+					output.add(-1);
+				}
+				state = trie.get(state)[symbol];
+			}
+			output.set(state, i);
+		}
+
+		matches = new int[output.size()];
+		for (int i = 0; i < matches.length; i++) {
+			matches[i] = output.get(i);
+		}
+		transitions = compile(trie.toArray(new int[trie.size()][]), matches);
+	}
+
+	public int tagCount() {
+		return openingTags.length;
+	}
+
+	/**
+	 * Value of the highest priority tag present in the range, in a single forward pass that stops
+	 * as soon as the first tag has been found. Returns null when none of the tags have a value.
+	 */
+	public String firstValue(byte[] data, int from, int to) {
+		int bestTag = openingTags.length;
+		int bestStart = -1;
+		int bestLength = 0;
+
+		int state = 0;
+		for (int i = from; i < to && bestTag > 0; i++) {
+			if (state == 0) {
+				// every tag starts with '<', nothing else can leave the root state
+				while (i < to && data[i] != '<') {
+					i++;
+				}
+				if (i == to) {
+					break;
+				}
+			}
+			state = transitions[(state << 8) | (data[i] & 0xFF)];
+			int tag = matches[state];
+			if (tag >= 0 && tag < bestTag) {
+				int valueStart = i + 1;
+				int valueLength = valueLength(data, valueStart, to, closingTags[tag]);
+				if (valueLength > 0) {
+					bestTag = tag;
+					bestStart = valueStart;
+					bestLength = valueLength;
+				}
+			}
+		}
+
+		return bestStart < 0 ? null : new String(data, bestStart, bestLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Value of the first tag where it is a direct child of the document element, searching backwards
+	 * from the end of the range and counting element depth on the way, so nested elements of the same
+	 * name are passed over. Returns null when there is no such value.
+	 */
+	public String lastTopLevelValue(byte[] data, int from, int to) {
+		byte[] openingTag = openingTags[0];
+		int depth = 0;
+		int tagEnd = -1;
+		for (int i = to - 1; i >= from; i--) {
+			if (data[i] == '>') {
+				tagEnd = i;
+				continue;
+			}
+			if (data[i] != '<' || i + 1 == to) {
+				continue;
+			}
+			byte next = data[i + 1];
+			if (next == '/') {
+				depth++;
+			} else if (next != '?' && next != '!' && tagEnd > i && data[tagEnd - 1] != '/') {
+				// inside the document element, and inside this element when it is a direct child
+				if (depth == 2 && regionMatches(data, i, to, openingTag)) {
+					int valueStart = i + openingTag.length;
+					int valueLength = valueLength(data, valueStart, to, closingTags[0]);
+					if (valueLength > 0) {
+						return new String(data, valueStart, valueLength, StandardCharsets.UTF_8);
+					}
+				}
+				depth--;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * First value of every tag, read straight off the stream through a fixed size buffer, so memory
+	 * use does not depend on the document size. Reading stops as soon as the first
+	 * <code>requiredTags</code> tags all have a value. Values longer than {@value #MAX_STREAMED_VALUE}
+	 * bytes are ignored.
+	 */
+	public String[] firstValues(InputStream in, int requiredTags) throws IOException {
+		return firstValues(in, requiredTags, false);
+	}
+
+	/**
+	 * Like {@link #firstValues(InputStream, int)}; with <code>firstTagTopLevel</code> the first tag only
+	 * counts as a direct child of the document element, as with
+	 * {@link #lastTopLevelValue(byte[], int, int)}.
+	 */
+	public String[] firstValues(InputStream in, int requiredTags, boolean firstTagTopLevel) throws IOException {
+		String[] values = new String[openingTags.length];
+		int missing = requiredTags;
+		int longestClosingTag = 0;
+		for (byte[] closingTag : closingTags) {
+			longestClosingTag = Math.max(longestClosingTag, closingTag.length);
+		}
+		int lookahead = MAX_STREAMED_VALUE + longestClosingTag + 1;
+
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		int limit = 0;
+		int position = 0;
+		boolean endOfStream = false;
+		int state = 0;
+		// element depth, only followed with firstTagTopLevel
+		int depth = 0;
+		boolean afterOpeningBracket = false;
+		boolean inStartTag = false;
+		byte previous = 0;
+
+		while (missing > 0) {
+			if (position == limit) {
+				if (endOfStream) {
+					break;
+				}
+				if (limit > 0) {
+					previous = buffer[limit - 1];
+				}
+				position = 0;
+				limit = in.read(buffer, 0, buffer.length);
+				if (limit <= 0) {
+					limit = 0;
+					endOfStream = true;
+					continue;
+				}
+			}
+
+			if (state == 0) {
+				int skipped = position;
+				// a start tag is followed to its end, to tell whether it closes itself
+				while (position < limit && buffer[position] != '<' && !(inStartTag && buffer[position] == '>')) {
+					position++;
+				}
+				if (position > skipped) {
+					previous = buffer[position - 1];
+				}
+				if (position == limit) {
+					continue;
+				}
+			}
+
+			byte b = buffer[position];
+			if (firstTagTopLevel) {
+				if (afterOpeningBracket) {
+					afterOpeningBracket = false;
+					if (b == '/') {
+						depth--;
+					} else if (b != '?' && b != '!') {
+						depth++;
+						inStartTag = true;
+					}
+				} else if (b == '<') {
+					afterOpeningBracket = true;
+				} else if (b == '>' && inStartTag) {
+					inStartTag = false;
+					if (previous == '/') {
+						depth--;
+					}
+				}
+				previous = b;
+			}
+			state = transitions[(state << 8) | (b & 0xFF)];
+			position++;
+			int tag = matches[state];
+			if (tag < 0 || values[tag] != null || (tag == 0 && firstTagTopLevel && depth != 2)) {
+				continue;
+			}
+
+			if (!endOfStream && limit - position < lookahead) {
+				// keep the candidate value in the buffer; everything before it has been consumed already
+				System.arraycopy(buffer, position, buffer, 0, limit - position);
+				limit -= position;
+				position = 0;
+				while (limit < lookahead) {
+					int read = in.read(buffer, limit, buffer.length - limit);
+					if (read <= 0) {
+						endOfStream = true;
+						break;
+					}
+					limit += read;
+				}
+			}
+
+			int valueLength = valueLength(buffer, position, Math.min(limit, position + lookahead), closingTags[tag]);
+			if (valueLength > 0) {
+				values[tag] = new String(buffer, position, valueLength, StandardCharsets.UTF_8);
+				if (tag < requiredTags) {
+					missing--;
+				}
+			}
+		}
+		return values;
+	}
+
+	private static int valueLength(byte[] data, int valueStart, int to, byte[] closingTag) {
+		int i = valueStart;
+		while (i < to && !isWhitespace(data[i]) && data[i] != '<') {
+			i++;
+		}
+		int length = i - valueStart;
+		if (length > 0 && regionMatches(data, i, to, closingTag)) {
+			return length;
+		}
+		return 0;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	private static boolean regionMatches(byte[] data, int offset, int to, byte[] expected) {
+		if (offset + expected.length > to) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (data[offset + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] newState() {
+		int[] state = new int[ALPHABET];
+		Arrays.fill(state, -1);
+		return state;
+	}
+
+	/**
+	 * Turns the trie into a full automaton, flattened to <code>state * 256 + byte</code>: missing
+	 * transitions are resolved through the failure links once here, breadth first, instead of on
+	 * every byte while scanning.
+	 */
+	private static int[] compile(int[][] transitions, int[] matches) {
+		int[] failure = new int[transitions.length];
+		int[] queue = new int[transitions.length];
+		int head = 0;
+		int tail = 0;
+
+		for (int symbol = 0; symbol < ALPHABET; symbol++) {
+			int next = transitions[0][symbol];
+			if (next > 0) {
+				failure[next] = 0;
+				queue[tail++] = next;
+			} else {
+				transitions[0][symbol] = 0;
+			}
+		}
+
+		while (head < tail) {
+			int state = queue[head++];
+			if (matches[state] < 0) {
+				matches[state] = matches[failure[state]];
+			}
+			for (int symbol = 0; symbol < ALPHABET; symbol++) {
+				int next = transitions[state][symbol];
+				if (next > 0) {
+					failure[next] = transitions[failure[state]][symbol];
+					queue[tail++] = next;
+				} else {
+					transitions[state][symbol] = transitions[failure[state]][symbol];
+				}
+			}
+		}
+
+		int[] flattened = new int[transitions.length * ALPHABET];
+		for (int state = 0; state < transitions.length; state++) {
+			System.arraycopy(transitions[state], 0, flattened, state * ALPHABET, ALPHABET);
+		}
+		return flattened;
+	}
+}
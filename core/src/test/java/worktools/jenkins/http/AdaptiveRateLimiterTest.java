@@ -0,0 +1,69 @@
+package worktools.jenkins.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveRateLimiterTest {
+
+	private long now;
+	private final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(0.5, 4, 2, 1000, () -> now);
+
+	@Test
+	public void burstGoesOutImmediatelyThenRequestsAreSpacedByTheRate() {
+		assertEquals(0, limiter.reserve(seconds(10)));
+		assertEquals(0, limiter.reserve(seconds(10)));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(250), limiter.reserve(seconds(10)));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.reserve(seconds(10)));
+	}
+
+	@Test
+	public void requestsThatWouldWaitTooLongAreRejected() {
+		limiter.reserve(seconds(10));
+		limiter.reserve(seconds(10));
+		assertEquals(-1, limiter.reserve(TimeUnit.MILLISECONDS.toNanos(100)));
+		assertEquals(1, limiter.getRejectedCount());
+		assertEquals(2, limiter.getRequestCount());
+	}
+
+	@Test
+	public void overloadHalvesTheRateAndSuccessWinsItBackSlowly() {
+		limiter.onResponse(503, 0, 0);
+		limiter.onResponse(429, 0, 0);
+		assertEquals(2, limiter.getRate(), 0);
+		assertEquals(2, limiter.getSlowdown(), 0);
+
+		now += seconds(1);
+		limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(1500), 0);
+		assertEquals(1, limiter.getRate(), 0);
+		now += seconds(1);
+		limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(1500), 0);
+		now += seconds(1);
+		limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(1500), 0);
+		assertEquals("never below the minimum rate", 0.5, limiter.getRate(), 0);
+
+		for (int i = 0; i < 10; i++) {
+			limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(100), 0);
+		}
+		assertEquals(0.9, limiter.getRate(), 0.0001);
+		for (int i = 0; i < 1000; i++) {
+			limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(100), 0);
+		}
+		assertEquals(4, limiter.getRate(), 0);
+	}
+
+	@Test
+	public void retryAfterHoldsRequestsBack() {
+		limiter.onResponse(503, 0, 3000);
+		long wait = limiter.reserve(seconds(10));
+		assertEquals(seconds(3), wait);
+		assertTrue(limiter.getSlowdown() >= 2);
+	}
+
+	private static long seconds(long seconds) {
+		return TimeUnit.SECONDS.toNanos(seconds);
+	}
+}
@@ -0,0 +1,134 @@
+package worktools.jenkins.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HedgingTransportTest {
+
+	@Test
+	public void slowRequestsAreHedgedAndTheLoserClosed() throws Exception {
+		CountDownLatch slowResponse = new CountDownLatch(1);
+		CountDownLatch loserClosed = new CountDownLatch(1);
+		AtomicInteger requests = new AtomicInteger();
+		HedgingTransport transport = new HedgingTransport(request -> {
+			int number = requests.incrementAndGet();
+			if (number == HedgingTransport.MIN_SAMPLES + 1) {
+				await(slowResponse);
+				return response("slow", loserClosed);
+			}
+			return response("fast", null);
+		});
+
+		for (int i = 0; i < HedgingTransport.MIN_SAMPLES; i++) {
+			transport.execute(new HttpRequest("http://jenkins/job/" + i)).close();
+		}
+		assertEquals("not hedged while learning", 0, transport.getHedgedCount());
+		assertTrue(transport.getHedgeDelay() >= 0);
+
+		try (HttpResponse response = transport.execute(new HttpRequest("http://jenkins/job/slow"))) {
+			assertEquals("fast", response.getHeader("X-Copy"));
+		}
+		assertEquals(1, transport.getHedgedCount());
+
+		slowResponse.countDown();
+		assertTrue("losing response is closed", loserClosed.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void noHedgeIsSentWithoutABackgroundPermit() throws Exception {
+		CountDownLatch slowResponse = new CountDownLatch(1);
+		AtomicInteger requests = new AtomicInteger();
+		HedgingTransport transport = new HedgingTransport(request -> {
+			if (requests.incrementAndGet() == HedgingTransport.MIN_SAMPLES + 1) {
+				await(slowResponse);
+				return response("slow", null);
+			}
+			return response("fast", null);
+		}, 1);
+		for (int i = 0; i < HedgingTransport.MIN_SAMPLES; i++) {
+			transport.execute(new HttpRequest("http://jenkins/job/" + i)).close();
+		}
+
+		CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> {
+			try (HttpResponse response = transport.execute(new HttpRequest("http://jenkins/job/slow"))) {
+				return response.getHeader("X-Copy");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		TimeUnit.MILLISECONDS.sleep(4 * HedgingTransport.MIN_HEDGE_DELAY_IN_MILLI_SECONDS);
+		assertEquals("the primary holds the only permit", HedgingTransport.MIN_SAMPLES + 1, requests.get());
+
+		slowResponse.countDown();
+		assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+		assertEquals(0, transport.getHedgedCount());
+	}
+
+	@Test
+	public void requestsFailingBeforeTheHedgeDelayAreNotHedged() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HedgingTransport transport = new HedgingTransport(request -> {
+			if (requests.incrementAndGet() > HedgingTransport.MIN_SAMPLES) {
+				throw new IOException("connection refused");
+			}
+			return response("fast", null);
+		});
+		for (int i = 0; i < HedgingTransport.MIN_SAMPLES; i++) {
+			transport.execute(new HttpRequest("http://jenkins/job/" + i)).close();
+		}
+
+		try {
+			transport.execute(new HttpRequest("http://jenkins/job/failing")).close();
+			fail("the failure is not hidden");
+		} catch (IOException e) {
+			assertEquals("connection refused", e.getMessage());
+		}
+		assertEquals(0, transport.getHedgedCount());
+		assertEquals(HedgingTransport.MIN_SAMPLES + 1, requests.get());
+	}
+
+	@Test
+	public void fastRequestsAreNotHedged() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		HedgingTransport transport = new HedgingTransport(request -> {
+			requests.incrementAndGet();
+			return response("fast", null);
+		});
+		for (int i = 0; i < 3 * HedgingTransport.MIN_SAMPLES; i++) {
+			transport.execute(new HttpRequest("http://jenkins/job/" + i)).close();
+		}
+		assertEquals(0, transport.getHedgedCount());
+		assertEquals(3 * HedgingTransport.MIN_SAMPLES, requests.get());
+	}
+
+	private static HttpResponse response(String copy, CountDownLatch closed) {
+		return new HttpResponse(HttpResponse.OK, Collections.singletonMap("X-Copy", copy), new ByteArrayInputStream(new byte[0]) {
+			@Override
+			public void close() throws IOException {
+				if (closed != null) {
+					closed.countDown();
+				}
+			}
+		});
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
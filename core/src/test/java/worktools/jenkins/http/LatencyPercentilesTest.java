@@ -0,0 +1,26 @@
+package worktools.jenkins.http;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyPercentilesTest {
+
+	@Test
+	public void percentileIsRecomputedEveryFewSamples() {
+		LatencyPercentiles latencies = new LatencyPercentiles(100);
+		assertEquals("nothing recorded yet", -1, latencies.percentile(0.5, 1));
+		for (int i = 1; i <= 100; i++) {
+			latencies.record(i);
+		}
+		assertEquals(95, latencies.percentile(0.95, 20));
+		assertEquals(50, latencies.percentile(0.5, 20));
+
+		for (int i = 1; i < LatencyPercentiles.RECOMPUTE_EVERY; i++) {
+			latencies.record(1000);
+		}
+		assertEquals("not sorted again yet", 50, latencies.percentile(0.5, 20));
+		latencies.record(1000);
+		assertEquals(66, latencies.percentile(0.5, 20));
+	}
+}
@@ -0,0 +1,90 @@
+package worktools.jenkins.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.BuildEvent;
+import worktools.jenkins.models.BuildEvent.Phase;
+
+public class WebhookReceiverTest {
+
+	@Test
+	public void readsTheBuildOutOfNotificationPluginEvents() throws IOException {
+		BuildEvent event = WebhookReceiver.parse(new StringReader("{\"name\":\"G3Build-Master\",\"url\":\"job/G3Build-Master/\","
+				+ "\"build\":{\"full_url\":\"http://jenkins/job/G3Build-Master/42/\",\"number\":42,\"queue_id\":7,\"phase\":\"COMPLETED\","
+				+ "\"status\":\"FAILURE\",\"scm\":{\"changes\":[\"a\",\"b\"],\"culprits\":[]},\"parameters\":{\"G3Build\":\"true\"},\"artifacts\":{}}}"));
+		assertEquals("G3Build-Master", event.getJobCategory());
+		assertEquals(42, event.getBuildNumber());
+		assertEquals(Phase.COMPLETED, event.getPhase());
+		assertEquals("FAILURE", event.getStatus());
+
+		BuildEvent started = WebhookReceiver.parse(new StringReader("{\"build\":{\"phase\":\"STARTED\",\"number\":43},\"name\":\"G3Build-Master\"}"));
+		assertEquals(Phase.STARTED, started.getPhase());
+		assertNull(started.getStatus());
+	}
+
+	@Test
+	public void answersEventsOverHttp() throws Exception {
+		BlockingQueue<BuildEvent> events = new ArrayBlockingQueue<>(10);
+		try (WebhookReceiver receiver = new WebhookReceiver(0, events::add).start()) {
+			String url = "http://127.0.0.1:" + receiver.getPort() + WebhookReceiver.PATH;
+			assertEquals(202, post(url, "{\"name\":\"G3Build-Master\",\"build\":{\"number\":42,\"phase\":\"STARTED\"}}"));
+			assertEquals(400, post(url, "{\"build\":{\"number\":42}}"));
+			assertEquals(400, post(url, "not json"));
+
+			assertEquals(1, events.size());
+			assertEquals(42, events.take().getBuildNumber());
+			assertTrue(events.isEmpty());
+		}
+	}
+
+	@Test
+	public void refusesEventsWithoutTheSharedSecret() throws Exception {
+		BlockingQueue<BuildEvent> events = new ArrayBlockingQueue<>(10);
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		try (WebhookReceiver receiver = new WebhookReceiver(address, "s3cret", events::add).start()) {
+			String url = "http://127.0.0.1:" + receiver.getPort() + WebhookReceiver.PATH;
+			String event = "{\"name\":\"G3Build-Master\",\"build\":{\"number\":42,\"phase\":\"STARTED\"}}";
+			assertEquals(403, post(url, event));
+			assertEquals(403, post(url + "?token=guess", event));
+			assertEquals(202, post(url + "?token=s3cret", event));
+
+			assertEquals(42, events.poll(5, TimeUnit.SECONDS).getBuildNumber());
+			assertTrue(events.isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void needsASharedSecretBeyondLoopback() {
+		new WebhookReceiver(new InetSocketAddress(0), null, event -> { });
+	}
+
+	private static int post(String url, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
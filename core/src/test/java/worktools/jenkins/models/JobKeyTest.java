@@ -0,0 +1,85 @@
+package worktools.jenkins.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.utils.Utils;
+
+public class JobKeyTest {
+
+	@Test
+	public void keepsJobIdsAsGiven() {
+		for (String jobId : new String[] {"8660", "0", "job", "007", "-1", "", "12345678901234567890", null}) {
+			JobKey jobKey = new JobKey("PROJECT_1", jobId, "G3Build-Master");
+			assertEquals(jobId, jobKey.getJobId());
+			assertEquals(new JobKey("PROJECT_1", jobId, "G3Build-Master"), jobKey);
+			assertEquals(new JobKey("PROJECT_1", jobId, "G3Build-Master").hashCode(), jobKey.hashCode());
+		}
+		assertEquals(8660, new JobKey("PROJECT_1", "8660", "G3Build-Master").getBuildNumber());
+		assertEquals(-1, new JobKey("PROJECT_1", "job", "G3Build-Promotion").getBuildNumber());
+		assertFalse(new JobKey("PROJECT_1", "7", "G3Build-Master").equals(new JobKey("PROJECT_1", "007", "G3Build-Master")));
+		assertFalse(new JobKey("PROJECT_1", "8660", "G3Build-Master").equals(new JobKey("PROJECT_1", "8660", "G3Build-Branch")));
+		assertFalse(new JobKey("PROJECT_1", "8660", "G3Build-Master").equals(new JobKey("NGI", "8660", "G3Build-Master")));
+	}
+
+	@Test
+	public void sharesOwnerAndStageStrings() {
+		JobKey jobKey = new JobKey("PROJECT_1", "8660", "G3Build-Master");
+		JobMetadata first = new JobMetadata(jobKey, Result.SUCCESS, new String("developer.one@company.com"), null, new String("G3Publish"), 0);
+		JobMetadata second = new JobMetadata(jobKey, Result.SUCCESS, new String("developer.one@company.com"), null, new String("G3Publish"), 0);
+		assertSame(first.getOwner(), second.getOwner());
+		assertSame(first.getBuildStage(), second.getBuildStage());
+		assertSame(jobKey.getJobCategory(), new JobKey("NGI", "1", new String("G3Build-Master")).getJobCategory());
+	}
+
+	@Test
+	public void serializedFormIsUnchanged() throws Exception {
+		JobKey jobKey = new JobKey("PROJECT_1", "job", "G3Build-Promotion");
+		JobMetadata jobMetadata = new JobMetadata(jobKey, Result.FAILURE, "developer.one@company.com", "comment", "G3Test", 10, 20);
+		JobMetadata copy = (JobMetadata) deserialize(serialize(jobMetadata));
+		assertEquals(jobMetadata, copy);
+		assertEquals(jobKey.getJobId(), copy.getJobKey().getJobId());
+		assertSame(jobMetadata.getOwner(), copy.getOwner());
+		assertEquals(20, copy.getTimestamp());
+	}
+
+	@Test
+	public void readsCacheFilesWrittenByEarlierVersions() throws Exception {
+		@SuppressWarnings("unchecked")
+		Map<JobKey, JobMetadata> cache = (Map<JobKey, JobMetadata>) deserialize(Utils.fetchClasspathFileBytes("legacy/jobMetadata.cache"));
+		assertEquals(3, cache.size());
+		JobMetadata master = cache.get(new JobKey("PROJECT_1", "8660", "G3Build-Master"));
+		assertEquals("developer.five@company.com", master.getOwner());
+		assertEquals(1501499360025L, master.getTimestamp());
+		assertEquals("job", cache.get(new JobKey("PROJECT_1", "job", "G3Build-Promotion")).getJobId());
+		for (Map.Entry<JobKey, JobMetadata> entry : cache.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue().getJobKey());
+			assertEquals(entry.getValue(), cache.get(new JobKey(entry.getKey().getProject(), entry.getKey().getJobId(), entry.getKey().getJobCategory())));
+		}
+	}
+
+	private static byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.services.CachedJenkinsDataService.Cache;
+import worktools.jenkins.services.CachedJenkinsDataService.CachedJobKeys;
+
+public class CacheFileFormatTest {
+
+	private final Path directory;
+
+	public CacheFileFormatTest() throws IOException {
+		directory = Files.createTempDirectory("cache-files");
+	}
+
+	@Test
+	public void roundTripsEveryKindOfEntry() throws IOException {
+		Map<JobKey, JobMetadata> jobMetadata = jobMetadata(2000);
+		Map<JobKey, String> owners = new HashMap<>();
+		jobMetadata.forEach((jobKey, metadata) -> owners.put(jobKey, metadata.getOwner()));
+		JobKey lastBuild = new JobKey("PROJECT_1", "lastBuild", "G3Build-Master");
+		jobMetadata.put(lastBuild, new JobMetadata(lastBuild, Result.RUNNING, "owner1", null, null, 0));
+		Map<String, CachedJobKeys> jobKeys = new HashMap<>();
+		jobKeys.put("G3Build-Master", new CachedJobKeys(Arrays.asList(new JobKey("PROJECT_1", "12", "G3Build-Master"), lastBuild), 1234L, 1000L));
+
+		Map<JobKey, JobMetadata> readJobMetadata = roundTrip(CacheFileFormat.JOB_METADATA, jobMetadata);
+		assertEquals(jobMetadata, readJobMetadata);
+		for (JobMetadata metadata : jobMetadata.values()) {
+			JobMetadata read = readJobMetadata.get(metadata.getJobKey());
+			assertEquals(metadata.getGerritComment(), read.getGerritComment());
+			assertEquals(metadata.getBuildTime(), read.getBuildTime());
+			assertEquals(metadata.getTimestamp(), read.getTimestamp());
+		}
+		assertEquals(owners, roundTrip(CacheFileFormat.JOB_OWNERS, owners));
+
+		CachedJobKeys read = roundTrip(CacheFileFormat.JOB_KEYS, jobKeys).get("G3Build-Master");
+		assertEquals(jobKeys.get("G3Build-Master").toJobKeys(), read.toJobKeys());
+		assertEquals(1234L, read.getCachedAtTimeStamp());
+		assertEquals(1000L, read.getFullFetchTimeStamp());
+		assertEquals(12, read.getHighWaterMark());
+	}
+
+	@Test
+	public void journalRecordsRoundTripWhateverTheirSize() throws IOException {
+		JobKey jobKey = new JobKey("PROJECT_1", "7", "G3Build-Master");
+		StringBuilder comment = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			comment.append("\u20ac\u00e9\ud83d\ude00");
+		}
+		for (JobMetadata metadata : Arrays.asList(new JobMetadata(jobKey, Result.SUCCESS, "owner1", null, null, 0),
+				new JobMetadata(jobKey, Result.FAILURE, "owner1", comment.toString(), comment.toString(), 0))) {
+			byte[] record = CacheFileFormat.encodeRecord(CacheFileFormat.JOB_METADATA, jobKey, metadata);
+			Map<JobKey, JobMetadata> read = new HashMap<>();
+			CacheFileFormat.decodeRecord(ByteBuffer.wrap(record), CacheFileFormat.JOB_METADATA, read);
+			assertEquals(metadata.getResult(), read.get(jobKey).getResult());
+			assertEquals(metadata.getGerritComment(), read.get(jobKey).getGerritComment());
+		}
+	}
+
+	@Test
+	public void filesAreSmallerThanSerializedMaps() throws IOException {
+		Map<JobKey, JobMetadata> jobMetadata = jobMetadata(10000);
+		Path binary = directory.resolve("jobMetadata.bin");
+		CacheFileFormat.write(binary, CacheFileFormat.JOB_METADATA, jobMetadata);
+		Path serialized = directory.resolve("jobMetadata.cache");
+		try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(serialized))) {
+			out.writeObject(jobMetadata);
+		}
+		assertTrue(Files.size(binary) + " vs " + Files.size(serialized), Files.size(binary) * 3 < Files.size(serialized));
+	}
+
+	@Test
+	public void refusesFilesItCannotTrust() throws IOException {
+		Path file = directory.resolve("jobOwner.bin");
+		CacheFileFormat.write(file, CacheFileFormat.JOB_OWNERS, new HashMap<>(Collections.singletonMap(new JobKey("PROJECT_1", "1", "G3Build-Master"), "owner1")));
+		byte[] bytes = Files.readAllBytes(file);
+
+		assertUnreadable(file, CacheFileFormat.JOB_METADATA);
+
+		bytes[bytes.length - 6] ^= 1;
+		Files.write(file, bytes);
+		assertUnreadable(file, CacheFileFormat.JOB_OWNERS);
+
+		bytes[4] = (byte) (CacheFileFormat.VERSION + 1);
+		Files.write(file, bytes);
+		assertUnreadable(file, CacheFileFormat.JOB_OWNERS);
+	}
+
+	@Test
+	public void cacheMovesUnreadableFilesAside() throws IOException {
+		Files.write(directory.resolve("jobMetadata.bin"), "not a cache file".getBytes());
+		Cache cache = new Cache(directory.toString());
+		cache.init();
+
+		assertTrue(cache.getJobMetadataCache().isEmpty());
+		assertTrue(Files.exists(directory.resolve("jobMetadata.bin.unreadable")));
+	}
+
+	private <K, V> Map<K, V> roundTrip(CacheFileFormat.Codec<K, V> codec, Map<K, V> map) throws IOException {
+		Path file = directory.resolve("roundTrip.bin");
+		CacheFileFormat.write(file, codec, map);
+		Map<K, V> read = new HashMap<>();
+		CacheFileFormat.read(file, codec, read);
+		return read;
+	}
+
+	private static void assertUnreadable(Path file, CacheFileFormat.Codec<?, ?> codec) {
+		try {
+			CacheFileFormat.read(file, codec, new HashMap<>());
+			fail("read " + file);
+		} catch (IOException expected) {
+		}
+	}
+
+	private static Map<JobKey, JobMetadata> jobMetadata(int entries) {
+		Map<JobKey, JobMetadata> jobMetadata = new HashMap<>();
+		Result[] results = Result.values();
+		for (int i = 0; i < entries; i++) {
+			JobKey jobKey = new JobKey("PROJECT_1", String.valueOf(10000 + i), i % 2 == 0 ? "G3Build-Master" : "G3Build-Branch");
+			jobMetadata.put(jobKey, new JobMetadata(jobKey, results[i % results.length], "owner" + (i % 50),
+					"Change " + (i % 500) + " verified", SyntheticJenkinsPayloads.STAGES[i % 5], 60000L + i, 1500000000000L + i));
+		}
+		return jobMetadata;
+	}
+}
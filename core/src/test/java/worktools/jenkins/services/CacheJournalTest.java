@@ -0,0 +1,93 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.services.CachedJenkinsDataService.Cache;
+import worktools.jenkins.services.CachedJenkinsDataService.CachedJobKeys;
+
+public class CacheJournalTest {
+
+	private static final JobKey BUILD_1 = new JobKey("PROJECT_1", "1", "G3Build-Master");
+	private static final JobKey BUILD_2 = new JobKey("PROJECT_1", "2", "G3Build-Master");
+
+	private final Path directory;
+
+	public CacheJournalTest() throws IOException {
+		directory = Files.createTempDirectory("cache-journal");
+	}
+
+	@Test
+	public void changesSurviveARestartWithoutASnapshot() {
+		Cache cache = open();
+		cache.putJobMetadata(BUILD_1, new JobMetadata(BUILD_1, Result.SUCCESS, "owner1", null, null, 0));
+		cache.putJobOwnerIfAbsent(BUILD_1, "owner1");
+		cache.putJobKeys("G3Build-Master", new CachedJobKeys(Arrays.asList(BUILD_2, BUILD_1), 1234L, 1000L));
+		cache.clear();
+		cache.putJobMetadata(BUILD_2, new JobMetadata(BUILD_2, Result.FAILURE, "owner2", null, null, 0));
+		cache.close();
+
+		assertFalse(Files.exists(directory.resolve("jobMetadata.bin")));
+		Cache recovered = open();
+		assertEquals(Result.FAILURE, recovered.getJobMetadataCache().get(BUILD_2).getResult());
+		assertNull(recovered.getJobMetadataCache().get(BUILD_1));
+		assertTrue(recovered.getJobKeyCache().isEmpty());
+		recovered.close();
+	}
+
+	@Test
+	public void replayStopsAtATornRecord() throws IOException {
+		Cache cache = open();
+		cache.putJobMetadata(BUILD_1, new JobMetadata(BUILD_1, Result.SUCCESS, "owner1", null, null, 0));
+		cache.putJobMetadata(BUILD_2, new JobMetadata(BUILD_2, Result.SUCCESS, "owner2", null, null, 0));
+		cache.close();
+		Path segment = directory.resolve("journal-1.log");
+		byte[] bytes = Files.readAllBytes(segment);
+		Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+		Cache recovered = open();
+		assertEquals(Result.SUCCESS, recovered.getJobMetadataCache().get(BUILD_1).getResult());
+		assertNull(recovered.getJobMetadataCache().get(BUILD_2));
+		recovered.close();
+	}
+
+	@Test
+	public void recoveryIsCompactedIntoASnapshot() throws Exception {
+		Cache cache = open();
+		cache.putJobOwnerIfAbsent(BUILD_1, "owner1");
+		cache.close();
+
+		Cache recovered = open();
+		assertNull("directory is locked", CacheJournal.open(directory));
+		for (int i = 0; i < 100 && Files.exists(directory.resolve("journal-1.log")); i++) {
+			Thread.sleep(50);
+		}
+		assertFalse(Files.exists(directory.resolve("journal-1.log")));
+		assertTrue(Files.exists(directory.resolve("jobOwner.bin")));
+		recovered.putJobOwnerIfAbsent(BUILD_2, "owner2");
+		recovered.close();
+
+		Cache restarted = open();
+		assertEquals("owner1", restarted.getJobOwnerCache().get(BUILD_1));
+		assertEquals("owner2", restarted.getJobOwnerCache().get(BUILD_2));
+		restarted.close();
+	}
+
+	private Cache open() {
+		Cache cache = new Cache(directory.toString());
+		cache.init();
+		return cache;
+	}
+}
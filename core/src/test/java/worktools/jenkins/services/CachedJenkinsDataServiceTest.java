@@ -2,6 +2,7 @@ package worktools.jenkins.services;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -14,20 +15,31 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import worktools.jenkins.http.RequestContext;
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobMetadata.Result;
 import worktools.jenkins.models.JobSearchKey;
 import worktools.jenkins.services.CachedJenkinsDataService.CachedJobKeys;
+import worktools.jenkins.utils.TinyLfuMap;
 import worktools.jenkins.utils.Utils;
 
 public class CachedJenkinsDataServiceTest {
@@ -115,6 +127,60 @@ public class CachedJenkinsDataServiceTest {
 		verify(dataService).fetchJobs("PROJECT_1", JOB_CATEGORY);
 	}
 
+	@Test
+	public void fetchesOnlyBuildsNewerThanTheCachedOnes() throws InterruptedException {
+		JobKey build9 = new JobKey("PROJECT_1", "9", JOB_CATEGORY);
+		JobKey build10 = new JobKey("PROJECT_1", "10", JOB_CATEGORY);
+		JobKey build11 = new JobKey("PROJECT_1", "11", JOB_CATEGORY);
+		jobKeyCache.put(JOB_CATEGORY, new CachedJobKeys(Arrays.asList(build10, build9)));
+		when(dataService.fetchJobsAfter("PROJECT_1", JOB_CATEGORY, 10)).thenReturn(Arrays.asList(build11));
+		TimeUnit.MILLISECONDS.sleep(1);
+		cachedDataService.setStaleTimeoutInSeconds(0);
+		
+		assertEquals(Arrays.asList(build11, build10), cachedDataService.fetchJobs("PROJECT_1", JOB_CATEGORY));
+		assertEquals(11, jobKeyCache.get(JOB_CATEGORY).getHighWaterMark());
+		verify(dataService, never()).fetchJobs("PROJECT_1", JOB_CATEGORY);
+	}
+
+	@Test
+	public void fetchesOnlyNewerAndRunningBuildsWithTheirMetadata() throws InterruptedException {
+		JobKey build9 = new JobKey("PROJECT_1", "9", JOB_CATEGORY);
+		JobKey build10 = new JobKey("PROJECT_1", "10", JOB_CATEGORY);
+		JobKey build11 = new JobKey("PROJECT_1", "11", JOB_CATEGORY);
+		JobMetadata finished10 = new JobMetadata(build10, Result.SUCCESS, OWNER_2, null, null, 0);
+		JobMetadata running11 = new JobMetadata(build11, Result.RUNNING, OWNER_1, null, null, 0);
+		jobKeyCache.put(JOB_CATEGORY, new CachedJobKeys(Arrays.asList(build10, build9)));
+		jobMetadataCache.put(build9, new JobMetadata(build9, Result.SUCCESS, OWNER_1, null, null, 0));
+		jobMetadataCache.put(build10, new JobMetadata(build10, Result.RUNNING, OWNER_2, null, null, 0));
+		when(dataService.supportsJobsWithMetadata(JOB_CATEGORY)).thenReturn(true);
+		when(dataService.fetchJobsWithMetadataAfter("PROJECT_1", JOB_CATEGORY, 9)).thenReturn(Arrays.asList(running11, finished10));
+		TimeUnit.MILLISECONDS.sleep(1);
+		cachedDataService.setStaleTimeoutInSeconds(0);
+
+		assertEquals(running11, cachedDataService.fetchJob(JOB_SEARCH_KEY_1));
+		assertEquals(Arrays.asList(build11, build10), jobKeyCache.get(JOB_CATEGORY).toJobKeys());
+		assertEquals(Result.SUCCESS, jobMetadataCache.get(build10).getResult());
+		verify(dataService, never()).fetchJobsWithMetadata("PROJECT_1", JOB_CATEGORY);
+	}
+
+	@Test
+	public void highWaterMarkSurvivesARestart() throws IOException {
+		String cacheDirectory = Files.createTempDirectory("jobKeys").toString();
+		JobKey build7 = new JobKey("PROJECT_1", "7", JOB_CATEGORY);
+		when(dataService.fetchJobs("PROJECT_1", JOB_CATEGORY)).thenReturn(Arrays.asList(build7));
+		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, cacheDirectory);
+		cachedDataService.fetchJobs("PROJECT_1", JOB_CATEGORY);
+		cachedDataService.saveCache();
+		
+		CachedJenkinsDataService restarted = new CachedJenkinsDataService(dataService, cacheDirectory);
+		restarted.warmedUp().join();
+		restarted.setStaleTimeoutInSeconds(-1);
+		restarted.fetchJobs("PROJECT_1", JOB_CATEGORY);
+		
+		verify(dataService, times(1)).fetchJobs("PROJECT_1", JOB_CATEGORY);
+		verify(dataService).fetchJobsAfter("PROJECT_1", JOB_CATEGORY, 7);
+	}
+
 	@Test
 	public void fetchesLiveJobFromSearchKeyIfNotAvailableInCache() {
 		when(dataService.fetchJobs("PROJECT_1", JOB_CATEGORY)).thenReturn(Arrays.asList(JOB_KEY_1, JOB_KEY_2));
@@ -145,10 +211,32 @@ public class CachedJenkinsDataServiceTest {
 		writeCache(jobMetadataCache);
 		
 		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, cacheDirectory());
+		cachedDataService.warmedUp().join();
 		
 		JobMetadata jobMetadata = cachedDataService.fetchJobData(JOB_KEY_1);
 		assertEquals(jobMetadata2, jobMetadata);
 	}
+
+	@Test
+	public void servesBeforeWarmUpFinishesWithoutLosingWhatWasFetched() {
+		Map<JobKey, JobMetadata> jobMetadataCache = new HashMap<>();
+		jobMetadataCache.put(JOB_KEY_1, new JobMetadata(JOB_KEY_1, Result.ABORTED, OWNER_1, null, null, 0));
+		jobMetadataCache.put(JOB_KEY_2, JOB_METADATA_2);
+		writeCache(jobMetadataCache);
+		List<Runnable> warmUp = new ArrayList<>();
+		when(dataService.fetchJobData(JOB_KEY_1)).thenReturn(SUCCESSFULL_JOB);
+		
+		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, cacheDirectory(), warmUp::add);
+		assertEquals(SUCCESSFULL_JOB, cachedDataService.fetchJobData(JOB_KEY_1));
+		assertEquals(0, cachedDataService.getWarmUpProgress(), 0);
+		
+		warmUp.forEach(Runnable::run);
+		assertTrue(cachedDataService.warmedUp().isDone());
+		assertEquals(1, cachedDataService.getWarmUpProgress(), 0);
+		assertEquals(SUCCESSFULL_JOB, cachedDataService.fetchJobData(JOB_KEY_1));
+		assertEquals(JOB_METADATA_2, cachedDataService.fetchJobDataAsync(JOB_KEY_2).getNow(null));
+		verify(dataService, times(1)).fetchJobData(JOB_KEY_1);
+	}
 	
 	@Test
 	public void cacheCanBeCleared() {
@@ -160,6 +248,67 @@ public class CachedJenkinsDataServiceTest {
 		verify(dataService).fetchJobData(JOB_KEY_1);
 	}
 
+	@Test
+	public void concurrentCallersShareOneJobDataFetch() throws Exception {
+		jobMetadataCache.put(JOB_KEY_2, RUNNING_JOB);
+		CountDownLatch release = new CountDownLatch(1);
+		when(dataService.fetchJobData(JOB_KEY_2)).thenAnswer(invocation -> {
+			release.await();
+			return RUNNING_JOB;
+		});
+		
+		List<Future<JobMetadata>> results = concurrently(5, () -> cachedDataService.fetchJobData(JOB_KEY_2),
+				() -> cachedDataService.jobDataFetches().waitingCount(JOB_KEY_2), release);
+		for (Future<JobMetadata> result : results) {
+			assertEquals(RUNNING_JOB, result.get(5, TimeUnit.SECONDS));
+		}
+		verify(dataService, times(1)).fetchJobData(JOB_KEY_2);
+		
+		cachedDataService.fetchJobData(JOB_KEY_2);
+		verify(dataService, times(2)).fetchJobData(JOB_KEY_2);
+	}
+
+	@Test
+	public void concurrentCallersShareOneJobListFetch() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(dataService.fetchJobs("PROJECT_1", JOB_CATEGORY)).thenAnswer(invocation -> {
+			release.await();
+			throw new IllegalStateException("Jenkins is down");
+		});
+		
+		List<Future<List<JobKey>>> results = concurrently(5, () -> cachedDataService.fetchJobs("PROJECT_1", JOB_CATEGORY),
+				() -> cachedDataService.jobsFetches().waitingCount(JOB_CATEGORY), release);
+		for (Future<List<JobKey>> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+				fail("every caller should see the failure");
+			} catch (ExecutionException e) {
+				assertEquals("Jenkins is down", e.getCause().getMessage());
+			}
+		}
+		verify(dataService, times(1)).fetchJobs("PROJECT_1", JOB_CATEGORY);
+	}
+
+	/**
+	 * Starts the callers and lets the fetch blocked on <code>release</code> complete once every other
+	 * caller has joined it.
+	 */
+	private static <T> List<Future<T>> concurrently(int callers, Callable<T> call, IntSupplier joined, CountDownLatch release) {
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		List<Future<T>> results = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			results.add(executor.submit(call));
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (joined.getAsInt() < callers - 1) {
+			assertTrue("callers did not all join the fetch", System.nanoTime() < deadline);
+			Thread.yield();
+		}
+		release.countDown();
+		executor.shutdown();
+		return results;
+	}
+
 	private void writeCache(Map<JobKey, JobMetadata> jobMetadataCache2) {
 		String filePath = cacheDirectory()  + "/jobMetadata.cache";
 		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
@@ -187,6 +336,64 @@ public class CachedJenkinsDataServiceTest {
 		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, cacheDirectory() + "_notExisting");
 	}
 	
+	@Test
+	public void cachesInMemoryOnlyWithoutACacheDirectory() {
+		when(dataService.fetchJobData(JOB_KEY_1)).thenReturn(SUCCESSFULL_JOB);
+		CachedJenkinsDataService inMemory = new CachedJenkinsDataService(dataService, null);
+		assertTrue(inMemory.warmedUp().isDone());
+
+		assertEquals(SUCCESSFULL_JOB, inMemory.fetchJobData(JOB_KEY_1));
+		assertEquals(SUCCESSFULL_JOB, inMemory.fetchJobData(JOB_KEY_1));
+		verify(dataService, times(1)).fetchJobData(JOB_KEY_1);
+		inMemory.clearCache();
+		inMemory.saveCache();
+	}
+
+	@Test
+	public void ownerIndexNeverHidesANewerBuildOfTheOwner() throws IOException {
+		JobKey build10 = new JobKey("PROJECT_1", "10", JOB_CATEGORY);
+		JobKey build11 = new JobKey("PROJECT_1", "11", JOB_CATEGORY);
+		JobKey build12 = new JobKey("PROJECT_1", "12", JOB_CATEGORY);
+		JobMetadata owner1Build10 = new JobMetadata(build10, Result.SUCCESS, OWNER_1, null, null, 0);
+		JobMetadata owner1Build12 = new JobMetadata(build12, Result.SUCCESS, OWNER_1, null, null, 0);
+		when(dataService.fetchJobs("PROJECT_1", JOB_CATEGORY)).thenReturn(Arrays.asList(build11, build10));
+		when(dataService.fetchJobsAfter("PROJECT_1", JOB_CATEGORY, 11)).thenReturn(Arrays.asList(build12));
+		when(dataService.fetchJobData(build10)).thenReturn(owner1Build10);
+		when(dataService.fetchJobData(build11)).thenReturn(new JobMetadata(build11, Result.SUCCESS, OWNER_2, null, null, 0));
+		when(dataService.fetchJobData(build12)).thenReturn(owner1Build12);
+		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, Files.createTempDirectory("ownerIndex").toString());
+		
+		assertEquals(owner1Build10, cachedDataService.fetchJob(JOB_SEARCH_KEY_1));
+		assertEquals(owner1Build10, cachedDataService.fetchJob(new JobSearchKey("PROJECT_1", JOB_CATEGORY, OWNER_1.toUpperCase())));
+		cachedDataService.jobsChanged(JOB_CATEGORY);
+		assertEquals(owner1Build12, cachedDataService.fetchJob(JOB_SEARCH_KEY_1));
+		assertEquals(owner1Build12, cachedDataService.fetchJob(JOB_SEARCH_KEY_1));
+		
+		verify(dataService, times(1)).fetchJobData(build10);
+		verify(dataService, times(1)).fetchJobData(build11);
+		verify(dataService, times(1)).fetchJobData(build12);
+	}
+	
+	@Test
+	public void unpinsTheCurrentJobOnceTrackingStops() {
+		TinyLfuMap<JobKey, JobMetadata> pinnable = new TinyLfuMap<>(16);
+		cachedDataService.setJobMetadataCache(pinnable);
+		when(dataService.fetchJobs("PROJECT_1", JOB_CATEGORY)).thenReturn(Arrays.asList(JOB_KEY_1));
+		when(dataService.fetchJobData(JOB_KEY_1)).thenReturn(SUCCESSFULL_JOB);
+
+		assertEquals(SUCCESSFULL_JOB, cachedDataService.fetchJob(JOB_SEARCH_KEY_1));
+		assertEquals(1, pinnable.getPinnedCount());
+
+		cachedDataService.trackingStopped(JOB_SEARCH_KEY_1);
+		assertEquals(0, pinnable.getPinnedCount());
+
+		RequestContext cancelled = RequestContext.withoutDeadline();
+		cancelled.cancel();
+		pinnable.clear();
+		assertEquals(SUCCESSFULL_JOB, cancelled.call(() -> cachedDataService.fetchJob(JOB_SEARCH_KEY_1)));
+		assertEquals("a cancelled lookup pins nothing", 0, pinnable.getPinnedCount());
+	}
+
 	@Test
 	public void skipsLookupForRunningJobsNotTrigerredByJobSearchKeyOwner() {
 		
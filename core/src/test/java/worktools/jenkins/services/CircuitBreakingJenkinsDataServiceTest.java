@@ -0,0 +1,161 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import worktools.jenkins.http.RateLimitedException;
+import worktools.jenkins.http.RequestCancelledException;
+import worktools.jenkins.http.RequestContext;
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.services.CircuitBreakingJenkinsDataService.State;
+
+public class CircuitBreakingJenkinsDataServiceTest {
+
+	private static final String PROJECT = "PROJECT_1";
+	private static final String JOB_CATEGORY = "G3Build-Master";
+
+	private final FlakyDataService flakyDataService = new FlakyDataService();
+	private long now;
+	private final CircuitBreakingJenkinsDataService dataService = new CircuitBreakingJenkinsDataService(flakyDataService, 3, 1000, () -> now);
+
+	@Test
+	public void servesLastKnownValuesWhileOpen() {
+		JobMetadata jobData = dataService.fetchJobData(key(2));
+		List<JobKey> jobs = dataService.fetchJobs(PROJECT, JOB_CATEGORY);
+
+		flakyDataService.failing = true;
+		failThreeTimes();
+		assertEquals(State.OPEN, dataService.getState());
+
+		int calls = flakyDataService.calls.get();
+		assertSame(jobData, dataService.fetchJobData(key(2)));
+		assertEquals(jobs, dataService.fetchJobs(PROJECT, JOB_CATEGORY));
+		assertEquals(Arrays.asList(key(2)), dataService.fetchJobsAfter(PROJECT, JOB_CATEGORY, 1));
+		assertEquals("Jenkins is not asked while open", calls, flakyDataService.calls.get());
+		try {
+			dataService.fetchJobData(key(1));
+			fail("nothing known about build 1");
+		} catch (CircuitOpenException e) {
+			assertEquals(4, dataService.getShortCircuitedCount());
+		}
+	}
+
+	@Test
+	public void singleTrialAfterTheOpenIntervalClosesOrReopens() {
+		flakyDataService.failing = true;
+		failThreeTimes();
+
+		now += TimeUnit.MILLISECONDS.toNanos(1000);
+		try {
+			dataService.fetchJobData(key(2));
+			fail("trial call should still fail");
+		} catch (IllegalStateException e) {
+			assertEquals(State.OPEN, dataService.getState());
+		}
+
+		now += TimeUnit.MILLISECONDS.toNanos(1000);
+		flakyDataService.failing = false;
+		dataService.fetchJobData(key(2));
+		assertEquals(State.CLOSED, dataService.getState());
+	}
+
+	@Test
+	public void cancelledAndRateLimitedRequestsDoNotOpenTheCircuit() {
+		RequestContext cancelled = RequestContext.withoutDeadline();
+		cancelled.cancel();
+		flakyDataService.failure = new RuntimeException("Error reading", new RequestCancelledException("Request cancelled"));
+		for (int i = 0; i < 5; i++) {
+			try {
+				cancelled.call(() -> dataService.fetchJobData(key(1)));
+				fail("request was cancelled");
+			} catch (RuntimeException expected) {
+			}
+			try {
+				dataService.fetchJobData(key(1));
+				fail("request was cancelled");
+			} catch (RuntimeException expected) {
+			}
+		}
+		flakyDataService.failure = new RuntimeException("Error reading", new RateLimitedException("Jenkins is recovering"));
+		for (int i = 0; i < 5; i++) {
+			try {
+				dataService.fetchJobData(key(1));
+				fail("request was held back");
+			} catch (RuntimeException expected) {
+			}
+		}
+
+		assertEquals(State.CLOSED, dataService.getState());
+		flakyDataService.failure = null;
+		dataService.fetchJobData(key(1));
+	}
+
+	@Test
+	public void lastKnownJobListsAreBounded() {
+		for (int i = 0; i <= CircuitBreakingJenkinsDataService.MAX_LAST_KNOWN_JOB_LISTS; i++) {
+			dataService.fetchJobs(PROJECT, "category-" + i);
+		}
+
+		flakyDataService.failing = true;
+		failThreeTimes();
+		assertEquals(2, dataService.fetchJobs(PROJECT, "category-" + CircuitBreakingJenkinsDataService.MAX_LAST_KNOWN_JOB_LISTS).size());
+		try {
+			dataService.fetchJobs(PROJECT, "category-0");
+			fail("the least recently fetched category was dropped");
+		} catch (CircuitOpenException expected) {
+		}
+	}
+
+	private void failThreeTimes() {
+		for (int i = 0; i < 3; i++) {
+			try {
+				dataService.fetchJobData(key(1));
+				fail("jenkins is down");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+	}
+
+	private static JobKey key(int build) {
+		return new JobKey(PROJECT, String.valueOf(build), JOB_CATEGORY);
+	}
+
+	private static class FlakyDataService implements JenkinsDataService {
+
+		volatile boolean failing;
+		volatile RuntimeException failure;
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public JobMetadata fetchJobData(JobKey jobKey) {
+			calls.incrementAndGet();
+			if (failure != null) {
+				throw failure;
+			}
+			if (failing) {
+				throw new IllegalStateException("jenkins is down");
+			}
+			return new JobMetadata(jobKey, Result.SUCCESS, "owner", "", "", 0);
+		}
+
+		@Override
+		public List<JobKey> fetchJobs(String project, String jobCategory) {
+			calls.incrementAndGet();
+			if (failing) {
+				throw new IllegalStateException("jenkins is down");
+			}
+			return Arrays.asList(key(2), key(1));
+		}
+	}
+}
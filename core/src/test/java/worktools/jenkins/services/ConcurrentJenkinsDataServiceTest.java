@@ -0,0 +1,137 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.models.JobSearchKey;
+
+public class ConcurrentJenkinsDataServiceTest {
+
+	private static final String PROJECT = "PROJECT_1";
+	private static final String JOB_CATEGORY = "G3Build-Master";
+
+	private final SlowDataService slowDataService = new SlowDataService();
+
+	@Test
+	public void newestMatchingBuildWinsOverFasterOlderOnes() {
+		slowDataService.build(10, "someone.else", 0)
+				.build(9, "owner", 300)
+				.build(8, "someone.else", 0)
+				.build(7, "owner", 0);
+		ConcurrentJenkinsDataService dataService = new ConcurrentJenkinsDataService(slowDataService, 4);
+		
+		assertEquals(key(9), dataService.fetchJob(new JobSearchKey(PROJECT, JOB_CATEGORY, "owner")).getJobKey());
+	}
+
+	@Test
+	public void fetchesCandidatesInParallelWithinTheLimit() {
+		for (int build = 20; build > 0; build--) {
+			slowDataService.build(build, "someone.else", 20);
+		}
+		ConcurrentJenkinsDataService dataService = new ConcurrentJenkinsDataService(slowDataService, 3);
+		
+		assertEquals(JobMetadata.empty(), dataService.fetchJob(new JobSearchKey(PROJECT, JOB_CATEGORY, "owner")));
+		assertEquals(20, slowDataService.fetched.get());
+		assertEquals(3, slowDataService.maxInFlight.get());
+	}
+
+	@Test
+	public void stopsFetchingOnceTheAnswerIsKnown() {
+		slowDataService.build(20, "owner", 0);
+		for (int build = 19; build > 0; build--) {
+			slowDataService.build(build, "someone.else", 100);
+		}
+		ConcurrentJenkinsDataService dataService = new ConcurrentJenkinsDataService(slowDataService, 2);
+		
+		assertEquals(key(20), dataService.fetchJob(new JobSearchKey(PROJECT, JOB_CATEGORY, "owner")).getJobKey());
+		assertTrue("fetched " + slowDataService.fetched.get(), slowDataService.fetched.get() <= 3);
+	}
+
+	@Test
+	public void failuresBeforeTheMatchAreRethrown() {
+		slowDataService.build(3, "someone.else", 0).build(2, null, 0).build(1, "owner", 0);
+		ConcurrentJenkinsDataService dataService = new ConcurrentJenkinsDataService(slowDataService, 2);
+		try {
+			dataService.fetchJob(new JobSearchKey(PROJECT, JOB_CATEGORY, "owner"));
+			fail("build 2 could not be read");
+		} catch (IllegalStateException e) {
+			assertEquals("cannot read " + key(2), e.getMessage());
+		}
+	}
+
+	@Test
+	public void cacheFetchesMissesInParallel() throws Exception {
+		for (int build = 8; build > 0; build--) {
+			slowDataService.build(build, build == 1 ? "owner" : "someone.else", 20);
+		}
+		CachedJenkinsDataService dataService = new CachedJenkinsDataService(new ConcurrentJenkinsDataService(slowDataService, 4),
+				Files.createTempDirectory("jenkins-notifications-test").toString());
+		
+		JobSearchKey jobSearchKey = new JobSearchKey(PROJECT, JOB_CATEGORY, "owner");
+		assertEquals(key(1), dataService.fetchJob(jobSearchKey).getJobKey());
+		assertEquals(4, slowDataService.maxInFlight.get());
+		
+		int fetched = slowDataService.fetched.get();
+		assertEquals(key(1), dataService.fetchJob(jobSearchKey).getJobKey());
+		assertEquals(fetched, slowDataService.fetched.get());
+	}
+
+	private static JobKey key(int build) {
+		return new JobKey(PROJECT, String.valueOf(build), JOB_CATEGORY);
+	}
+
+	/**
+	 * Builds newest first, each taking its own time to fetch. A build without owner fails to fetch.
+	 */
+	private static class SlowDataService implements JenkinsDataService {
+		private final List<JobKey> jobKeys = new ArrayList<>();
+		private final Map<JobKey, String> owners = new HashMap<>();
+		private final Map<JobKey, Long> delays = new HashMap<>();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private final AtomicInteger fetched = new AtomicInteger();
+
+		SlowDataService build(int build, String owner, long delayInMilliSeconds) {
+			JobKey jobKey = key(build);
+			jobKeys.add(jobKey);
+			owners.put(jobKey, owner);
+			delays.put(jobKey, delayInMilliSeconds);
+			return this;
+		}
+
+		@Override
+		public JobMetadata fetchJobData(JobKey jobKey) {
+			fetched.incrementAndGet();
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(delays.get(jobKey));
+				if (owners.get(jobKey) == null) {
+					throw new IllegalStateException("cannot read " + jobKey);
+				}
+				return new JobMetadata(jobKey, Result.SUCCESS, owners.get(jobKey), null, null, 0);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		public List<JobKey> fetchJobs(String project, String jobCategory) {
+			return jobKeys;
+		}
+	}
+}
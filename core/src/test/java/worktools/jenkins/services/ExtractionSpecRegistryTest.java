@@ -0,0 +1,51 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.utils.Utils;
+
+public class ExtractionSpecRegistryTest {
+
+	private final ExtractionSpecRegistry registry = ExtractionSpecRegistry.defaultRegistry();
+
+	@Test
+	public void bundledSpecsMapCategoriesToSharedParsers() {
+		assertTrue(registry.xmlParser("G3Build-Master") instanceof G3JobMetadataParser);
+		assertTrue(registry.jsonParser("NGIBuild-Branch") instanceof G3JsonJobMetadataParser);
+		assertTrue(registry.xmlParser("G3Build-Promotion") instanceof MinimalJobMetadataParser);
+		assertTrue(registry.jsonParser("G3Build-Promotion") instanceof MinimalJsonJobMetadataParser);
+		assertSame(registry.xmlParser("G3Build-Master"), registry.xmlParser("G3Build-Branch"));
+		assertSame(registry.xmlParser("G3Build-Promotion"), registry.xmlParser("Unknown-Category"));
+	}
+
+	@Test
+	public void categoriesAndStagesCanBeAddedThroughProperties() throws Exception {
+		Properties properties = new Properties();
+		properties.load(Thread.currentThread().getContextClassLoader().getResourceAsStream("extraction-specs.properties"));
+		properties.setProperty("category.G3Build-Nightly", "g3");
+		properties.setProperty("spec.g3.stages.PROJECT_2", "G3Build,G3Inspect");
+		properties.setProperty("spec.author.engine", "tags");
+		properties.setProperty("spec.author.owner", "authorEmail");
+		properties.setProperty("category.G3Build-Promotion", "author");
+		ExtractionSpecRegistry customRegistry = new ExtractionSpecRegistry(properties);
+		
+		JobKey nightlyKey = new JobKey("PROJECT_2", "8660", "G3Build-Nightly");
+		JobMetadata nightly = customRegistry.xmlParser("G3Build-Nightly").parseJobMetadata(nightlyKey, Utils.fetchClasspathFileData("G3Build-Master/8660.xml"));
+		assertEquals("developer.five@company.com", nightly.getOwner());
+		assertEquals("G3Build", nightly.getBuildStage());
+		
+		JobKey promotionKey = new JobKey("PROJECT_1", "1244", "G3Build-Promotion");
+		JobMetadata promotion = customRegistry.xmlParser("G3Build-Promotion").parseJobMetadata(promotionKey, Utils.fetchClasspathFileData("G3Build-Promotion/job.xml"));
+		assertNull(promotion.getOwner());
+	}
+
+}
@@ -0,0 +1,40 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.utils.Utils;
+
+public class G3JobMetadataParserTest {
+
+	private final G3JobMetadataParser jobParser = new G3JobMetadataParser();
+
+	@Test
+	public void parsesMasterBuild() throws Exception {
+		String jobData = Utils.fetchClasspathFileData("G3Build-Master/8660.xml");
+		JobKey jobKey = new JobKey("PROJECT_1", "8660", "G3Build-Master");
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(jobKey, jobData);
+		assertEquals("JobKey does not match", jobKey, jobMetadata.getJobKey());
+		assertEquals("Result does not match", Result.FAILURE, jobMetadata.getResult());
+		assertEquals("Owner does not match", "developer.five@company.com", jobMetadata.getOwner());
+		assertEquals("Comment does not match", "Story-3", jobMetadata.getGerritComment());
+		assertEquals("Stage does not match", "G3Publish", jobMetadata.getBuildStage());
+		assertEquals("Duration does not match", 1997636, jobMetadata.getBuildTime());
+		assertEquals("Timestamp does not match", 1501499360025L, jobMetadata.getTimestamp());
+	}
+
+	@Test
+	public void parsesRunningBuild() throws Exception {
+		String jobData = Utils.fetchClasspathFileData("G3Build-Branch/14334.xml");
+		JobKey jobKey = new JobKey("PROJECT_1", "14334", "G3Build-Branch");
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(jobKey, jobData);
+		assertEquals("Result does not match", Result.RUNNING, jobMetadata.getResult());
+		assertEquals("Comment does not match", "Story-1", jobMetadata.getGerritComment());
+		assertEquals("Timestamp does not match", 1499170344534L, jobMetadata.getTimestamp());
+	}
+
+}
@@ -0,0 +1,82 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import worktools.jenkins.AppConstants;
+import worktools.jenkins.utils.Utils;
+
+public class JenkinsHttpDataServiceTest {
+
+	private final JenkinsHttpDataService dataService = new JenkinsHttpDataService();
+
+	@Test
+	public void jobUrlAsksOnlyForTheParserProjection() {
+		String url = dataService.jobUrl("8660", "G3Build-Master", new G3JobMetadataParser().treeProjection());
+		assertEquals(AppConstants.JENKINS_SERVER + "/job/G3Build-Master/8660/api/xml"
+				+ "?tree=actions%5Bparameters%5Bname%2Cvalue%5D%5D%2Cresult%2Cduration%2Ctimestamp", url);
+	}
+
+	@Test
+	public void jobsUrlAsksOnlyForBuildNumbers() {
+		String url = dataService.jobsUrl("G3", "G3Build-Master");
+		assertEquals(AppConstants.JENKINS_SERVER + "/view/G3/job/G3Build-Master/api/xml?tree=builds%5Bnumber%5D%7B0%2C25%7D", url);
+	}
+
+	@Test
+	public void jobsUrlFollowsTheConfiguredLimit() {
+		dataService.setMaxJobs(10);
+		String url = dataService.jobsUrl("G3", "G3Build-Master");
+		assertEquals(AppConstants.JENKINS_SERVER + "/view/G3/job/G3Build-Master/api/xml?tree=builds%5Bnumber%5D%7B0%2C10%7D", url);
+	}
+
+	@Test
+	public void jobListIsNotReadPastTheLimit() throws Exception {
+		AtomicLong bytesRead = new AtomicLong();
+		MockJenkinsDataService countingDataService = new MockJenkinsDataService() {
+			@Override
+			protected InputStream openJobsData(String project, String jobCategory) throws IOException {
+				return new CountingInputStream(super.openJobsData(project, jobCategory), bytesRead);
+			}
+		};
+		countingDataService.setMaxJobs(2);
+		
+		assertEquals(2, countingDataService.fetchJobs("PROJECT_1", "G3Build-Master").size());
+		assertTrue(bytesRead.get() < Utils.fetchClasspathFileBytes("G3Build-Master/jobs.xml").length);
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong count;
+
+		CountingInputStream(InputStream in, AtomicLong count) {
+			super(in);
+			this.count = count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, Math.min(len, 512));
+			if (read > 0) {
+				count.addAndGet(read);
+			}
+			return read;
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+
+public class JenkinsJsonDataServiceTest {
+
+	private final MockJenkinsDataService xmlDataService = new MockJenkinsDataService();
+	private final MockJenkinsJsonDataService jsonDataService = new MockJenkinsJsonDataService();
+
+	@Test
+	public void jsonAndXmlJobListsMatch() {
+		for (String jobCategory : Arrays.asList("G3Build-Branch", "G3Build-Master")) {
+			assertEquals(xmlDataService.fetchJobs("PROJECT_1", jobCategory), jsonDataService.fetchJobs("PROJECT_1", jobCategory));
+		}
+		assertEquals(JenkinsHttpDataService.MAX_JOBS, jsonDataService.fetchJobs("PROJECT_1", "G3Build-Master").size());
+	}
+
+	@Test
+	public void jobListsStopAtTheLastSeenBuild() {
+		List<JobKey> expected = Arrays.asList(
+				new JobKey("PROJECT_1", "8348", "G3Build-Master"),
+				new JobKey("PROJECT_1", "8347", "G3Build-Master"),
+				new JobKey("PROJECT_1", "8346", "G3Build-Master"));
+		assertEquals(expected, xmlDataService.fetchJobsAfter("PROJECT_1", "G3Build-Master", 8345));
+		assertEquals(expected, jsonDataService.fetchJobsAfter("PROJECT_1", "G3Build-Master", 8345));
+		assertEquals(0, jsonDataService.fetchJobsAfter("PROJECT_1", "G3Build-Master", 8348).size());
+	}
+
+	@Test
+	public void jobListsHonourTheConfiguredLimit() {
+		xmlDataService.setMaxJobs(5);
+		jsonDataService.setMaxJobs(5);
+		assertEquals(5, xmlDataService.fetchJobs("PROJECT_1", "G3Build-Master").size());
+		assertEquals(xmlDataService.fetchJobs("PROJECT_1", "G3Build-Master"), jsonDataService.fetchJobs("PROJECT_1", "G3Build-Master"));
+	}
+
+	@Test
+	public void jsonAndXmlJobMetadataMatch() {
+		List<JobKey> jobKeys = Arrays.asList(
+				new JobKey("PROJECT_1", "14330", "G3Build-Branch"),
+				new JobKey("PROJECT_1", "14331", "G3Build-Branch"),
+				new JobKey("PROJECT_1", "14334", "G3Build-Branch"),
+				new JobKey("PROJECT_1", "14671", "G3Build-Branch"),
+				new JobKey("PROJECT_1", "8660", "G3Build-Master"),
+				new JobKey("PROJECT_1", "8668", "G3Build-Master"),
+				new JobKey("PROJECT_1", "job", "G3Build-Promotion"),
+				new JobKey("PROJECT_1", "job", "G3Build-DeployG3"));
+		
+		for (JobKey jobKey : jobKeys) {
+			JobMetadata expected = xmlDataService.fetchJobData(jobKey);
+			JobMetadata actual = jsonDataService.fetchJobData(jobKey);
+			assertEquals(expected, actual);
+			assertEquals(expected.getGerritComment(), actual.getGerritComment());
+			assertEquals(expected.getBuildTime(), actual.getBuildTime());
+			assertEquals(expected.getTimestamp(), actual.getTimestamp());
+		}
+	}
+
+	@Test
+	public void categoriesCanBeRoutedToTheJsonApi() {
+		RoutingJenkinsDataService dataService = new RoutingJenkinsDataService(xmlDataService)
+				.route(new String[] {"G3Build-Master", " "}, jsonDataService);
+		assertEquals(jsonDataService, dataService.dataService("G3Build-Master"));
+		assertEquals(xmlDataService, dataService.dataService("G3Build-Branch"));
+	}
+
+}
@@ -3,12 +3,19 @@ package worktools.jenkins.services;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import worktools.jenkins.models.BuildEvent;
+import worktools.jenkins.models.BuildEvent.Phase;
 import worktools.jenkins.models.JobKey;
 import worktools.jenkins.models.JobMetadata;
 import worktools.jenkins.models.JobSearchKey;
@@ -69,4 +76,107 @@ public class JenkinsNotificationServiceTest {
 		verify(listener, never()).onUpdate(JOB_METADATA_1);		  // does not track old search key	
 	}
 
+	@Test
+	public void buildEventsDuringAFetchAreCaughtUpOnOnce() throws InterruptedException {
+		BlockingDataService blockingDataService = new BlockingDataService(2);
+		JenkinsNotificationService pushedService = new JenkinsNotificationService(blockingDataService, 60 * 1000);
+		try {
+			pushedService.track(JOB_SEARCH_KEY_1);
+			pushedService.onBuildEvent(new BuildEvent("G3Build-Branch", 1, Phase.COMPLETED, "SUCCESS"));
+			assertTrue(blockingDataService.fetchStarted.await(5, TimeUnit.SECONDS));
+			for(int i = 0; i < 20; i++) {
+				pushedService.onBuildEvent(new BuildEvent("G3Build-Branch", 2 + i, Phase.COMPLETED, "SUCCESS"));
+			}
+			blockingDataService.release.countDown();
+			blockingDataService.awaitFetches(3);
+			TimeUnit.MILLISECONDS.sleep(SLEEP_TIME);
+			assertEquals(3, blockingDataService.fetches.get());
+			assertEquals(1, blockingDataService.maxInFlight.get());
+			assertEquals(2, blockingDataService.jobsChanged.get());
+		} finally {
+			pushedService.stopTracking();
+		}
+	}
+
+	@Test
+	public void trackingTheSameJobAgainKeepsItsSubscription() throws InterruptedException {
+		BlockingDataService blockingDataService = new BlockingDataService(1);
+		JenkinsNotificationService retrackedService = new JenkinsNotificationService(blockingDataService, 60 * 1000);
+		BlockingQueue<JobMetadata> notifications = new ArrayBlockingQueue<>(10);
+		retrackedService.addNotificationsListener(notifications::add);
+		try {
+			retrackedService.trackAsync(JOB_SEARCH_KEY_1);
+			assertTrue(blockingDataService.fetchStarted.await(5, TimeUnit.SECONDS));
+			retrackedService.track(JOB_SEARCH_KEY_1);
+			blockingDataService.release.countDown();
+			assertEquals(JOB_METADATA_1, notifications.poll(5, TimeUnit.SECONDS));
+			assertEquals("the fetch in progress is not cancelled and repeated", 1, blockingDataService.fetches.get());
+			assertEquals(0, blockingDataService.trackingStopped.get());
+		} finally {
+			retrackedService.stopTracking();
+		}
+	}
+
+	/**
+	 * Answers {@link #JOB_METADATA_1}, holding the given fetch back until released.
+	 */
+	private static class BlockingDataService implements JenkinsDataService {
+
+		final CountDownLatch fetchStarted = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger fetches = new AtomicInteger();
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final AtomicInteger jobsChanged = new AtomicInteger();
+		final AtomicInteger trackingStopped = new AtomicInteger();
+		private final int blockedFetch;
+
+		BlockingDataService(int blockedFetch) {
+			this.blockedFetch = blockedFetch;
+		}
+
+		@Override
+		public JobMetadata fetchJobData(JobKey jobKey) {
+			return null;
+		}
+
+		@Override
+		public List<JobKey> fetchJobs(String project, String jobCategory) {
+			return null;
+		}
+
+		@Override
+		public void jobsChanged(String jobCategory) {
+			jobsChanged.incrementAndGet();
+		}
+
+		@Override
+		public void trackingStopped(JobSearchKey jobSearchKey) {
+			trackingStopped.incrementAndGet();
+		}
+
+		@Override
+		public JobMetadata fetchJob(JobSearchKey jobSearchKey) {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				if(fetches.incrementAndGet() == blockedFetch) {
+					fetchStarted.countDown();
+					release.await(5, TimeUnit.SECONDS);
+				}
+				return JOB_METADATA_1;
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		void awaitFetches(int count) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while(fetches.get() < count && System.nanoTime() < deadline) {
+				TimeUnit.MILLISECONDS.sleep(5);
+			}
+		}
+	}
+
 }
@@ -1,5 +1,9 @@
 package worktools.jenkins.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -32,4 +36,72 @@ public class MinimalJobMetadataParserTest {
 		assertEquals("Owner does not match", "developer.three@company.com", jobMetadata.getOwner());
 	}
 
+	@Test
+	public void parsesRawBytes() throws Exception {
+		byte[] jobData = Utils.fetchClasspathFileBytes("G3Build-DeployG3/job.xml");
+		JobKey jobKey = new JobKey("PROJECT_1", "16", "G3Build-DeployG3");
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(jobKey, jobData);
+		assertEquals("Result does not match", Result.SUCCESS, jobMetadata.getResult());
+		assertEquals("Owner does not match", "developer.three@company.com", jobMetadata.getOwner());
+	}
+	
+	@Test
+	public void prefersUserIdOverEarlierAuthorEmail() {
+		String jobData = "<run><authorEmail>author@company.com</authorEmail><userId>a b</userId>"
+				+ "<<userId>user</userId><result>FAILURE</result></run>";
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(JobKey.empty(), jobData);
+		assertEquals("Result does not match", Result.FAILURE, jobMetadata.getResult());
+		assertEquals("Owner does not match", "user", jobMetadata.getOwner());
+	}
+	
+	@Test
+	public void unknownResultWithoutResultTag() {
+		String jobData = "<run><result></result><authorEmail>author@company.com</authorEmail></run>";
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(JobKey.empty(), jobData);
+		assertEquals("Result does not match", Result.UNKNOWN, jobMetadata.getResult());
+		assertEquals("Owner does not match", "author@company.com", jobMetadata.getOwner());
+	}
+
+	@Test
+	public void bytesAndStreamsAgreeOnRepeatedResults() throws Exception {
+		byte[] jobData = ("<run><subBuild><result>FAILURE</result></subBuild><userId>user</userId>"
+				+ "<result>SUCCESS</result></run>").getBytes(StandardCharsets.UTF_8);
+		JobMetadata fromBytes = jobParser.parseJobMetadata(JobKey.empty(), jobData);
+		JobMetadata fromStream = jobParser.parseJobMetadata(JobKey.empty(), new ByteArrayInputStream(jobData));
+		assertEquals("the run's own result wins", Result.SUCCESS, fromBytes.getResult());
+		assertEquals(fromBytes.getResult(), fromStream.getResult());
+		assertEquals(fromBytes.getOwner(), fromStream.getOwner());
+	}
+
+	@Test
+	public void nestedResultsAfterTheRunsOwnAreSkipped() throws Exception {
+		byte[] jobData = ("<?xml version='1.0'?><run><action _class='a'/><userId>user</userId><result>SUCCESS</result>"
+				+ "<subBuild><empty/><result>FAILURE</result></subBuild><changeSet><item><result>ABORTED</result></item></changeSet></run>\n")
+				.getBytes(StandardCharsets.UTF_8);
+		assertEquals(Result.SUCCESS, jobParser.parseJobMetadata(JobKey.empty(), jobData).getResult());
+		InputStream trickle = new ByteArrayInputStream(jobData) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		assertEquals(Result.SUCCESS, jobParser.parseJobMetadata(JobKey.empty(), trickle).getResult());
+	}
+
+	@Test
+	public void parsesStreamThroughBoundedBuffer() throws Exception {
+		byte[] jobData = Utils.fetchClasspathFileBytes("G3Build-DeployG3/job.xml");
+		JobKey jobKey = new JobKey("PROJECT_1", "16", "G3Build-DeployG3");
+		// one byte per read, so tags and values always straddle buffer refills
+		InputStream trickle = new ByteArrayInputStream(jobData) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		JobMetadata jobMetadata = jobParser.parseJobMetadata(jobKey, trickle);
+		assertEquals("Result does not match", Result.SUCCESS, jobMetadata.getResult());
+		assertEquals("Owner does not match", "developer.three@company.com", jobMetadata.getOwner());
+	}
+
 }
@@ -1,8 +1,8 @@
 package worktools.jenkins.services;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URISyntaxException;
 
 import worktools.jenkins.services.JenkinsHttpDataService;
 import worktools.jenkins.utils.Utils;
@@ -13,28 +13,16 @@ public class MockJenkinsDataService extends JenkinsHttpDataService {
 	private static final String jobsFilePath = "%s/jobs.xml";
 	
 	@Override
-	protected String fetchJobData(String project, String jobId, String jobCategory) throws MalformedURLException, IOException {
+	protected InputStream openJobData(String project, String jobId, String jobCategory, String treeProjection) throws MalformedURLException, IOException {
 		String file = String.format(filePath, jobCategory, jobId);
-		long start = System.currentTimeMillis();
-		try {
-		    
-		    Utils.log("Reading file: " + file);
-			return Utils.fetchClasspathFileData(file);
-		} catch(Exception e) {
-			throw new RuntimeException("Error reading from: " + file, e);
-		} finally {
-			 Utils.log("Reading took: " + (System.currentTimeMillis() - start) + " ms");
-		}
+		Utils.log("Reading file: " + file);
+		return Utils.openClasspathFile(file);
 	}
 
 	@Override
-	protected String fetchJobsData(String project, String jobCategory) {
+	protected InputStream openJobsData(String project, String jobCategory) throws IOException {
 		String file = String.format(jobsFilePath, jobCategory);
-		try {
-			Utils.log("Reading file: " + file);
-		    return Utils.fetchClasspathFileData(file);
-		} catch (IOException | URISyntaxException e) {
-			throw(new RuntimeException("Error reading from " + file, e));
-		}
+		Utils.log("Reading file: " + file);
+		return Utils.openClasspathFile(file);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+
+import worktools.jenkins.utils.Utils;
+
+
+public class MockJenkinsJsonDataService extends JenkinsJsonDataService {
+	private static final String filePath = "%s/%s.json";
+	private static final String jobsFilePath = "%s/jobs.json";
+	
+	@Override
+	protected InputStream openJobData(String project, String jobId, String jobCategory, String treeProjection) throws MalformedURLException, IOException {
+		String file = String.format(filePath, jobCategory, jobId);
+		Utils.log("Reading file: " + file);
+		return Utils.openClasspathFile(file);
+	}
+
+	@Override
+	protected InputStream openJobsData(String project, String jobCategory) throws IOException {
+		String file = String.format(jobsFilePath, jobCategory);
+		Utils.log("Reading file: " + file);
+		return Utils.openClasspathFile(file);
+	}
+}
@@ -0,0 +1,69 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import worktools.jenkins.models.JobKey;
+
+public class OwnerIndexTest {
+
+	private static final JobKey BUILD_10 = new JobKey("PROJECT_1", "10", "G3Build-Master");
+	private static final JobKey BUILD_11 = new JobKey("PROJECT_1", "11", "G3Build-Master");
+	private static final JobKey BUILD_12 = new JobKey("PROJECT_1", "12", "G3Build-Master");
+
+	private final OwnerIndex index = new OwnerIndex();
+
+	@Test
+	public void findsTheNewestBuildOfAnOwnerIgnoringCase() {
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_12, BUILD_11, BUILD_10));
+		index.ownerFound(BUILD_10, "Owner.One");
+		index.ownerFound(BUILD_12, "owner.two");
+		index.ownerFound(BUILD_11, "owner.one");
+
+		assertEquals(BUILD_11, index.latest("PROJECT_1", "G3Build-Master", "OWNER.ONE"));
+		assertEquals(BUILD_12, index.latest("PROJECT_1", "G3Build-Master", "owner.two"));
+		assertNull(index.latest("PROJECT_2", "G3Build-Master", "owner.one"));
+	}
+
+	@Test
+	public void hasNoAnswerWhileANewerBuildsOwnerIsUnknown() {
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_11, BUILD_10));
+		index.ownerFound(BUILD_10, "owner.one");
+		assertNull(index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+
+		index.ownerFound(BUILD_11, null);
+		assertEquals(BUILD_10, index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+	}
+
+	@Test
+	public void ignoresBuildsNotInTheJobList() {
+		index.ownerFound(BUILD_10, "owner.one");
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_10));
+		assertNull("found before it was listed", index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+
+		index.ownerFound(BUILD_12, "owner.one");
+		index.ownerFound(BUILD_10, "owner.one");
+		assertEquals(BUILD_10, index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_12, BUILD_10));
+		assertNull("owner of build 12 was not kept", index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+	}
+
+	@Test
+	public void forgetsBuildsLeavingTheJobList() {
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_11, BUILD_10));
+		index.ownerFound(BUILD_11, "owner.one");
+		index.ownerFound(BUILD_10, "owner.one");
+
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_12, BUILD_10));
+		index.ownerFound(BUILD_12, "owner.two");
+		assertEquals(BUILD_10, index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+
+		index.jobsListed("G3Build-Master", Arrays.asList(BUILD_12));
+		assertNull(index.latest("PROJECT_1", "G3Build-Master", "owner.one"));
+	}
+}
@@ -0,0 +1,78 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	private static final int CALLERS = 5;
+
+	private final SingleFlight<String, String> flights = new SingleFlight<>();
+
+	@Test
+	public void callersArrivingDuringAFetchShareIt() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger fetches = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < CALLERS; i++) {
+			results.add(executor.submit(() -> flights.run("key", () -> {
+				fetches.incrementAndGet();
+				await(release);
+				return "value";
+			})));
+		}
+		awaitWaiting("key", CALLERS - 1);
+		release.countDown();
+		executor.shutdown();
+
+		for (Future<String> result : results) {
+			assertEquals("value", result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, fetches.get());
+		assertEquals(0, flights.inFlightCount());
+	}
+
+	@Test
+	public void fetchIsCancelledOnlyOnceEveryCallerHasCancelled() {
+		CompletableFuture<String> fetch = new CompletableFuture<>();
+		CompletableFuture<String> first = flights.runAsync("key", () -> fetch);
+		CompletableFuture<String> second = flights.runAsync("key", CompletableFuture::new);
+		assertEquals(2, flights.waitingCount("key"));
+
+		first.cancel(true);
+		assertFalse(fetch.isCancelled());
+		second.cancel(true);
+		assertTrue(fetch.isCancelled());
+		assertEquals(0, flights.inFlightCount());
+	}
+
+	private void awaitWaiting(String key, int callers) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (flights.waitingCount(key) < callers) {
+			assertTrue("callers did not all join the fetch", System.nanoTime() < deadline);
+			Thread.yield();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package worktools.jenkins.services;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import worktools.jenkins.utils.Utils;
+
+/**
+ * Jenkins stand-in on the JDK's built-in http server, serving {@link SyntheticJenkinsPayloads} documents
+ * on the same urls as Jenkins:
+ * <ul>
+ * <li><code>/view/&lt;project&gt;/job/&lt;category&gt;/api/xml|json</code></li>
+ * <li><code>/job/&lt;category&gt;/&lt;build&gt;/api/xml|json</code></li>
+ * </ul>
+ * Tree projections are ignored, so every response is the full generated document (job lists
+ * requested with <code>builds[number,...]</code> embed the runs), gzipped when the
+ * client accepts it. Each request can be
+ * delayed by a fixed latency and fails with a 500, or another configured status, at the configured error rate. Binds to an ephemeral
+ * loopback port; point a data service at {@link #getUrl()}.
+ */
+class StandInJenkinsServer implements Closeable {
+
+	private final SyntheticJenkinsPayloads payloads;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+	private final AtomicInteger gzippedResponses = new AtomicInteger();
+	private final AtomicInteger notModifiedResponses = new AtomicInteger();
+	private final Set<String> connections = ConcurrentHashMap.newKeySet();
+	private final Random random = new Random(42);
+
+	private volatile long latencyInMilliSeconds;
+	private volatile double errorRate;
+	private volatile int errorStatus = 500;
+	private volatile boolean eTags;
+
+	StandInJenkinsServer(SyntheticJenkinsPayloads payloads) throws IOException {
+		this.payloads = payloads;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	StandInJenkinsServer setLatencyInMilliSeconds(long latencyInMilliSeconds) {
+		this.latencyInMilliSeconds = latencyInMilliSeconds;
+		return this;
+	}
+
+	/** fraction of requests, between 0 and 1, answered with a 500 */
+	StandInJenkinsServer setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/** status failing requests are answered with, 503 or 429 to simulate an overloaded Jenkins */
+	StandInJenkinsServer setErrorStatus(int errorStatus) {
+		this.errorStatus = errorStatus;
+		return this;
+	}
+
+	/** sends an ETag with every document and answers a matching If-None-Match with a 304 */
+	StandInJenkinsServer setETags(boolean eTags) {
+		this.eTags = eTags;
+		return this;
+	}
+
+	int getNotModifiedCount() {
+		return notModifiedResponses.get();
+	}
+
+	int getRequestCount() {
+		return requests.get();
+	}
+
+	int getErrorCount() {
+		return errors.get();
+	}
+
+	int getGzippedResponseCount() {
+		return gzippedResponses.get();
+	}
+
+	/** distinct client connections seen, fewer than requests when connections are kept alive */
+	int getConnectionCount() {
+		return connections.size();
+	}
+
+	/**
+	 * Pushes a build event to a webhook like the Jenkins notification plugin does and returns the status
+	 * it was answered with.
+	 */
+	int sendBuildEvent(String webhookUrl, String jobCategory, long buildNumber, String phase) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(webhookUrl).openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (Writer out = new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8)) {
+				payloads.writeBuildEventJson(jobCategory, buildNumber, phase, out);
+			}
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+			connections.add(exchange.getRemoteAddress().toString());
+			if (latencyInMilliSeconds > 0) {
+				Thread.sleep(latencyInMilliSeconds);
+			}
+			if (failNext()) {
+				errors.incrementAndGet();
+				exchange.sendResponseHeaders(errorStatus, -1);
+				return;
+			}
+
+			// /view/<project>/job/<category>/api/<format> or /job/<category>/<build>/api/<format>
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			boolean jobList = path.length == 7 && "view".equals(path[1]) && "job".equals(path[3]) && "api".equals(path[5]);
+			boolean run = path.length == 6 && "job".equals(path[1]) && "api".equals(path[4]);
+			String format = path[path.length - 1];
+			if (!(jobList || run) || !("xml".equals(format) || "json".equals(format))) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			long buildNumber = run ? Utils.parseLong(path[3], -1) : 0;
+			if (run && (buildNumber < 1 || buildNumber > payloads.latestBuild())) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			if (eTags) {
+				// documents only change when builds are added or the payload size changes
+				String eTag = "\"" + Integer.toHexString(Objects.hash(exchange.getRequestURI().getPath(),
+						payloads.latestBuild(), payloads.getChangeSetEntries())) + "\"";
+				exchange.getResponseHeaders().set("ETag", eTag);
+				if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					notModifiedResponses.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					return;
+				}
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/" + format + ";charset=UTF-8");
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+			if (gzip) {
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				gzippedResponses.incrementAndGet();
+			}
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8 * 1024) : exchange.getResponseBody();
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 64 * 1024)) {
+				if (jobList && "xml".equals(format)) {
+					payloads.writeJobXml(path[4], withRuns(exchange), out);
+				} else if (jobList) {
+					payloads.writeJobJson(path[4], withRuns(exchange), out);
+				} else if ("xml".equals(format)) {
+					payloads.writeRunXml(path[2], buildNumber, out);
+				} else {
+					payloads.writeRunJson(path[2], buildNumber, out);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			// client went away mid-response, e.g. a parser that stopped reading early
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/** job lists asked for with more than the build numbers get the run fields of every build */
+	private static boolean withRuns(HttpExchange exchange) {
+		String query = exchange.getRequestURI().getQuery();
+		return query != null && query.contains("builds[number,");
+	}
+
+	private boolean failNext() {
+		if (errorRate <= 0) {
+			return false;
+		}
+		synchronized (random) {
+			return random.nextDouble() < errorRate;
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
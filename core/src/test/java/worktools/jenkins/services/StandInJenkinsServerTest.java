@@ -0,0 +1,335 @@
+package worktools.jenkins.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import worktools.jenkins.http.HttpTransport;
+import worktools.jenkins.http.RateLimiterMXBean;
+import worktools.jenkins.http.RateLimitingTransport;
+import worktools.jenkins.http.RequestContext;
+import worktools.jenkins.http.WebhookReceiver;
+import worktools.jenkins.models.JobKey;
+import worktools.jenkins.models.JobMetadata;
+import worktools.jenkins.models.JobMetadata.Result;
+import worktools.jenkins.models.JobSearchKey;
+import worktools.jenkins.utils.Utils;
+
+public class StandInJenkinsServerTest {
+
+	private final SyntheticJenkinsPayloads payloads = new SyntheticJenkinsPayloads();
+	private StandInJenkinsServer server;
+
+	@After
+	public void stopServer() {
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void servesJobListsAndRunsOverHttp() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(500));
+		for (JenkinsHttpDataService dataService : dataServices()) {
+			List<JobKey> jobKeys = dataService.fetchJobs("PROJECT_1", "G3Build-Master");
+			assertEquals(JenkinsHttpDataService.MAX_JOBS, jobKeys.size());
+			assertEquals(new JobKey("PROJECT_1", "500", "G3Build-Master"), jobKeys.get(0));
+			
+			assertEquals(Arrays.asList(new JobKey("PROJECT_1", "500", "G3Build-Master"), new JobKey("PROJECT_1", "499", "G3Build-Master")),
+					dataService.fetchJobsAfter("PROJECT_1", "G3Build-Master", 498));
+
+			JobMetadata jobMetadata = dataService.fetchJobData(new JobKey("PROJECT_1", "499", "G3Build-Master"));
+			assertEquals(payloads.owner(499), jobMetadata.getOwner());
+			assertEquals(Result.valueOf(payloads.result(499)), jobMetadata.getResult());
+			assertEquals(payloads.buildStage(499), jobMetadata.getBuildStage());
+			assertEquals(payloads.duration(499), jobMetadata.getBuildTime());
+			assertEquals(payloads.timestamp(499), jobMetadata.getTimestamp());
+			assertEquals(Result.RUNNING, dataService.fetchJobData(new JobKey("PROJECT_1", "500", "G3Build-Master")).getResult());
+
+			JobMetadata tagged = dataService.fetchJobData(new JobKey("PROJECT_1", "498", "G3Build-Promotion"));
+			assertEquals(payloads.owner(498), tagged.getOwner());
+			assertEquals(Result.valueOf(payloads.result(498)), tagged.getResult());
+		}
+	}
+
+	@Test
+	public void fetchesTreeProjectedUrls() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(10));
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		String url = dataService.jobUrl("7", "G3Build-Master", "result,actions[parameters[name,value]]");
+		assertTrue(url, url.contains("%5B") && url.contains("%2C"));
+
+		String document = Utils.fetchHttpData(url);
+		assertTrue(document, document.contains(payloads.owner(7)));
+	}
+
+	@Test
+	public void parsesLargeRunsAndJobLists() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(5000).setChangeSetEntries(100000));
+		for (JenkinsHttpDataService dataService : dataServices()) {
+			assertEquals(JenkinsHttpDataService.MAX_JOBS, dataService.fetchJobs("PROJECT_1", "G3Build-Master").size());
+			
+			JobMetadata jobMetadata = dataService.fetchJobData(new JobKey("PROJECT_1", "4999", "G3Build-Master"));
+			assertEquals(payloads.owner(4999), jobMetadata.getOwner());
+			assertEquals(payloads.buildStage(4999), jobMetadata.getBuildStage());
+			
+			JobMetadata tagged = dataService.fetchJobData(new JobKey("PROJECT_1", "4998", "G3Build-Promotion"));
+			assertEquals(Result.valueOf(payloads.result(4998)), tagged.getResult());
+		}
+	}
+
+	@Test
+	public void notBuiltBuildsAreParsedAsUnknown() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(100).setNotBuilt(97));
+		for (JenkinsHttpDataService dataService : dataServices()) {
+			for (String jobCategory : Arrays.asList("G3Build-Master", "G3Build-Promotion")) {
+				JobKey notBuilt = new JobKey("PROJECT_1", "97", jobCategory);
+				List<JobMetadata> jobs = dataService.fetchJobsWithMetadata("PROJECT_1", jobCategory);
+				assertEquals(JenkinsHttpDataService.MAX_JOBS, jobs.size());
+				assertEquals(Result.UNKNOWN, jobs.get(3).getResult());
+				assertEquals(notBuilt, jobs.get(3).getJobKey());
+				assertEquals(Result.valueOf(payloads.result(96)), jobs.get(4).getResult());
+				assertEquals(Result.UNKNOWN, dataService.fetchJobData(notBuilt).getResult());
+			}
+		}
+	}
+
+	@Test
+	public void jobsWithMetadataComeInOneRequest() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(300).setChangeSetEntries(20));
+		for (JenkinsHttpDataService dataService : dataServices()) {
+			for (String jobCategory : Arrays.asList("G3Build-Master", "G3Build-Promotion")) {
+				int requests = server.getRequestCount();
+				List<JobMetadata> jobs = dataService.fetchJobsWithMetadata("PROJECT_1", jobCategory);
+				assertEquals(1, server.getRequestCount() - requests);
+				assertEquals(JenkinsHttpDataService.MAX_JOBS, jobs.size());
+
+				for (JobMetadata jobMetadata : jobs) {
+					JobMetadata fetched = dataService.fetchJobData(jobMetadata.getJobKey());
+					assertEquals(fetched, jobMetadata);
+					assertEquals(fetched.getGerritComment(), jobMetadata.getGerritComment());
+					assertEquals(fetched.getBuildTime(), jobMetadata.getBuildTime());
+					assertEquals(fetched.getTimestamp(), jobMetadata.getTimestamp());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void cacheIsFilledFromTheJobsWithMetadata() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(300));
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService,
+				Files.createTempDirectory("jenkins-notifications-test").toString());
+
+		// owners of the finished builds right below the running build 300
+		JobMetadata jobMetadata = cachedDataService.fetchJob(new JobSearchKey("PROJECT_1", "G3Build-Master", payloads.owner(299)));
+		assertEquals(new JobKey("PROJECT_1", "299", "G3Build-Master"), jobMetadata.getJobKey());
+		assertEquals(1, server.getRequestCount());
+
+		assertEquals(jobMetadata, cachedDataService.fetchJobData(jobMetadata.getJobKey()));
+		assertEquals(new JobKey("PROJECT_1", "298", "G3Build-Master"),
+				cachedDataService.fetchJob(new JobSearchKey("PROJECT_1", "G3Build-Master", payloads.owner(298))).getJobKey());
+		assertEquals("builds of the job list are cached", 1, server.getRequestCount());
+	}
+
+	@Test
+	public void reusesGzippedConnections() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(5000).setChangeSetEntries(200));
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		for (int i = 0; i < 10; i++) {
+			// stops reading long before the end of the job list
+			assertEquals(JenkinsHttpDataService.MAX_JOBS, dataService.fetchJobs("PROJECT_1", "G3Build-Master").size());
+			assertEquals(payloads.owner(4000 + i), dataService.fetchJobData(new JobKey("PROJECT_1", String.valueOf(4000 + i), "G3Build-Master")).getOwner());
+		}
+		assertEquals(20, server.getGzippedResponseCount());
+		assertTrue("connections: " + server.getConnectionCount(), server.getConnectionCount() <= 2);
+	}
+
+	@Test
+	public void unchangedDocumentsAreNotParsedAgain() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(300)).setETags(true);
+		List<JenkinsHttpDataService> dataServices = dataServices();
+		for (JenkinsHttpDataService dataService : dataServices) {
+			List<JobKey> jobKeys = dataService.fetchJobs("PROJECT_1", "G3Build-Master");
+			assertEquals(jobKeys, dataService.fetchJobs("PROJECT_1", "G3Build-Master"));
+			assertEquals(jobKeys.subList(0, 2), dataService.fetchJobsAfter("PROJECT_1", "G3Build-Master", 298));
+			
+			JobKey jobKey = new JobKey("PROJECT_1", "299", "G3Build-Master");
+			JobMetadata jobMetadata = dataService.fetchJobData(jobKey);
+			assertSame(jobMetadata, dataService.fetchJobData(jobKey));
+			assertEquals(3, dataService.conditionalGets().getNotModifiedCount());
+			
+			JobKey otherProject = new JobKey("PROJECT_2", "299", "G3Build-Master");
+			assertEquals(otherProject, dataService.fetchJobData(otherProject).getJobKey());
+			assertEquals("PROJECT_2", dataService.fetchJobs("PROJECT_2", "G3Build-Master").get(0).getProject());
+		}
+		assertEquals(6, server.getNotModifiedCount());
+		
+		payloads.setBuildsPerCategory(301);
+		for (JenkinsHttpDataService dataService : dataServices) {
+			assertEquals(new JobKey("PROJECT_1", "301", "G3Build-Master"), dataService.fetchJobs("PROJECT_1", "G3Build-Master").get(0));
+			assertEquals(Result.valueOf(payloads.result(300)), dataService.fetchJobData(new JobKey("PROJECT_1", "300", "G3Build-Master")).getResult());
+		}
+		assertEquals(6, server.getNotModifiedCount());
+	}
+
+	@Test
+	public void failedRequestsSurfaceAsErrors() throws Exception {
+		server = new StandInJenkinsServer(payloads).setErrorRate(1);
+		try {
+			new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry()).fetchJobs("PROJECT_1", "G3Build-Master");
+			fail("500 response should not yield a job list");
+		} catch (RuntimeException e) {
+			assertEquals(1, server.getErrorCount());
+		}
+	}
+
+	@Test
+	public void overloadedJenkinsSlowsRequestsDown() throws Exception {
+		server = new StandInJenkinsServer(payloads).setErrorRate(1).setErrorStatus(503);
+		RateLimitingTransport transport = new RateLimitingTransport(HttpTransport.defaultTransport());
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry(), transport);
+		assertEquals(1, transport.getPollingSlowdown(), 0);
+		for (int i = 0; i < 3; i++) {
+			try {
+				dataService.fetchJobs("PROJECT_1", "G3Build-Master");
+				fail("503 response should not yield a job list");
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+
+		RateLimiterMXBean limiter = transport.getLimiter(server.getUrl().substring("http://".length()));
+		assertEquals(3, limiter.getOverloadCount());
+		// a burst of failures within a second only halves the rate once
+		assertEquals(RateLimitingTransport.DEFAULT_MAX_RATE / 2, limiter.getRate(), 0);
+		assertEquals(2, transport.getPollingSlowdown(), 0);
+	}
+
+	@Test
+	public void cancellingTheRequestContextClosesTheConnection() throws Exception {
+		server = new StandInJenkinsServer(payloads).setLatencyInMilliSeconds(10 * 1000);
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		RequestContext context = RequestContext.withoutDeadline();
+		CompletableFuture<List<JobKey>> jobKeys = CompletableFuture.supplyAsync(
+				context.wrap(() -> dataService.fetchJobs("PROJECT_1", "G3Build-Master")));
+		while (server.getRequestCount() == 0) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+
+		context.cancel();
+		try {
+			jobKeys.get(2, TimeUnit.SECONDS);
+			fail("cancelled fetch should not yield a job list");
+		} catch (ExecutionException e) {
+			assertTrue(context.isCancelled());
+		}
+	}
+
+	@Test
+	public void requestsGiveUpAtTheDeadline() throws Exception {
+		server = new StandInJenkinsServer(payloads).setLatencyInMilliSeconds(10 * 1000);
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		long start = System.nanoTime();
+		try {
+			RequestContext.withTimeout(200).call(() -> dataService.fetchJobs("PROJECT_1", "G3Build-Master"));
+			fail("fetch past the deadline should not yield a job list");
+		} catch (RuntimeException e) {
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+		}
+	}
+
+	@Test
+	public void switchingTrackedJobsDropsTheSupersededPoll() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(200)).setLatencyInMilliSeconds(10 * 1000);
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		JenkinsNotificationService notificationService = new JenkinsNotificationService(dataService, 60 * 1000);
+		BlockingQueue<JobMetadata> notifications = new ArrayBlockingQueue<>(10);
+		notificationService.addNotificationsListener(notifications::add);
+
+		notificationService.trackAsync(new JobSearchKey("PROJECT_1", "G3Build-Master", payloads.owner(198)));
+		while (server.getRequestCount() == 0) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		server.setLatencyInMilliSeconds(0);
+		try {
+			notificationService.track(new JobSearchKey("PROJECT_1", "G3Build-Promotion", payloads.owner(198)));
+			assertEquals("G3Build-Promotion", notifications.poll(10, TimeUnit.SECONDS).getJobCategory());
+			assertNull(notifications.poll(500, TimeUnit.MILLISECONDS));
+		} finally {
+			notificationService.stopTracking();
+		}
+	}
+
+	@Test
+	public void pushedBuildsAreNotifiedWithoutWaitingForThePoll() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(200));
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		CachedJenkinsDataService cachedDataService = new CachedJenkinsDataService(dataService, Files.createTempDirectory("cache").toString());
+		JenkinsNotificationService notificationService = new JenkinsNotificationService(cachedDataService, 60 * 1000);
+		BlockingQueue<JobMetadata> notifications = new ArrayBlockingQueue<>(10);
+		notificationService.addNotificationsListener(notifications::add);
+
+		try (WebhookReceiver receiver = new WebhookReceiver(0, notificationService::onBuildEvent).start()) {
+			String webhookUrl = "http://127.0.0.1:" + receiver.getPort() + WebhookReceiver.PATH;
+			notificationService.track(new JobSearchKey("PROJECT_1", "G3Build-Master", payloads.owner(201)));
+			assertEquals(new JobKey("PROJECT_1", "198", "G3Build-Master"), notifications.poll(10, TimeUnit.SECONDS).getJobKey());
+			assertFalse(notificationService.isReceivingPushes());
+			assertEquals(202, server.sendBuildEvent(webhookUrl, "G3Build-Promotion", 200, "STARTED"));
+			assertFalse("events of other categories do not slow polling", notificationService.isReceivingPushes());
+
+			payloads.setBuildsPerCategory(201);
+			assertEquals(202, server.sendBuildEvent(webhookUrl, "G3Build-Master", 201, "STARTED"));
+			JobMetadata pushed = notifications.poll(10, TimeUnit.SECONDS);
+			assertEquals(new JobKey("PROJECT_1", "201", "G3Build-Master"), pushed.getJobKey());
+			assertEquals(Result.RUNNING, pushed.getResult());
+			assertTrue(notificationService.isReceivingPushes());
+
+			assertEquals(202, server.sendBuildEvent(webhookUrl, "G3Build-Promotion", 201, "STARTED"));
+			assertNull("events of other categories are not fetched", notifications.poll(500, TimeUnit.MILLISECONDS));
+		} finally {
+			notificationService.stopTracking();
+		}
+	}
+
+	@Test
+	public void notificationServiceTracksJobsEndToEnd() throws Exception {
+		server = new StandInJenkinsServer(payloads.setBuildsPerCategory(200)).setLatencyInMilliSeconds(5);
+		JenkinsHttpDataService dataService = new JenkinsHttpDataService(server.getUrl(), ExtractionSpecRegistry.defaultRegistry());
+		JenkinsNotificationService notificationService = new JenkinsNotificationService(dataService, 60 * 1000);
+		BlockingQueue<JobMetadata> notifications = new ArrayBlockingQueue<>(10);
+		notificationService.addNotificationsListener(notifications::add);
+		
+		notificationService.track(new JobSearchKey("PROJECT_1", "G3Build-Master", payloads.owner(198)));
+		try {
+			JobMetadata jobMetadata = notifications.poll(10, TimeUnit.SECONDS);
+			assertEquals(new JobKey("PROJECT_1", "198", "G3Build-Master"), jobMetadata.getJobKey());
+			assertEquals(payloads.owner(198), jobMetadata.getOwner());
+			assertTrue(server.getRequestCount() > 1);
+		} finally {
+			notificationService.stopTracking();
+		}
+	}
+
+	private List<JenkinsHttpDataService> dataServices() {
+		ExtractionSpecRegistry extractionSpecs = ExtractionSpecRegistry.defaultRegistry();
+		return Arrays.asList(new JenkinsHttpDataService(server.getUrl(), extractionSpecs),
+				new JenkinsJsonDataService(server.getUrl(), extractionSpecs));
+	}
+}
@@ -0,0 +1,229 @@
+package worktools.jenkins.services;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Generates <code>workflowJob</code> and <code>workflowRun</code> documents shaped like the ones
+ * Jenkins serves, in xml or json, at any size. Documents are written straight to a Writer so runs with
+ * hundreds of thousands of changeset entries never have to fit in memory.
+ * <p>
+ * Everything is derived from the build number, so the expected metadata of any build is known up front:
+ * see {@link #owner(long)}, {@link #result(long)} and {@link #buildStage(long)}.
+ */
+class SyntheticJenkinsPayloads {
+
+	static final String[] STAGES = {"G3Build", "G3Inspect", "G3Deploy", "G3Test", "G3Publish"};
+
+	private int buildsPerCategory = 100;
+	private int changeSetEntries = 0;
+	private String[] owners = {"developer.one@company.com", "developer.two@company.com", "developer.three@company.com"};
+	private long notBuilt = -1;
+
+	int getBuildsPerCategory() {
+		return buildsPerCategory;
+	}
+
+	/** builds are numbered from 1 up to this, the newest one is still running */
+	SyntheticJenkinsPayloads setBuildsPerCategory(int buildsPerCategory) {
+		this.buildsPerCategory = buildsPerCategory;
+		return this;
+	}
+
+	int getChangeSetEntries() {
+		return changeSetEntries;
+	}
+
+	/** number of <code>changeSet</code> items written after the interesting part of every run */
+	SyntheticJenkinsPayloads setChangeSetEntries(int changeSetEntries) {
+		this.changeSetEntries = changeSetEntries;
+		return this;
+	}
+
+	SyntheticJenkinsPayloads setOwners(String... owners) {
+		this.owners = owners;
+		return this;
+	}
+
+	/** the build ends up NOT_BUILT, a result Jenkins has beyond the ones the models know */
+	SyntheticJenkinsPayloads setNotBuilt(long buildNumber) {
+		this.notBuilt = buildNumber;
+		return this;
+	}
+
+	long latestBuild() {
+		return buildsPerCategory;
+	}
+
+	String owner(long buildNumber) {
+		return owners[(int) (buildNumber % owners.length)];
+	}
+
+	String result(long buildNumber) {
+		if (buildNumber == latestBuild()) {
+			return null;
+		}
+		if (buildNumber == notBuilt) {
+			return "NOT_BUILT";
+		}
+		return buildNumber % 4 == 0 ? "FAILURE" : "SUCCESS";
+	}
+
+	/** last stage with its parameter set, builds pass one to all of the stages in turn */
+	String buildStage(long buildNumber) {
+		return STAGES[passedStages(buildNumber) - 1];
+	}
+
+	long duration(long buildNumber) {
+		return 60000 + buildNumber;
+	}
+
+	long timestamp(long buildNumber) {
+		return 1500000000000L + buildNumber * 60000;
+	}
+
+	private int passedStages(long buildNumber) {
+		return (int) (buildNumber % STAGES.length) + 1;
+	}
+
+	void writeJobXml(String jobCategory, Writer out) throws IOException {
+		writeJobXml(jobCategory, false, out);
+	}
+
+	/**
+	 * @param withRuns whether every build carries the fields of its run document, as when the job list is
+	 * requested with a <code>builds[number,...]</code> tree
+	 */
+	void writeJobXml(String jobCategory, boolean withRuns, Writer out) throws IOException {
+		out.write("<workflowJob _class='org.jenkinsci.plugins.workflow.job.WorkflowJob'>");
+		out.write("<displayName>" + jobCategory + "</displayName>");
+		for (long build = latestBuild(); build > 0; build--) {
+			if (withRuns) {
+				writeRunXml("build", jobCategory, build, out);
+				continue;
+			}
+			out.write("<build _class='org.jenkinsci.plugins.workflow.job.WorkflowRun'><number>");
+			out.write(Long.toString(build));
+			out.write("</number></build>");
+		}
+		out.write("</workflowJob>");
+	}
+
+	void writeJobJson(String jobCategory, Writer out) throws IOException {
+		writeJobJson(jobCategory, false, out);
+	}
+
+	void writeJobJson(String jobCategory, boolean withRuns, Writer out) throws IOException {
+		out.write("{\"_class\":\"org.jenkinsci.plugins.workflow.job.WorkflowJob\",\"displayName\":\"" + jobCategory + "\",\"builds\":[");
+		for (long build = latestBuild(); build > 0; build--) {
+			if (build != latestBuild()) {
+				out.write(",");
+			}
+			if (withRuns) {
+				writeRunJson(jobCategory, build, out);
+				continue;
+			}
+			out.write("{\"_class\":\"org.jenkinsci.plugins.workflow.job.WorkflowRun\",\"number\":");
+			out.write(Long.toString(build));
+			out.write("}");
+		}
+		out.write("]}");
+	}
+
+	void writeRunXml(String jobCategory, long buildNumber, Writer out) throws IOException {
+		writeRunXml("workflowRun", jobCategory, buildNumber, out);
+	}
+
+	private void writeRunXml(String element, String jobCategory, long buildNumber, Writer out) throws IOException {
+		out.write("<" + element + " _class='org.jenkinsci.plugins.workflow.job.WorkflowRun'>\n");
+		out.write("\t<action _class='hudson.model.CauseAction'><cause _class='hudson.model.Cause$UserIdCause'><userId>"
+				+ owner(buildNumber) + "</userId></cause></action>\n");
+		out.write("\t<action _class='hudson.model.ParametersAction'>\n");
+		for (int i = 0; i < STAGES.length; i++) {
+			xmlParameter(out, "hudson.model.BooleanParameterValue", STAGES[i], Boolean.toString(i < passedStages(buildNumber)));
+		}
+		xmlParameter(out, "hudson.model.StringParameterValue", "GERRIT_CHANGE_OWNER_EMAIL", owner(buildNumber));
+		xmlParameter(out, "hudson.model.StringParameterValue", "GERRIT_CHANGE_SUBJECT", "Change " + buildNumber);
+		out.write("\t</action>\n");
+		out.write("\t<building>" + (result(buildNumber) == null) + "</building>\n");
+		out.write("\t<duration>" + duration(buildNumber) + "</duration>\n");
+		out.write("\t<fullDisplayName>" + jobCategory + " #" + buildNumber + "</fullDisplayName>\n");
+		out.write("\t<number>" + buildNumber + "</number>\n");
+		if (result(buildNumber) != null) {
+			out.write("\t<result>" + result(buildNumber) + "</result>\n");
+		}
+		out.write("\t<timestamp>" + timestamp(buildNumber) + "</timestamp>\n");
+		out.write("\t<changeSet _class='hudson.plugins.git.GitChangeSetList'>\n");
+		for (int i = 0; i < changeSetEntries; i++) {
+			out.write("\t\t<item _class='hudson.plugins.git.GitChangeSet'><commitId>");
+			out.write(commitId(buildNumber, i));
+			out.write("</commitId><authorEmail>");
+			out.write(owners[i % owners.length]);
+			out.write("</authorEmail><msg>Commit ");
+			out.write(Integer.toString(i));
+			out.write("</msg></item>\n");
+		}
+		out.write("\t\t<kind>git</kind>\n\t</changeSet>\n");
+		out.write("</" + element + ">");
+	}
+
+	void writeRunJson(String jobCategory, long buildNumber, Writer out) throws IOException {
+		out.write("{\"_class\":\"org.jenkinsci.plugins.workflow.job.WorkflowRun\",\"actions\":[");
+		out.write("{\"_class\":\"hudson.model.CauseAction\",\"causes\":[{\"_class\":\"hudson.model.Cause$UserIdCause\",\"userId\":\""
+				+ owner(buildNumber) + "\"}]},");
+		out.write("{\"_class\":\"hudson.model.ParametersAction\",\"parameters\":[");
+		for (int i = 0; i < STAGES.length; i++) {
+			out.write("{\"_class\":\"hudson.model.BooleanParameterValue\",\"name\":\"" + STAGES[i] + "\",\"value\":"
+					+ (i < passedStages(buildNumber)) + "},");
+		}
+		jsonParameter(out, "GERRIT_CHANGE_OWNER_EMAIL", owner(buildNumber));
+		out.write(",");
+		jsonParameter(out, "GERRIT_CHANGE_SUBJECT", "Change " + buildNumber);
+		out.write("]}],");
+		out.write("\"building\":" + (result(buildNumber) == null) + ",");
+		out.write("\"duration\":" + duration(buildNumber) + ",");
+		out.write("\"fullDisplayName\":\"" + jobCategory + " #" + buildNumber + "\",");
+		out.write("\"number\":" + buildNumber + ",");
+		out.write("\"result\":" + (result(buildNumber) == null ? "null" : "\"" + result(buildNumber) + "\"") + ",");
+		out.write("\"timestamp\":" + timestamp(buildNumber) + ",");
+		out.write("\"changeSet\":{\"_class\":\"hudson.plugins.git.GitChangeSetList\",\"items\":[");
+		for (int i = 0; i < changeSetEntries; i++) {
+			out.write(i == 0 ? "{" : ",{");
+			out.write("\"_class\":\"hudson.plugins.git.GitChangeSet\",\"commitId\":\"");
+			out.write(commitId(buildNumber, i));
+			out.write("\",\"authorEmail\":\"");
+			out.write(owners[i % owners.length]);
+			out.write("\",\"msg\":\"Commit ");
+			out.write(Integer.toString(i));
+			out.write("\"}");
+		}
+		out.write("],\"kind\":\"git\"}}");
+	}
+
+	/**
+	 * Build event as the notification plugin pushes it, with the json format.
+	 */
+	void writeBuildEventJson(String jobCategory, long buildNumber, String phase, Writer out) throws IOException {
+		out.write("{\"name\":\"" + jobCategory + "\",\"display_name\":\"" + jobCategory + "\",\"url\":\"job/" + jobCategory + "/\",");
+		out.write("\"build\":{\"full_url\":\"http://jenkins/job/" + jobCategory + "/" + buildNumber + "/\",\"number\":" + buildNumber + ",");
+		out.write("\"queue_id\":" + (1000 + buildNumber) + ",\"phase\":\"" + phase + "\",\"timestamp\":" + timestamp(buildNumber) + ",");
+		if ("COMPLETED".equals(phase) || "FINALIZED".equals(phase)) {
+			out.write("\"status\":\"" + (result(buildNumber) == null ? "SUCCESS" : result(buildNumber)) + "\",");
+		}
+		out.write("\"url\":\"job/" + jobCategory + "/" + buildNumber + "/\",");
+		out.write("\"scm\":{\"url\":\"ssh://gerrit/project\",\"branch\":\"origin/master\",\"commit\":\"" + commitId(buildNumber, 0) + "\",\"changes\":[]},");
+		out.write("\"parameters\":{\"GERRIT_CHANGE_OWNER_EMAIL\":\"" + owner(buildNumber) + "\"},\"log\":\"\",\"artifacts\":{}}}");
+	}
+
+	private static void xmlParameter(Writer out, String parameterClass, String name, String value) throws IOException {
+		out.write("\t\t<parameter _class='" + parameterClass + "'><name>" + name + "</name><value>" + value + "</value></parameter>\n");
+	}
+
+	private static void jsonParameter(Writer out, String name, String value) throws IOException {
+		out.write("{\"_class\":\"hudson.model.StringParameterValue\",\"name\":\"" + name + "\",\"value\":\"" + value + "\"}");
+	}
+
+	private static String commitId(long buildNumber, int entry) {
+		return String.format("%016x%08x", buildNumber, entry);
+	}
+}
@@ -0,0 +1,51 @@
+package worktools.jenkins.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import worktools.jenkins.utils.JsonTokenizer.Token;
+
+public class JsonTokenizerTest {
+
+	@Test
+	public void tokenizesNamesAndValues() throws IOException {
+		JsonTokenizer json = new JsonTokenizer(new StringReader("{\"a\" : \"x\\\"y\\u0041\", \"b\":[1, -20, true, null], \"c\":{}}"));
+		assertEquals(Token.START_OBJECT, json.next());
+		assertEquals(Token.NAME, json.next());
+		assertTrue(json.textEquals("a"));
+		assertEquals(Token.STRING, json.next());
+		assertEquals("x\"yA", json.text());
+		assertEquals(Token.NAME, json.next());
+		assertEquals(Token.START_ARRAY, json.next());
+		assertEquals(Token.NUMBER, json.next());
+		assertEquals(1, json.longValue(0));
+		assertEquals(Token.NUMBER, json.next());
+		assertEquals(-20, json.longValue(0));
+		assertEquals(Token.TRUE, json.next());
+		assertEquals("true", json.text());
+		assertEquals(Token.NULL, json.next());
+		assertEquals(Token.END_ARRAY, json.next());
+		assertEquals(Token.NAME, json.next());
+		json.skipValue();
+		assertEquals(Token.END_OBJECT, json.next());
+		assertEquals(Token.END_DOCUMENT, json.next());
+	}
+
+	@Test
+	public void skipsNestedValues() throws IOException {
+		JsonTokenizer json = new JsonTokenizer(new StringReader("{\"skip\":{\"a\":[{\"b\":\"]\"}]},\"keep\":\"value\"}"));
+		json.next();
+		json.next();
+		json.skipValue();
+		assertEquals(Token.NAME, json.next());
+		assertTrue(json.textEquals("keep"));
+		json.next();
+		assertEquals("value", json.text());
+	}
+
+}
@@ -0,0 +1,97 @@
+package worktools.jenkins.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TinyLfuMapTest {
+
+	@Test
+	public void frequentlyUsedEntriesSurviveAScan() {
+		TinyLfuMap<String, String> map = new TinyLfuMap<>(100);
+		for (int i = 0; i < 100; i++) {
+			map.put("hot" + i, "value" + i);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 100; i++) {
+				map.get("hot" + i);
+			}
+		}
+		for (int i = 0; i < 1000; i++) {
+			map.put("scanned" + i, "value" + i);
+		}
+
+		assertEquals(100, map.size());
+		int hot = 0;
+		for (int i = 0; i < 100; i++) {
+			if (map.containsKey("hot" + i)) {
+				hot++;
+			}
+		}
+		assertTrue("only " + hot + " hot entries left", hot >= 95);
+		assertEquals(1000, map.getEvictionCount());
+		assertEquals(500, map.getHitCount());
+	}
+
+	@Test
+	public void entriesNobodyLooksAtAgeOut() {
+		TinyLfuMap<String, String> map = new TinyLfuMap<>(100);
+		for (int i = 0; i < 100; i++) {
+			map.put("old" + i, "value" + i);
+			map.get("old" + i);
+		}
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 100; i++) {
+				map.put("new" + i, "value" + i);
+				map.get("new" + i);
+			}
+		}
+
+		int old = 0;
+		for (int i = 0; i < 100; i++) {
+			if (map.containsKey("old" + i)) {
+				old++;
+			}
+		}
+		assertTrue(old + " old entries left", old <= 5);
+		assertEquals(100, map.size());
+	}
+
+	@Test
+	public void pinnedEntriesStayOutsideTheBound() {
+		TinyLfuMap<String, String> map = new TinyLfuMap<>(10);
+		map.put("current", "running");
+		map.pin("current");
+		map.pin("next");
+		for (int i = 0; i < 100; i++) {
+			map.put("build" + i, "value" + i);
+			map.get("build" + i);
+		}
+		map.put("next", "queued");
+
+		assertEquals("running", map.get("current"));
+		assertEquals("queued", map.get("next"));
+		assertEquals(2, map.getPinnedCount());
+		assertEquals(12, map.size());
+
+		map.unpin("current");
+		map.unpin("next");
+		assertEquals(10, map.size());
+		assertEquals(0, map.getPinnedCount());
+	}
+
+	@Test
+	public void countsHitsAndMisses() {
+		TinyLfuMap<String, String> map = new TinyLfuMap<>(10);
+		map.put("a", "1");
+		assertEquals("1", map.get("a"));
+		assertNull(map.get("b"));
+		assertEquals("1", map.putIfAbsent("a", "2"));
+
+		assertEquals(1, map.getHitCount());
+		assertEquals(1, map.getMissCount());
+		assertEquals(0.5, map.getHitRatio(), 0.0001);
+	}
+}